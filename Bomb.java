@@ -1,13 +1,11 @@
 package de.tum.cit.ase.bomberquest.map;
 
-import com.badlogic.gdx.graphics.g2d.Animation;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
-import de.tum.cit.ase.bomberquest.audio.MusicTrack;
-import de.tum.cit.ase.bomberquest.screen.VictoryAndGameOverScreen;
 import de.tum.cit.ase.bomberquest.texture.Animations;
 import de.tum.cit.ase.bomberquest.texture.Textures;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -22,30 +20,44 @@ public class Bomb extends GameObject {
     private float bombTimer = 3.0f;//the time after bomb is placed and before it explodes
     private final float explosionDuration = 0.5f;//duration of the explosion animation
     private float explosionTimer;
-    private Animation<TextureRegion> explosionAnimation;
     private boolean exploded;
-    private final TextureRegion bombTexture;
     private final GameMap map;// Reference to the game map where the bomb exists
-    public static VictoryAndGameOverScreen victoryAndGameOverScreen;
-    private Player player;// Reference to the player who placed the bomb
-    // static attribute for death reason
-    public static String deathReason = "";
+    private final Player owner;// Reference to the player who placed the bomb, whose blast radius it uses
 
 
     public float getExplosionTimer() {
         return bombTimer;
     }//returns remaining time until the explosion
 
+    /**
+     * Sets the remaining time until the explosion, e.g. when a saved game is restored.
+     * @param bombTimer The remaining time in seconds.
+     */
+    public void setExplosionTimer(float bombTimer) {
+        this.bombTimer = bombTimer;
+    }
+
     public GameMap getMap() {
         return map;
     }
 
-    public Bomb(float x, float y, TextureRegion bombTexture, GameMap map, int explosionRadius) {
+    /** Returns the player who placed the bomb. */
+    public Player getOwner() {
+        return owner;
+    }
+
+    /**
+     * Creates a ticking bomb. Textures are only looked up when the bomb is drawn, so bombs also work on a headless map.
+     * @param x The x-coordinate of the tile.
+     * @param y The y-coordinate of the tile.
+     * @param map The map the bomb is placed on.
+     * @param owner The player who placed the bomb.
+     */
+    public Bomb(float x, float y, GameMap map, Player owner) {
         super(x, y);//call the position from GameObject Class
         this.map = map;
-        this.bombTexture = Textures.BOMB;
         this.exploded = false;
-        player = map.getPlayer();//get the player instance from the map
+        this.owner = owner;
     }
 
     public void render(SpriteBatch spriteBatch) {//render the bomb or explosion animation based on timer
@@ -53,10 +65,10 @@ public class Bomb extends GameObject {
         float y = getY();
 
         if (bombTimer < 0.8f) {
-            TextureRegion frame = explosionAnimation.getKeyFrame(explosionDuration - explosionTimer, false);//This expression determines which frame of the animation should be shown at a given moment.
+            TextureRegion frame = Animations.BOMB_EXPLOSION.getKeyFrame(explosionDuration - explosionTimer, false);//This expression determines which frame of the animation should be shown at a given moment.
             spriteBatch.draw(frame, x - 16 * 2.5f, y, 1, 1); // Adjust explosion size accordingly
         } else {
-            spriteBatch.draw(bombTexture, x, y, 1, 1);
+            spriteBatch.draw(Textures.BOMB, x, y, 1, 1);
         }
     }
 
@@ -79,7 +91,7 @@ public class Bomb extends GameObject {
     private void explode() {//Triggers the bomb explosion, playing sound and animation, and generating blast effects.
         if (!exploded) {
 
-            MusicTrack.EXPLODE.play();
+            map.getEventBus().bombExploded(this); // E.g. play the explosion sound effect
 
             this.exploded = true;
             playExplosionAniation();
@@ -89,7 +101,6 @@ public class Bomb extends GameObject {
     }
 
     private void playExplosionAniation() {
-        explosionAnimation = Animations.BOMB_EXPLOSION;
         explosionTimer = explosionDuration;
     }
 
@@ -99,6 +110,11 @@ public class Bomb extends GameObject {
         }
     }
 
+    /** Returns how many tiles the blast reaches in one direction, like {@link #getBlastRadius()} without the map. */
+    public int getBlastRadius(Direction direction) {
+        return propagateBlast2(direction);
+    }
+
     public Map<Direction, Integer> getBlastRadius() {
         Map<Direction, Integer> directionIntegerMap = new HashMap<>();
 
@@ -113,67 +129,53 @@ public class Bomb extends GameObject {
         float x = getX();
         float y = getY();
 
-        for (int i = 0; i <= player.getBlastRadius(); i++) {
+        for (int i = 0; i <= owner.getBlastRadius(); i++) {
             int targetX = (int) (x + direction.getOffsetX() * i);// Calculate X position in explosion path
             int targetY = (int) (y + direction.getOffsetY() * i); // Calculate Y position in explosion path
 
-            if (!map.isPassablePlayer(targetX, targetY)) {// Boundaries and indestructible walls block explosion
+            TileBitboards bitboards = map.getBitboards();
+            if (bitboards.test(TileBitboards.SOLID, targetX, targetY)) {
+                return i;// Stop explosion if an indestructible wall is hit
             }
-
-
-            Wall wall = map.getWallContains(targetX * 64, targetY * 64);// Check if a destructible wall exists at the explosion's position
-
-            if (wall != null) {
-                if (!wall.isDestructible()) {
-                    return i;// Stop explosion if an indestructible wall is hit
-                }
-
-                if (wall.isDestructible() && !wall.isDestroyed()) {
-                    map.destroyWall(wall); // Destroy destructible wall
-                }
+            if (bitboards.test(TileBitboards.DESTRUCTIBLE, targetX, targetY)) {
+                map.destroyWallAt(targetX, targetY); // Destroy destructible wall
             }
 
-            // Check if the explosion hits the player
-            map.getPlayer();//player is killed by bomb.
-            if (map.isCollision(map.getPlayer(), new Bomb(targetX, targetY, Textures.BOMB, map, 1))) {
-                deathReason = "Player killed by bomb."; // Set the death reason
-                map.getPlayer().kill();
-                map.getGame().setScreen(new VictoryAndGameOverScreen(map.getGame(), false, Bomb.deathReason)); // Pass the reason to game over screen
+            // Check if the explosion hits a player
+            Flowers blastTile = new Flowers(targetX, targetY);
+            for (Player player : map.getPlayers()) {
+                if (player.isAlive() && map.isCollision(player, blastTile)) {
+                    map.killPlayer(player, GameMap.CAUSE_BOMB);
+                }
             }
 
 
 
-            Enemy enemy = map.getEnemyAt2(targetX, targetY);
-            if (enemy != null) {
-                map.killEnemy(enemy);
+            if (bitboards.test(TileBitboards.ENEMIES, targetX, targetY)) { // Most tiles have no enemy, skip the search
+                Enemy enemy = map.getEnemyAt2(targetX, targetY);
+                if (enemy != null) {
+                    map.killEnemy(enemy);
+                }
             }
         }
 
-        return player.getBlastRadius();
+        return owner.getBlastRadius();
     }
 
     private int propagateBlast2(Direction direction) {
         float x = getX();
         float y = getY();
 
-        for (int i = 0; i <= player.getBlastRadius(); i++) {
+        for (int i = 0; i <= owner.getBlastRadius(); i++) {
             int targetX = (int) (x + direction.getOffsetX() * i);
             int targetY = (int) (y + direction.getOffsetY() * i);
 
-
-            if (!map.isPassablePlayer(targetX, targetY)) {
-            }
-
-            Wall wall = map.getWallContains(targetX * 64, targetY * 64);
-
-            if (wall != null) {
-                if (!wall.isDestructible()) {
-                    return i-1;
-                }
+            if (map.getBitboards().test(TileBitboards.SOLID, targetX, targetY)) {
+                return i-1;
             }
         }
 
-        return player.getBlastRadius();
+        return owner.getBlastRadius();
     }
 
 
@@ -184,6 +186,22 @@ public class Bomb extends GameObject {
         return bombTimer < 0.8f ? Animations.BOMB_EXPLOSION.getKeyFrame(stateTime, true) : Animations.BOMB_DISPLAY.getKeyFrame(stateTime, true);
     }
 
+    /** The number of bytes {@link #writeSnapshot(ByteBuffer)} writes. */
+    static final int SNAPSHOT_SIZE = 4 * 3 + 1;
+
+    /** Writes every field that changes while the bomb ticks, see {@link MapSnapshot}. */
+    void writeSnapshot(ByteBuffer out) {
+        out.putFloat(bombTimer).putFloat(explosionTimer).putFloat(stateTime).put((byte) (exploded ? 1 : 0));
+    }
+
+    /** Reads the fields written by {@link #writeSnapshot(ByteBuffer)}. */
+    void readSnapshot(ByteBuffer in) {
+        bombTimer = in.getFloat();
+        explosionTimer = in.getFloat();
+        stateTime = in.getFloat();
+        exploded = in.get() != 0;
+    }
+
     public boolean isExploded() {
         return exploded;
     }
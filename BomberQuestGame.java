@@ -8,10 +8,21 @@ import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.scenes.scene2d.ui.Skin;
 import de.tum.cit.ase.bomberquest.audio.MusicTrack;
+import de.tum.cit.ase.bomberquest.debug.ResourceTracker;
 import de.tum.cit.ase.bomberquest.map.Bomb;
 import de.tum.cit.ase.bomberquest.map.GameMap;
+import de.tum.cit.ase.bomberquest.map.MapLoader;
+import de.tum.cit.ase.bomberquest.map.MatchListener;
+import de.tum.cit.ase.bomberquest.map.MapTemplate;
+import de.tum.cit.ase.bomberquest.map.Player;
+import de.tum.cit.ase.bomberquest.map.PowerUp;
+import de.tum.cit.ase.bomberquest.map.SaveGame;
+import de.tum.cit.ase.bomberquest.net.MatchClient;
+import de.tum.cit.ase.bomberquest.net.MatchServer;
 import de.tum.cit.ase.bomberquest.screen.CountdownTimer;
+import de.tum.cit.ase.bomberquest.screen.FramePacer;
 import de.tum.cit.ase.bomberquest.screen.GameScreen;
+import de.tum.cit.ase.bomberquest.screen.LoadingScreen;
 import de.tum.cit.ase.bomberquest.screen.MenuScreen;
 import de.tum.cit.ase.bomberquest.screen.VictoryAndGameOverScreen;
 import games.spooky.gdx.nativefilechooser.NativeFileChooser;
@@ -59,6 +70,52 @@ public class BomberQuestGame extends Game {
     /** Stores the reason for the player's death (used in the game over screen). */
     private String deathReason = "";
 
+    /** Renders continuously during gameplay and only on demand on the other screens. */
+    private final FramePacer framePacer = new FramePacer();
+
+    /** The time step of the maps' physics simulation, one frame of the monitor; set in {@link #create()}. */
+    private float timeStep = GameMap.DEFAULT_TIME_STEP;
+
+    /**
+     * Plays the sounds of the current map and switches to the game over screen when its match ends.
+     * The map may be ticked on a {@link de.tum.cit.ase.bomberquest.screen.SimulationThread}, so everything is
+     * posted to the GL thread, where it runs before the next frame.
+     */
+    private final MatchListener matchListener = new MatchListener() {
+        @Override
+        public void bombPlaced(Bomb bomb) {
+            Gdx.app.postRunnable(MusicTrack.DROP::play); // Play the bomb drop sound effect
+        }
+
+        @Override
+        public void bombExploded(Bomb bomb) {
+            Gdx.app.postRunnable(MusicTrack.EXPLODE::play);
+        }
+
+        @Override
+        public void powerUpCollected(Player player, PowerUp powerUp) {
+            Gdx.app.postRunnable(MusicTrack.COLLECT::play); // Play collection sound effect
+        }
+
+        @Override
+        public void playerKilled(Player player, int cause) {
+            if (player == map.getPlayer()) { // Other players of a match may keep playing without us
+                String reason = cause == GameMap.CAUSE_BOMB ? GameMap.DEATH_BY_BOMB : GameMap.DEATH_BY_ENEMY;
+                Gdx.app.postRunnable(() -> {
+                    setDeathReason(reason); // Set the death reason
+                    goToVictoryAndGameOver(false); // Go to Game Over screen
+                });
+            }
+        }
+
+        @Override
+        public void matchOver(boolean won) {
+            if (won) {
+                Gdx.app.postRunnable(() -> goToVictoryAndGameOver(true));
+            }
+        }
+    };
+
     /**
      * Resumes the game if it was paused.
      * Restores the game screen and resumes the countdown timer.
@@ -94,19 +151,98 @@ public class BomberQuestGame extends Game {
      */
     @Override
     public void create() {
-        Bomb.victoryAndGameOverScreen = new VictoryAndGameOverScreen(this, true,deathReason);
-
-        this.spriteBatch = new SpriteBatch(); // Create SpriteBatch for rendering
-        this.skin = new Skin(Gdx.files.internal("skin/craftacular/craftacular-ui.json")); // Load UI skin
+        this.timeStep = 1f / Gdx.graphics.getDisplayMode().refreshRate; // e.g. 1/60 for 60 Hz
+        this.spriteBatch = ResourceTracker.track(new SpriteBatch()); // Create SpriteBatch for rendering
+        this.skin = ResourceTracker.track(new Skin(Gdx.files.internal("skin/craftacular/craftacular-ui.json"))); // Load UI skin
         try {
             // Load the default map when the game starts
-            this.map = new GameMap(this, "maps/map-1.properties"); // Create a new game map (you should change this to load the map from a file instead)
+            replaceMap(createMap(MapTemplate.load("maps/map-1.properties"))); // Create a new game map (you should change this to load the map from a file instead)
         } catch (IOException e) {
             e.printStackTrace();
             Gdx.app.exit();// Exit the game if the map fails to load
         }
-        BitmapFont font = new BitmapFont();
+        restoreSavedGame(); // A game saved in an earlier session can be continued from the menu
         goToMenu(); // Navigate to the menu screen
+
+        // -Dbomberquest.connect=host:port joins a match on a MatchServer instead of playing locally
+        String server = System.getProperty("bomberquest.connect");
+        if (server != null) {
+            int colon = server.lastIndexOf(':');
+            try {
+                joinMatch(colon < 0 ? server : server.substring(0, colon),
+                        colon < 0 ? MatchServer.DEFAULT_PORT : Integer.parseInt(server.substring(colon + 1)));
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("Cannot join match at " + server + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Joins a match on a {@link MatchServer} and shows it on a game screen.
+     * The server simulates the match; this game only sends the player's input and draws the snapshots it receives.
+     *
+     * @param host The host name of the server.
+     * @param port The port of the server.
+     * @throws IOException If the server cannot be reached or its map cannot be loaded.
+     */
+    public void joinMatch(String host, int port) throws IOException {
+        MatchClient client = MatchClient.connect(host, port);
+        try {
+            GameMap matchMap = createMap(MapTemplate.load(client.getTemplatePath()));
+            client.attach(matchMap);
+            leaveMatch();
+            replaceMap(matchMap);
+        } catch (IOException | RuntimeException e) {
+            client.close();
+            throw e;
+        }
+        currentGameScreen = new GameScreen(this, map, client);
+        setScreen(currentGameScreen);
+
+        MusicTrack.BACKGROUND_MENU.stop();
+        MusicTrack.BACKGROUND.play();
+    }
+
+    /** Disconnects from the match shown on the current game screen, if there is one. */
+    private void leaveMatch() {
+        if (currentGameScreen != null && currentGameScreen.getClient() != null) {
+            currentGameScreen.getClient().close();
+        }
+    }
+
+    /**
+     * Restores the game saved when the game was last paused or closed, if there is one.
+     * The restored game waits, paused, until the player chooses to continue it.
+     */
+    private void restoreSavedGame() {
+        try {
+            SaveGame saved = SaveGame.load(this::createMap);
+            if (saved == null) {
+                return;
+            }
+            replaceMap(saved.getMap());
+            currentGameScreen = new GameScreen(this, map);
+            currentGameScreen.getTimer().setTimeLeft(saved.getTimeLeft());
+            currentGameScreen.getTimer().setPause(true);
+        } catch (IOException e) {
+            System.out.println("Ignoring save file: " + e.getMessage());
+            SaveGame.deleteAsync();
+        }
+    }
+
+    /**
+     * Saves the game in progress, if there is one, so it can be continued after a restart.
+     * Finished games are not saved, and their save file is removed.
+     */
+    public void saveGame() {
+        if (currentGameScreen == null || map == null || currentGameScreen.getClient() != null) {
+            return; // Matches on a server are not saved
+        }
+        if (!map.getPlayer().isAlive()) {
+            SaveGame.deleteAsync();
+            return;
+        }
+        SaveGame.saveAsync(map, currentGameScreen.getTimer().getTimeLeft());
     }
 
     /**
@@ -115,10 +251,43 @@ public class BomberQuestGame extends Game {
      * @param mapFilePath The file path of the new map to load.
      */
     public void loadMap(String mapFilePath) throws IOException {
-        this.map = new GameMap(this, mapFilePath);
+        leaveMatch();
+        replaceMap(createMap(MapTemplate.load(mapFilePath)));
         this.currentGameScreen = new GameScreen(this, map);
         setScreen(currentGameScreen);
     }
+    /**
+     * Creates a fresh map that plays its sounds and ends the game through this game.
+     * @param template The parsed map file.
+     * @return The new map.
+     */
+    public GameMap createMap(MapTemplate template) {
+        GameMap newMap = new GameMap(template, timeStep);
+        newMap.getEventBus().subscribe(matchListener);
+        return newMap;
+    }
+
+    /**
+     * Replaces the current map and disposes the old one, including its Box2D world.
+     * @param newMap The map to use from now on.
+     */
+    private void replaceMap(GameMap newMap) {
+        if (this.map != null && this.map != newMap) {
+            this.map.dispose();
+        }
+        this.map = newMap;
+    }
+
+    /**
+     * Replaces the current map with a fresh copy of the same level.
+     */
+    private void restartMap() {
+        if (map == null) {
+            return;
+        }
+        replaceMap(createMap(map.getTemplate()));
+    }
+
     /**
      * Displays a file chooser to select and load a new map file.
      */
@@ -143,20 +312,10 @@ public class BomberQuestGame extends Game {
         fileChooser.chooseFile(conf, new NativeFileChooserCallback() {
             @Override
             public void onFileChosen(FileHandle file) {
-                try {
-                    System.out.println("Selected file: " + file.path());
-                    map = new GameMap(BomberQuestGame.this, file.path()); // Create a new game map (you should change this to load the map from a file instead)
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    System.out.println(e.getMessage());
-                    Gdx.app.exit();
-                }
-
-                currentGameScreen = new GameScreen(BomberQuestGame.this, map);
-                setScreen(currentGameScreen); // Set the current screen to GameScreen
-
-                MusicTrack.BACKGROUND_MENU.stop(); // stop playing some background music
-                MusicTrack.BACKGROUND.play(); // Play some background music
+                System.out.println("Selected file: " + file.path());
+                // Parse and build the map in the background; the loading screen starts the game when it is ready
+                MapLoader loader = MapLoader.start(file.path(), BomberQuestGame.this::createMap);
+                Gdx.app.postRunnable(() -> setScreen(new LoadingScreen(BomberQuestGame.this, loader)));
             }
 
             @Override
@@ -171,23 +330,44 @@ public class BomberQuestGame extends Game {
         });
     }
 
+    /**
+     * Switches to the game screen with a map that was loaded in the background, see {@link LoadingScreen}.
+     * The current map is replaced only now, so the game in progress is kept if loading fails or is cancelled.
+     *
+     * @param loadedMap The loaded map, created with {@link #createMap(MapTemplate)}.
+     */
+    public void startLoadedMap(GameMap loadedMap) {
+        leaveMatch();
+        replaceMap(loadedMap);
+        currentGameScreen = new GameScreen(this, map);
+        setScreen(currentGameScreen); // Set the current screen to GameScreen
+
+        MusicTrack.BACKGROUND_MENU.stop(); // stop playing some background music
+        MusicTrack.BACKGROUND.play(); // Play some background music
+    }
+
     /**
      * Switches to the menu screen.
      */
     public void goToMenu() {
         this.setScreen(new MenuScreen(this)); // Set the current screen to MenuScreen
 
-        if(currentGameScreen != null)
+        if(currentGameScreen != null) {
             currentGameScreen.getTimer().setPause(true);
+            saveGame();
+        }
 
         MusicTrack.BACKGROUND.stop(); // Play some background music
         MusicTrack.BACKGROUND_MENU.play(); // Play some background music
     }
     /**
-     * Switches to the game screen.
+     * Switches to the game screen with a fresh copy of the current level.
+     * The level is rebuilt from its parsed {@link MapTemplate}, so neither the map file nor any global resource
+     * such as the SpriteBatch or the Skin has to be loaded again.
      */
     public void goToGame() {
-        create();
+        leaveMatch();
+        restartMap();
         currentGameScreen = new GameScreen(this, this.map);
         this.setScreen(currentGameScreen); // Set the current screen to GameScreen
 
@@ -201,7 +381,9 @@ public class BomberQuestGame extends Game {
     public void goToVictoryAndGameOver(boolean won){
         this.setScreen(new VictoryAndGameOverScreen(this, won, deathReason));
 
+        leaveMatch();
         currentGameScreen = null;
+        SaveGame.deleteAsync(); // A finished game cannot be continued
 
         if(won){
             MusicTrack.WIN.play();
@@ -222,6 +404,11 @@ public class BomberQuestGame extends Game {
         return spriteBatch;
     }
 
+    /** Returns the time step of the maps, the time of one tick in seconds. */
+    public float getTimeStep() {
+        return timeStep;
+    }
+
     /** Returns the current map, if there is one. */
     public GameMap getMap() {
         return map;
@@ -240,17 +427,48 @@ public class BomberQuestGame extends Game {
     public void setScreen(Screen screen) {
         Screen previousScreen = super.screen;
         super.setScreen(screen);
+        framePacer.screenChanged(screen);
         if (previousScreen != null && previousScreen != screen) {
             // previousScreen.dispose();
         }
+        // In debug mode, print the live native resources so leaks across screen changes become visible
+        ResourceTracker.printLiveCounts("setScreen " + (screen == null ? "null" : screen.getClass().getSimpleName()));
+    }
+
+    /** Renders the current screen and waits for the next frame if the frame rate is capped. */
+    @Override
+    public void render() {
+        super.render();
+        framePacer.endFrame();
+    }
+
+    /** Pauses the current screen and stops rendering continuously, e.g. while the window is minimized. */
+    @Override
+    public void pause() {
+        super.pause();
+        framePacer.setPaused(true);
+    }
+
+    @Override
+    public void resume() {
+        framePacer.setPaused(false);
+        super.resume();
     }
 
     /** Cleans up resources when the game is disposed. */
     @Override
     public void dispose() {
-        getScreen().hide(); // Hide the current screen
+        getScreen().hide(); // Hide the current screen, which stops its simulation thread
+        saveGame(); // Keep the game in progress for the next launch
+        SaveGame.awaitWrites();
+        leaveMatch();
         getScreen().dispose(); // Dispose the current screen
-        spriteBatch.dispose(); // Dispose the spriteBatch
-        skin.dispose(); // Dispose the skin
+        if (map != null) {
+            map.dispose(); // Dispose the map's physics world
+        }
+        ResourceTracker.dispose(spriteBatch); // Dispose the spriteBatch
+        ResourceTracker.dispose(skin); // Dispose the skin
+        ResourceTracker.printLiveCounts("dispose");
+        ResourceTracker.printAllocationSites(null); // Anything still alive at this point has leaked
     }
 }
@@ -0,0 +1,431 @@
+package de.tum.cit.ase.bomberquest.bot;
+
+import de.tum.cit.ase.bomberquest.map.Bomb;
+import de.tum.cit.ase.bomberquest.map.Enemy;
+import de.tum.cit.ase.bomberquest.map.Exit;
+import de.tum.cit.ase.bomberquest.map.GameMap;
+import de.tum.cit.ase.bomberquest.map.MapTemplate;
+import de.tum.cit.ase.bomberquest.map.Player;
+import de.tum.cit.ase.bomberquest.map.PowerUp;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A scripted player that plays a map on its own, for bot matches and map analysis.
+ * It only uses what a human player could see: the passable tiles ({@link GameMap#isPassable(int, int)}),
+ * bombs, enemies, revealed power-ups and the exit.
+ *
+ * Every tick it picks the first of these goals that it can reach with a breadth-first search:
+ * leave the blast of a bomb, walk to the unlocked exit, collect a revealed power-up, or walk to a tile next to a
+ * destructible wall or in line with an enemy and place a bomb there, if it can escape the blast afterwards.
+ * Otherwise it wanders around.
+ */
+public final class BotPlayer {
+
+    /** The number of tiles the bot may walk to leave the blast of its own bomb; the fuse allows about six. */
+    private static final int MAX_ESCAPE_STEPS = 4;
+    /** How far the player may be off the middle of a tile before it turns or places a bomb. */
+    private static final float ALIGNMENT = 0.06f;
+    /** The offset of the middle of a tile from the player's position, which is the corner of its half-tile box. */
+    private static final float CENTER = 0.25f;
+    /** How many tiles the bot walks farther to hit one more wall or enemy with a bomb. */
+    private static final int TILES_PER_TARGET = 4;
+    /** How much farther than the best bomb spot found so far the search looks for a better one. */
+    private static final int MAX_DETOUR = 8;
+    /** How many ticks the bot keeps walking to a bomb spot before it looks for a better one. */
+    private static final int REPLAN_TICKS = 15;
+
+    private static final int[] STEP_X = {-1, 1, 0, 0};
+    private static final int[] STEP_Y = {0, 0, 1, -1};
+
+    private final GameMap map;
+    private final Player player;
+    private final SplittableRandom random;
+    private final int width;
+    private final int height;
+
+    // Search state, reused every tick
+    /** Tiles that a bomb on the map will hit. */
+    private final boolean[] danger;
+    /** Tiles that a bomb placed by the bot would hit in addition, while checking whether it can escape. */
+    private final boolean[] extraDanger;
+    private final boolean[] blocked;
+    private final int[] previous;
+    private final int[] distance;
+    private final int[] queue;
+    /** The escape search runs inside the main search, so it has its own queue; marks are stamped to skip clearing. */
+    private final int[] escapeQueue;
+    private final int[] escapeSteps;
+    private final int[] escapeMark;
+    private int escapeStamp;
+
+    private int wanderTarget = -1;
+    private int bombSpot = -1;
+    private int replanTicks;
+    /** The tile searched for by {@link Goal#TARGET}. */
+    private int target;
+
+    /**
+     * Creates a bot for a player. The player is switched to input control.
+     * @param map The map the player is on.
+     * @param player The player to steer.
+     * @param seed The seed of the bot's random decisions.
+     */
+    public BotPlayer(GameMap map, Player player, long seed) {
+        this.map = map;
+        this.player = player;
+        this.random = new SplittableRandom(seed);
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        int tileCount = width * height;
+        this.danger = new boolean[tileCount];
+        this.extraDanger = new boolean[tileCount];
+        this.blocked = new boolean[tileCount];
+        this.previous = new int[tileCount];
+        this.distance = new int[tileCount];
+        this.queue = new int[tileCount];
+        this.escapeQueue = new int[tileCount];
+        this.escapeSteps = new int[tileCount];
+        this.escapeMark = new int[tileCount];
+        player.setInput(0);
+    }
+
+    /** Decides the input of the next tick and gives it to the player. */
+    public void tick() {
+        player.setInput(player.isAlive() ? decide() : 0);
+    }
+
+    private int decide() {
+        int here = tileOf(player.getX() + CENTER, player.getY() + CENTER);
+        updateBlocked();
+        updateDanger();
+
+        // Leave the blast of a bomb, walking through the blast if needed
+        if (isInDanger()) {
+            int safe = search(here, true, Goal.SAFE);
+            return safe < 0 ? 0 : steerTowards(here, safe);
+        }
+
+        Exit exit = map.getExit();
+        if (exit != null && exit.isUnlocked() && map.isPassable((int) exit.getX(), (int) exit.getY())) {
+            int target = search(here, false, Goal.EXIT);
+            if (target >= 0) {
+                return steerTowards(here, target);
+            }
+        }
+
+        int powerUp = search(here, false, Goal.POWER_UP);
+        if (powerUp >= 0) {
+            return steerTowards(here, powerUp);
+        }
+
+        if (countOwnBombs() < player.getBombLimit()) {
+            // Choosing a spot is the expensive part, so the bot sticks to it for a while
+            if (--replanTicks <= 0 || !isReachable(here, bombSpot)) {
+                bombSpot = search(here, false, Goal.BOMB_SPOT);
+                replanTicks = REPLAN_TICKS;
+            }
+            if (bombSpot == here && isAligned(here)) {
+                bombSpot = -1;
+                if (canEscapeBombAt(here % width, here / width)) {
+                    return Player.INPUT_BOMB;
+                }
+            }
+            if (bombSpot >= 0) {
+                return steerTowards(here, bombSpot);
+            }
+        }
+
+        // Nothing to do: walk to a random reachable tile
+        if (wanderTarget == here || !isReachable(here, wanderTarget)) {
+            wanderTarget = search(here, false, Goal.RANDOM);
+        }
+        return wanderTarget < 0 ? 0 : steerTowards(here, wanderTarget);
+    }
+
+    /** Returns whether the tile can still be reached safely, and leaves the path to it in {@link #previous}. */
+    private boolean isReachable(int here, int tile) {
+        if (tile < 0) {
+            return false;
+        }
+        target = tile;
+        return search(here, false, Goal.TARGET) >= 0;
+    }
+
+    private enum Goal {
+        SAFE, EXIT, POWER_UP, BOMB_SPOT, RANDOM, TARGET
+    }
+
+    /**
+     * Searches the nearest tile that fulfils a goal, breadth first, and fills {@link #previous} with the paths to it.
+     * For {@link Goal#BOMB_SPOT} it returns the best spot instead: the one that destroys the most, minus the way there.
+     * @param start The tile of the player.
+     * @param throughDanger Whether the path may lead through tiles that a bomb will hit.
+     * @param goal The goal.
+     * @return The tile, or -1 if no reachable tile fulfils the goal.
+     */
+    private int search(int start, boolean throughDanger, Goal goal) {
+        int head = 0;
+        int tail = 0;
+        int pick = -1;
+        int seen = 0;
+        int bestScore = Integer.MIN_VALUE;
+        Arrays.fill(previous, -2);
+        previous[start] = -1;
+        distance[start] = 0;
+        queue[tail++] = start;
+        while (head < tail) {
+            int tile = queue[head++];
+            if (goal == Goal.BOMB_SPOT) {
+                if (pick >= 0 && distance[tile] > distance[pick] + MAX_DETOUR) {
+                    break; // Farther spots cannot make up for the longer way
+                }
+                int score = TILES_PER_TARGET * countBombTargets(tile % width, tile / width) - distance[tile];
+                if (score > bestScore && score > -distance[tile] && canEscapeBombAt(tile % width, tile / width)) {
+                    bestScore = score;
+                    pick = tile;
+                }
+            } else if (isGoal(tile, goal)) {
+                if (goal != Goal.RANDOM) {
+                    return tile;
+                }
+                if (random.nextInt(++seen) == 0) {
+                    pick = tile; // Reservoir sampling: every reachable tile is equally likely
+                }
+            }
+            int x = tile % width;
+            int y = tile / width;
+            for (int direction = 0; direction < 4; direction++) {
+                int nx = x + STEP_X[direction];
+                int ny = y + STEP_Y[direction];
+                if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+                    continue;
+                }
+                int next = ny * width + nx;
+                if (previous[next] != -2 || blocked[next] || (!throughDanger && danger[next])) {
+                    continue;
+                }
+                previous[next] = tile;
+                distance[next] = distance[tile] + 1;
+                queue[tail++] = next;
+            }
+        }
+        return pick;
+    }
+
+    private boolean isGoal(int tile, Goal goal) {
+        int x = tile % width;
+        int y = tile / width;
+        switch (goal) {
+            case SAFE:
+                return !danger[tile];
+            case EXIT:
+                return map.getExit().getX() == x && map.getExit().getY() == y;
+            case POWER_UP:
+                for (PowerUp powerUp : map.getPowerUps()) {
+                    if ((int) powerUp.getX() == x && (int) powerUp.getY() == y) {
+                        return true;
+                    }
+                }
+                return false;
+            case TARGET:
+                return tile == target;
+            default:
+                return !danger[tile];
+        }
+    }
+
+    /** Returns the number of destructible walls and enemies a bomb at the tile would hit. */
+    private int countBombTargets(int x, int y) {
+        int targets = 0;
+        int radius = player.getBlastRadius();
+        for (int direction = 0; direction < 4; direction++) {
+            for (int i = 1; i <= radius; i++) {
+                int tx = x + STEP_X[direction] * i;
+                int ty = y + STEP_Y[direction] * i;
+                byte tile = tileAt(tx, ty);
+                if (tile == MapTemplate.TILE_INDESTRUCTIBLE) {
+                    break;
+                }
+                if ((tile == MapTemplate.TILE_DESTRUCTIBLE && !map.isPassable(tx, ty)) || hasEnemyAt(tx, ty)) {
+                    targets++;
+                }
+            }
+        }
+        return targets;
+    }
+
+    /** Returns whether the player could reach a safe tile in time after placing a bomb at the tile. */
+    private boolean canEscapeBombAt(int x, int y) {
+        Arrays.fill(extraDanger, false);
+        markBlast(x, y, player.getBlastRadius(), extraDanger);
+        int start = y * width + x;
+        int stamp = ++escapeStamp;
+        int head = 0;
+        int tail = 0;
+        escapeMark[start] = stamp;
+        escapeQueue[tail] = start;
+        escapeSteps[tail++] = 0;
+        while (head < tail) {
+            int tile = escapeQueue[head];
+            int distance = escapeSteps[head++];
+            if (!danger[tile] && !extraDanger[tile]) {
+                return true;
+            }
+            if (distance == MAX_ESCAPE_STEPS) {
+                continue;
+            }
+            int tx = tile % width;
+            int ty = tile / width;
+            for (int direction = 0; direction < 4; direction++) {
+                int nx = tx + STEP_X[direction];
+                int ny = ty + STEP_Y[direction];
+                if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+                    continue;
+                }
+                int next = ny * width + nx;
+                if (escapeMark[next] == stamp || blocked[next] || danger[next]) { // Older bombs may go off first
+                    continue;
+                }
+                escapeMark[next] = stamp;
+                escapeQueue[tail] = next;
+                escapeSteps[tail++] = distance + 1;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the input that moves the player one step along the path found by the last search. */
+    private int steerTowards(int here, int target) {
+        int step = target;
+        while (previous[step] >= 0 && previous[step] != here) {
+            step = previous[step];
+        }
+        int targetX = step % width;
+        int targetY = step / width;
+        float dx = targetX + CENTER - player.getX();
+        float dy = targetY + CENTER - player.getY();
+        int hereX = here % width;
+        int hereY = here / width;
+        // Get to the middle of the lane first, otherwise the player's box catches on the corner of a wall
+        if (targetX != hereX && Math.abs(dy) > ALIGNMENT) {
+            return dy > 0 ? Player.INPUT_UP : Player.INPUT_DOWN;
+        }
+        if (targetY != hereY && Math.abs(dx) > ALIGNMENT) {
+            return dx > 0 ? Player.INPUT_RIGHT : Player.INPUT_LEFT;
+        }
+        if (Math.abs(dx) > ALIGNMENT) {
+            return dx > 0 ? Player.INPUT_RIGHT : Player.INPUT_LEFT;
+        }
+        if (Math.abs(dy) > ALIGNMENT) {
+            return dy > 0 ? Player.INPUT_UP : Player.INPUT_DOWN;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns whether a bomb will hit any of the tiles the player's box overlaps.
+     * The box is slightly enlarged, the blast test in {@link Bomb} rounds to 1/64 of a tile.
+     */
+    private boolean isInDanger() {
+        float margin = 1f / 32;
+        int left = (int) (player.getX() - margin);
+        int right = (int) (player.getX() + player.getWidth() + margin);
+        int bottom = (int) (player.getY() - margin);
+        int top = (int) (player.getY() + player.getHeight() + margin);
+        for (int y = bottom; y <= top; y++) {
+            for (int x = left; x <= right; x++) {
+                if (x >= 0 && y >= 0 && x < width && y < height && danger[y * width + x]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isAligned(int tile) {
+        return Math.abs(tile % width + CENTER - player.getX()) <= ALIGNMENT
+                && Math.abs(tile / width + CENTER - player.getY()) <= ALIGNMENT;
+    }
+
+    /** Marks walls, bombs and enemies, and the tiles next to enemies, as impassable. */
+    private void updateBlocked() {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                blocked[y * width + x] = !map.isPassable(x, y);
+            }
+        }
+        for (Bomb bomb : map.getBombs()) {
+            blocked[(int) bomb.getY() * width + (int) bomb.getX()] = true;
+        }
+        for (Enemy enemy : map.getEnemies()) {
+            int x = (int) (enemy.getX() + 0.5f);
+            int y = (int) (enemy.getY() + 0.5f);
+            block(x, y);
+            for (int direction = 0; direction < 4; direction++) {
+                block(x + STEP_X[direction], y + STEP_Y[direction]);
+            }
+        }
+    }
+
+    private void block(int x, int y) {
+        if (x >= 0 && y >= 0 && x < width && y < height) {
+            blocked[y * width + x] = true;
+        }
+    }
+
+    private void updateDanger() {
+        Arrays.fill(danger, false);
+        for (Bomb bomb : map.getBombs()) {
+            markBlast((int) bomb.getX(), (int) bomb.getY(), bomb.getOwner().getBlastRadius(), danger);
+        }
+    }
+
+    /** Marks the tiles a bomb at the given tile would hit; the blast passes destructible walls, like in {@link Bomb}. */
+    private void markBlast(int x, int y, int radius, boolean[] into) {
+        into[y * width + x] = true;
+        for (int direction = 0; direction < 4; direction++) {
+            for (int i = 1; i <= radius; i++) {
+                int tx = x + STEP_X[direction] * i;
+                int ty = y + STEP_Y[direction] * i;
+                if (tileAt(tx, ty) == MapTemplate.TILE_INDESTRUCTIBLE) {
+                    break;
+                }
+                into[ty * width + tx] = true;
+            }
+        }
+    }
+
+    private byte tileAt(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return MapTemplate.TILE_INDESTRUCTIBLE;
+        }
+        return map.getTemplate().getTile(x, y);
+    }
+
+    private boolean hasEnemyAt(int x, int y) {
+        for (Enemy enemy : map.getEnemies()) {
+            if ((int) (enemy.getX() + 0.5f) == x && (int) (enemy.getY() + 0.5f) == y) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int countOwnBombs() {
+        int count = 0;
+        for (Bomb bomb : map.getBombs()) {
+            if (bomb.getOwner() == player) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int tileOf(float x, float y) {
+        int tileX = Math.max(0, Math.min(width - 1, (int) x));
+        int tileY = Math.max(0, Math.min(height - 1, (int) y));
+        return tileY * width + tileX;
+    }
+}
@@ -0,0 +1,170 @@
+package de.tum.cit.ase.bomberquest.bot;
+
+import de.tum.cit.ase.bomberquest.map.GameMap;
+import de.tum.cit.ase.bomberquest.map.MapGenerator;
+import de.tum.cit.ase.bomberquest.map.MapTemplate;
+import de.tum.cit.ase.bomberquest.map.MatchListener;
+import de.tum.cit.ase.bomberquest.map.Player;
+import de.tum.cit.ase.bomberquest.map.PowerUp;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * Plays many headless matches of {@link BotPlayer}s on each map in parallel on all cores, and reports how hard
+ * each map is: win rate, time to clear, causes of death and the order in which power-ups were picked up.
+ * The number of simulated ticks per second doubles as a throughput benchmark of the simulation.
+ *
+ * A match is lost when the bot dies or when it runs out of time, like the countdown of the game.
+ * Every match reseeds the map's random numbers and the bot, so the enemies and the bot behave differently.
+ *
+ * Usage: {@code BotTournament [matches per map] [map file or gen:size:seed]...}
+ */
+public final class BotTournament {
+
+    private static final int TICK_RATE = 60;
+    /** The time limit of a match, the same as the countdown of the game screen. */
+    private static final int TIME_LIMIT_SECONDS = 300;
+    /** The number of most common power-up orders reported per map. */
+    private static final int TOP_ORDERS = 3;
+
+    private BotTournament() {
+    }
+
+    /** The outcome of one match. */
+    private static final class Result {
+        boolean won;
+        int ticks;
+        /** Why the bot lost, or null if it won. */
+        String deathReason;
+        /** The types of the collected power-ups in the order they were picked up, separated by "&gt;". */
+        String pickupOrder = "";
+    }
+
+    /**
+     * Plays one match.
+     * @param template The map.
+     * @param seed The seed of the map's and the bot's random numbers.
+     * @return The outcome.
+     */
+    private static Result play(MapTemplate template, long seed) {
+        GameMap map = new GameMap(template, 1f / TICK_RATE);
+        map.setRandomSeed(seed);
+        Player player = map.getPlayer();
+        BotPlayer bot = new BotPlayer(map, player, seed);
+        Result result = new Result();
+        StringBuilder pickups = new StringBuilder();
+        map.getEventBus().subscribe(new MatchListener() {
+            @Override
+            public void powerUpCollected(Player collector, PowerUp powerUp) {
+                pickups.append(pickups.length() == 0 ? "" : ">").append(powerUp.getType());
+            }
+
+            @Override
+            public void playerKilled(Player killed, int cause) {
+                result.deathReason = cause == GameMap.CAUSE_BOMB ? GameMap.DEATH_BY_BOMB : GameMap.DEATH_BY_ENEMY;
+            }
+        });
+
+        int limit = TIME_LIMIT_SECONDS * TICK_RATE;
+        float tickTime = 1f / TICK_RATE;
+        while (!map.isOver() && result.ticks < limit) {
+            bot.tick();
+            map.tick(tickTime);
+            result.ticks++;
+        }
+        result.won = map.isWon();
+        if (!map.isOver()) {
+            result.deathReason = GameMap.DEATH_BY_TIME;
+        }
+        result.pickupOrder = pickups.toString();
+        map.dispose();
+        return result;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int matches = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        List<MapTemplate> templates = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            templates.add(loadTemplate(args[i]));
+        }
+        if (templates.isEmpty()) {
+            for (int seed = 1; seed <= 3; seed++) {
+                templates.add(loadTemplate("gen:21:" + seed));
+            }
+        }
+        System.out.println("BotTournament: " + matches + " matches per map on "
+                + Runtime.getRuntime().availableProcessors() + " cores");
+
+        for (MapTemplate template : templates) {
+            long start = System.nanoTime();
+            Result[] results = IntStream.range(0, matches).parallel()
+                    .mapToObj(match -> play(template, match * 0x9E3779B97F4A7C15L + template.getPath().hashCode()))
+                    .toArray(Result[]::new);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            report(System.out, template, results, seconds);
+        }
+    }
+
+    /** Loads a map file, or generates a map for "gen:size:seed" with grid movement. */
+    private static MapTemplate loadTemplate(String name) throws IOException {
+        if (name.startsWith("gen:")) {
+            String[] parts = name.split(":");
+            int size = Integer.parseInt(parts[1]);
+            MapGenerator generator = new MapGenerator(size, size, parts.length > 2 ? Long.parseLong(parts[2]) : 1);
+            generator.setMovement(GameMap.MOVEMENT_GRID); // No native Box2D needed
+            return generator.generate();
+        }
+        return MapTemplate.load(name);
+    }
+
+    private static void report(PrintStream out, MapTemplate template, Result[] results, double seconds) {
+        int wins = 0;
+        long ticks = 0;
+        int[] clearTicks = new int[results.length];
+        Map<String, Integer> deaths = new TreeMap<>();
+        Map<String, Integer> orders = new LinkedHashMap<>();
+        for (Result result : results) {
+            ticks += result.ticks;
+            if (result.won) {
+                clearTicks[wins++] = result.ticks;
+            } else {
+                deaths.merge(result.deathReason, 1, Integer::sum);
+            }
+            orders.merge(result.pickupOrder.isEmpty() ? "(none)" : result.pickupOrder, 1, Integer::sum);
+        }
+        int n = results.length;
+        double winRate = (double) wins / n;
+        double margin = 1.96 * Math.sqrt(winRate * (1 - winRate) / n); // 95% confidence interval
+
+        out.printf("%n%s: %d matches in %.1f s, %.0f matches/s, %.2f M ticks/s%n",
+                template.getPath(), n, seconds, n / seconds, ticks / seconds / 1e6);
+        out.printf("  win rate %.1f%% +- %.1f%%%n", 100 * winRate, 100 * margin);
+        if (wins > 0) {
+            int[] sorted = Arrays.copyOf(clearTicks, wins);
+            Arrays.sort(sorted);
+            out.printf("  time to clear: median %.1f s, 10%% %.1f s, 90%% %.1f s%n", seconds(sorted, 0.5),
+                    seconds(sorted, 0.1), seconds(sorted, 0.9));
+        }
+        for (Map.Entry<String, Integer> death : deaths.entrySet()) {
+            out.printf("  %-24s %5.1f%%%n", death.getKey(), 100.0 * death.getValue() / n);
+        }
+        out.println("  power-up order:");
+        orders.entrySet().stream()
+                .sorted((a, b) -> b.getValue() - a.getValue())
+                .limit(TOP_ORDERS)
+                .forEach(order -> out.printf("    %5.1f%% %s%n", 100.0 * order.getValue() / n, order.getKey()));
+    }
+
+    private static double seconds(int[] sortedTicks, double quantile) {
+        int index = Math.min(sortedTicks.length - 1, (int) (quantile * sortedTicks.length));
+        return (double) sortedTicks[index] / TICK_RATE;
+    }
+}
@@ -0,0 +1,279 @@
+package de.tum.cit.ase.bomberquest.map;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.Box2D;
+import com.badlogic.gdx.physics.box2d.CircleShape;
+import com.badlogic.gdx.physics.box2d.FixtureDef;
+import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.physics.box2d.World;
+import de.tum.cit.ase.bomberquest.debug.ResourceTracker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Movement backend that simulates the player, the enemies, the walls and all sensors with Box2D.
+ * Walls are static colliders (see {@link WallColliders}), the player and the enemies are dynamic circles.
+ */
+public class Box2dMovement implements MovementBackend {
+
+    // A static block is executed once when the class is referenced for the first time.
+    static {
+        // Initialize the Box2D physics engine.
+        Box2D.init();
+    }
+
+    /** The number of velocity iterations for the physics simulation. */
+    private static final int VELOCITY_ITERATIONS = 6;
+    /** The number of position iterations for the physics simulation. */
+    private static final int POSITION_ITERATIONS = 2;
+    /** The maximum number of deactivated bodies kept around for reuse. */
+    private static final int MAX_FREE_BODIES = 32;
+
+    /** The time step for the physics simulation. */
+    private final float timeStep;
+    /**
+     * The accumulated time since the last physics step.
+     * We use this to keep the physics simulation at a constant rate even if the frame rate is variable.
+     */
+    private float physicsTime = 0;
+
+    /** The Box2D world for physics simulation. */
+    private final World world;
+    /** The static colliders of the walls. */
+    private final WallColliders wallColliders;
+    /** The body of every id, null for ids that are free. */
+    private Body[] bodies = new Body[16];
+    private int bodyCount;
+    /** Ids of removed bodies that can be handed out again. */
+    private int[] freeIds = new int[16];
+    private int freeIdCount;
+    /**
+     * Bodies of removed objects. Bodies must not be destroyed while the world might be stepping
+     * or while something still iterates over them, so removals are queued during the tick
+     * and processed right after the next {@code world.step}.
+     */
+    private final List<Body> releasedBodies = new ArrayList<>();
+    /** Deactivated enemy bodies that are handed to new enemies instead of creating new bodies. */
+    private final List<Body> freeEnemyBodies = new ArrayList<>();
+
+    /**
+     * Creates the Box2D world and the wall colliders.
+     * @param walls The walls of the map, indexed [y][x].
+     * @param contacts The queue that receives the contacts of every step.
+     * @param timeStep The fixed time step of the simulation.
+     */
+    public Box2dMovement(Wall[][] walls, MapContactListener contacts, float timeStep) {
+        this.timeStep = timeStep;
+        this.world = ResourceTracker.track(new World(new Vector2(0, 0), true));//initialize physical world
+        this.world.setContactListener(contacts);
+        // Walls are solid for the physics engine, indestructible ones merged into large rectangles
+        this.wallColliders = new WallColliders(world, walls);
+    }
+
+    @Override
+    public int addActor(Object owner, int kind, float x, float y) {
+        Body body = kind == KIND_ENEMY ? obtainEnemyBody(x, y) : null;
+        if (body == null) {
+            body = createActorBody(kind, x, y);
+        }
+        body.setUserData(owner);
+        return register(body);
+    }
+
+    /**
+     * Creates a Box2D body for the player or an enemy.
+     * This is what the physics engine uses to move the object around and detect collisions with other bodies.
+     */
+    private Body createActorBody(int kind, float x, float y) {
+        // BodyDef is like a blueprint for the movement properties of the body.
+        BodyDef bodyDef = new BodyDef();
+        // Dynamic bodies are affected by forces and collisions.
+        bodyDef.type = BodyDef.BodyType.DynamicBody;
+        // Set the initial position of the body.
+        bodyDef.position.set(x, y);
+        Body body = world.createBody(bodyDef);
+
+        CircleShape circle = new CircleShape();
+        FixtureDef fixtureDef = new FixtureDef();
+        fixtureDef.shape = circle;
+        fixtureDef.density = 1.0f;
+        if (kind == KIND_PLAYER) {
+            // The player's hitbox is the 0.5 x 0.5 square above and to the right of its position,
+            // so the circle is centered in that square.
+            circle.setRadius(0.25f);
+            circle.setPosition(new Vector2(0.25f, 0.25f));
+            fixtureDef.filter.categoryBits = MapContactListener.CATEGORY_PLAYER;
+        } else {
+            // The enemy covers the whole tile above and to the right of its position, so the circle sits in its center.
+            circle.setRadius(0.4f);
+            circle.setPosition(new Vector2(0.5f, 0.5f));
+            fixtureDef.filter.categoryBits = MapContactListener.CATEGORY_ENEMY;
+            fixtureDef.filter.maskBits = MapContactListener.CATEGORY_PLAYER | MapContactListener.CATEGORY_ENEMY | WallColliders.CATEGORY_WALL;
+        }
+        body.createFixture(fixtureDef);
+        circle.dispose();// Cleanup after creating the fixture.
+        return body;
+    }
+
+    /**
+     * Hands out a previously released enemy body, moved to the given position and reactivated.
+     * @return A recycled body, or null if there is none and a new one has to be created.
+     */
+    private Body obtainEnemyBody(float x, float y) {
+        if (freeEnemyBodies.isEmpty()) {
+            return null;
+        }
+        Body body = freeEnemyBodies.remove(freeEnemyBodies.size() - 1);
+        body.setTransform(x, y, 0);
+        body.setLinearVelocity(0, 0);
+        body.setActive(true);
+        return body;
+    }
+
+    @Override
+    public void removeActor(int id) {
+        release(id);
+    }
+
+    @Override
+    public void setVelocity(int id, float vx, float vy) {
+        bodies[id].setLinearVelocity(vx, vy);
+    }
+
+    @Override
+    public void setPosition(int id, float x, float y) {
+        bodies[id].setTransform(x, y, 0);
+    }
+
+    @Override
+    public float getX(int id) {
+        return bodies[id].getPosition().x;
+    }
+
+    @Override
+    public float getY(int id) {
+        return bodies[id].getPosition().y;
+    }
+
+    @Override
+    public int addSensor(Object owner, int tileX, int tileY, boolean active) {
+        BodyDef bodyDef = new BodyDef();
+        bodyDef.type = BodyDef.BodyType.StaticBody;
+        bodyDef.position.set(tileX + 0.5f, tileY + 0.5f);
+        bodyDef.active = active;
+        Body body = world.createBody(bodyDef);
+        PolygonShape box = new PolygonShape();
+        box.setAsBox(0.3f, 0.3f);
+        FixtureDef fixtureDef = new FixtureDef();
+        fixtureDef.shape = box;
+        fixtureDef.isSensor = true;
+        fixtureDef.filter.categoryBits = MapContactListener.CATEGORY_PICKUP;
+        fixtureDef.filter.maskBits = MapContactListener.CATEGORY_PLAYER;
+        body.createFixture(fixtureDef);
+        box.dispose();
+        body.setUserData(owner);
+        return register(body);
+    }
+
+    @Override
+    public void setSensorActive(int id, boolean active) {
+        bodies[id].setActive(active);
+    }
+
+    @Override
+    public void removeSensor(int id) {
+        release(id);
+    }
+
+    @Override
+    public void removeWall(int x, int y) {
+        wallColliders.removeWall(x, y);
+    }
+
+    private int register(Body body) {
+        if (freeIdCount > 0) {
+            int id = freeIds[--freeIdCount];
+            bodies[id] = body;
+            return id;
+        }
+        if (bodyCount == bodies.length) {
+            bodies = Arrays.copyOf(bodies, bodyCount * 2);
+        }
+        bodies[bodyCount] = body;
+        return bodyCount++;
+    }
+
+    /** Frees the id and queues the body for destruction after the next physics step. */
+    private void release(int id) {
+        Body body = bodies[id];
+        if (body != null) {
+            bodies[id] = null;
+            body.setActive(false); // Leaves the broadphase right away; allowed, since the world is not stepping now
+            releasedBodies.add(body);
+            if (freeIdCount == freeIds.length) {
+                freeIds = Arrays.copyOf(freeIds, freeIdCount * 2);
+            }
+            freeIds[freeIdCount++] = id;
+        }
+    }
+
+    /**
+     * Performs physics updates to maintain consistent game behavior.
+     * @param frameTime Time passed since the last frame.
+     */
+    @Override
+    public void step(float frameTime) {
+        this.physicsTime += frameTime;
+        while (this.physicsTime >= timeStep) {
+            this.world.step(timeStep, VELOCITY_ITERATIONS, POSITION_ITERATIONS);
+            this.physicsTime -= timeStep;
+        }
+        processReleasedBodies();
+    }
+
+    /**
+     * Destroys or recycles all bodies released since the last physics step, which were deactivated when they were
+     * released. Enemy bodies are kept for reuse; all other bodies are destroyed.
+     */
+    private void processReleasedBodies() {
+        for (int i = 0; i < releasedBodies.size(); i++) {
+            Body body = releasedBodies.get(i);
+            if (body.getUserData() instanceof Enemy && freeEnemyBodies.size() < MAX_FREE_BODIES) {
+                body.setLinearVelocity(0, 0);
+                body.setUserData(null);
+                freeEnemyBodies.add(body);
+            } else {
+                world.destroyBody(body);
+            }
+        }
+        releasedBodies.clear();
+        wallColliders.processRemovals();
+    }
+
+    @Override
+    public Object saveState(Object reuse) {
+        throw new UnsupportedOperationException("Box2D keeps contacts in native code that cannot be rolled back, use grid movement");
+    }
+
+    @Override
+    public void restoreState(Object state) {
+        throw new UnsupportedOperationException("Box2D keeps contacts in native code that cannot be rolled back, use grid movement");
+    }
+
+    @Override
+    public World getWorld() {
+        return world;
+    }
+
+    @Override
+    public void dispose() {
+        releasedBodies.clear();
+        freeEnemyBodies.clear();
+        Arrays.fill(bodies, null);
+        ResourceTracker.dispose(world);
+    }
+}
@@ -2,6 +2,7 @@ package de.tum.cit.ase.bomberquest.screen;
 
 import com.badlogic.gdx.utils.Timer;
 import de.tum.cit.ase.bomberquest.BomberQuestGame;
+import de.tum.cit.ase.bomberquest.map.GameMap;
 /**
  * The CountdownTimer class manages the in-game countdown timer.
  * It decreases the time every second and triggers a game over when time runs out.
@@ -73,7 +74,7 @@ public class CountdownTimer {
     private void endGame(){
         isGameOver = true;
         stop();//stop the timer
-        game.setDeathReason("Time ran out."); // Set the death reason
+        game.setDeathReason(GameMap.DEATH_BY_TIME); // Set the death reason
         game.goToVictoryAndGameOver(false); // Go to Game Over screen
     }
 
@@ -86,6 +87,15 @@ public class CountdownTimer {
         return timeLeft;
     }
 
+    /**
+     * Sets the remaining time, e.g. when a saved game is restored.
+     *
+     * @param timeLeft The remaining time in seconds.
+     */
+    public void setTimeLeft(float timeLeft) {
+        this.timeLeft = timeLeft;
+    }
+
     public Timer.Task getTimerTask() {
         return timerTask;
     }
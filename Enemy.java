@@ -6,14 +6,9 @@ import com.badlogic.gdx.math.Rectangle;
 import de.tum.cit.ase.bomberquest.texture.Animations;
 import de.tum.cit.ase.bomberquest.texture.Drawable;
 import com.badlogic.gdx.math.Vector2;
-import com.badlogic.gdx.physics.box2d.Body;
-import com.badlogic.gdx.physics.box2d.BodyDef;
-import com.badlogic.gdx.physics.box2d.CircleShape;
-import com.badlogic.gdx.physics.box2d.FixtureDef;
-import com.badlogic.gdx.physics.box2d.World;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Random;
 
 /**
  * Represents an enemy character in the game.
@@ -22,57 +17,41 @@ import java.util.Random;
  */
 public class Enemy extends GameObject {
 
-    // The physical body used for collision detection.
-    private final Body hitbox;
+    // The id of the hitbox in the map's movement backend, used for position and collision detection.
+    private final int moverId;
     // Reference to the game map.
     private GameMap map;
     // Movement speed of the enemy.
     private float speed = 0.4f;
     // Status to check if the enemy is alive.
     private boolean alive = true;
-    // For generating random movement.
-    private Random random = new Random();
-    // Current animation based on the enemy's movement.
-    private Animation<TextureRegion> currentAnimation;
     // Timer for managing animation states.
     private float stateTime = 0;
     // Initial direction of the enemy.
     private Direction currentDirection = Direction.DOWN;
     // Current velocity of the enemy.
     private Vector2 velocity = new Vector2();
+    // How long the enemy has been (almost) not moving, i.e. walking against a wall.
+    private float stuckTime = 0;
+    // Position at the previous update, used to notice that the enemy is stuck.
+    private float lastX;
+    private float lastY;
+    // After this many seconds without moving, the enemy picks a new direction.
+    private static final float STUCK_TIMEOUT = 0.15f;
 
     /**
      * Constructor to create an enemy.
-     * @param world The Box2D world where the enemy will exist.
      * @param x Initial x-coordinate of the enemy.
      * @param y Initial y-coordinate of the enemy.
      * @param map Reference to the game map for navigation.
      */
-    public Enemy(World world, float x, float y, GameMap map) {
+    public Enemy(float x, float y, GameMap map) {
         super(x, y);
         this.map = map;
-        this.hitbox = createHitbox(world, x, y);// Set up the physical body.
+        this.moverId = map.getMovement().addActor(this, MovementBackend.KIND_ENEMY, x, y);// Set up the hitbox.
         randomVelocity();// Assign initial random velocity.
-    }
-
-    /**
-     * Creates the physical body (hitbox) for the enemy.
-     * @param world The Box2D world.
-     * @param x Initial x-coordinate.
-     * @param y Initial y-coordinate.
-     * @return Body the created Box2D body.
-     */
-    private Body createHitbox(World world, float x, float y) {
-        BodyDef bodyDef = new BodyDef();
-        bodyDef.position.set(x, y);
-        bodyDef.type = BodyDef.BodyType.DynamicBody; // Allows the body to move and interact physically.
-        Body body = world.createBody(bodyDef);
-        CircleShape circle = new CircleShape();
-        circle.setRadius(0.3f);
-        body.createFixture(circle, 1.0f); // Density set to 1.0 for physical properties.
-        circle.dispose();// Cleanup after creating the fixture.
-        body.setUserData(this);
-        return body;
+        this.lastX = x;
+        this.lastY = y;
     }
 
     /**
@@ -84,19 +63,24 @@ public class Enemy extends GameObject {
 
         stateTime += deltaTime; // Update the state time for animations.
 
-        // Calculate the next position based on current velocity.
-        float targetX = getX() + velocity.x;
-        float targetY = getY() + velocity.y;
+        // Walls are solid, so an enemy walking into one simply stops. Notice that and turn around.
+        float x = getX();
+        float y = getY();
+        float moved = Math.abs(x - lastX) + Math.abs(y - lastY);
+        lastX = x;
+        lastY = y;
+        if (moved < speed * deltaTime * 0.25f) {
+            stuckTime += deltaTime;
+            if (stuckTime > STUCK_TIMEOUT) {
+                stuckTime = 0;
+                randomVelocity();
+            }
+        } else {
+            stuckTime = 0;
+        }
 
         // enemy randomly moving
-        if(map.isPassableEnemy(this, targetX, targetY)) {
-
-            hitbox.setLinearVelocity(velocity);
-        }else {
-
-            hitbox.setLinearVelocity(0, 0);
-            randomVelocity();
-        }
+        map.getMovement().setVelocity(moverId, velocity.x, velocity.y);
     }
 
 
@@ -110,19 +94,13 @@ public class Enemy extends GameObject {
 
         // change direction
         if (angle >= 45 && angle < 135) { //another enemy is above the current enemy.
-            this.velocity.set(0, -speed);
-            currentAnimation = Animations.ENEMY_WALK_DOWN;
+            setDirection(Direction.DOWN);
         } else if (angle >= 225 && angle < 315) { //another enemy is below the current enemy
-
-            this.velocity.set(0, speed);
-            currentAnimation = Animations.ENEMY_WALK_UP;
+            setDirection(Direction.UP);
         } else if (angle >= 135 && angle < 225) { //another enemy is to the left of current enemy
-
-            this.velocity.set(speed, 0);
-            currentAnimation = Animations.ENEMY_WALK_RIGHT;
+            setDirection(Direction.RIGHT);
         } else {//another enemy is to the right of current enemy
-            this.velocity.set(-speed, 0);
-            currentAnimation = Animations.ENEMY_WALK_LEFT;
+            setDirection(Direction.LEFT);
         }
     }
 
@@ -132,28 +110,38 @@ public class Enemy extends GameObject {
      */
     public void randomVelocity(){
         // Randomly choose a direction.
-        int moveDirection = random.nextInt(4);//Randomly generate a random integer between 0 and 3
+        int moveDirection = map.nextRandom(4);//Random integer between 0 and 3 from the map's seeded generator, so matches replay the same way
         updateDirection(moveDirection); // Update the current direction based on 4 random choice.
-        switch (currentDirection) {
+        setDirection(currentDirection);
+    }
+
+    /**
+     * Makes the enemy walk in the given direction. The animation follows the direction when the enemy is drawn.
+     * @param direction The new walking direction.
+     */
+    public void setDirection(Direction direction) {
+        currentDirection = direction;
+        switch (direction) {
             case DOWN:
                 velocity.set(0, -speed);// Set velocity to move down.
-                currentAnimation = Animations.ENEMY_WALK_DOWN;// Set animation to walking down.
                 break;
             case UP:
                 velocity.set(0, speed); // Set velocity to move up.
-                currentAnimation = Animations.ENEMY_WALK_UP;// Set animation to walking up.
                 break;
             case LEFT:
                 velocity.set(-speed, 0);// Set velocity to move left.
-                currentAnimation = Animations.ENEMY_WALK_LEFT;// Set animation to walking left.
                 break;
             case RIGHT:
                 velocity.set(speed, 0);// Set velocity to move right.
-                currentAnimation = Animations.ENEMY_WALK_RIGHT;// Set animation to walking right.
                 break;
         }
     }
 
+    /** Returns the direction the enemy is walking in. */
+    public Direction getDirection() {
+        return currentDirection;
+    }
+
     /**
      * Updates the direction of the enemy based on the provided direction index.
      * Sets the corresponding velocity and animation based on the new direction.
@@ -182,7 +170,69 @@ public class Enemy extends GameObject {
      */
     @Override
     public TextureRegion getCurrentAppearance() {
-        return currentAnimation.getKeyFrame(stateTime, true);
+        // Animations are only looked up when drawing, so enemies also work on a headless map
+        Animation<TextureRegion> animation;
+        switch (currentDirection) {
+            case UP:
+                animation = Animations.ENEMY_WALK_UP;
+                break;
+            case LEFT:
+                animation = Animations.ENEMY_WALK_LEFT;
+                break;
+            case RIGHT:
+                animation = Animations.ENEMY_WALK_RIGHT;
+                break;
+            default:
+                animation = Animations.ENEMY_WALK_DOWN;
+                break;
+        }
+        return animation.getKeyFrame(stateTime, true);
+    }
+
+    /** Advances the walking animation of an enemy that is moved from outside, e.g. by match snapshots. */
+    public void animate(float frameTime) {
+        stateTime += frameTime;
+    }
+
+    /**
+     * Marks the enemy as dead and stops it.
+     * The hitbox itself is removed from the movement backend by the {@link GameMap}.
+     */
+    public void kill() {
+        alive = false;
+        velocity.set(0, 0);
+    }
+
+    public boolean isAlive() {
+        return alive;
+    }
+
+    /** The number of bytes {@link #writeSnapshot(ByteBuffer)} writes. */
+    static final int SNAPSHOT_SIZE = 4 * 8 + 1 + 1;
+
+    /** Writes every field that influences later ticks, plus the position for checksums, see {@link MapSnapshot}. */
+    void writeSnapshot(ByteBuffer out) {
+        out.putFloat(stateTime).putFloat(velocity.x).putFloat(velocity.y).putFloat(stuckTime)
+                .putFloat(lastX).putFloat(lastY).putFloat(getX()).putFloat(getY());
+        out.put((byte) currentDirection.ordinal()).put((byte) (alive ? 1 : 0));
+    }
+
+    /** Reads the fields written by {@link #writeSnapshot(ByteBuffer)}; the position is restored by the movement backend. */
+    void readSnapshot(ByteBuffer in) {
+        stateTime = in.getFloat();
+        velocity.set(in.getFloat(), in.getFloat());
+        stuckTime = in.getFloat();
+        lastX = in.getFloat();
+        lastY = in.getFloat();
+        in.getFloat();
+        in.getFloat();
+        currentDirection = Direction.values()[in.get()];
+        alive = in.get() != 0;
+    }
+
+    /** Returns the id of this enemy's hitbox in the map's {@link MovementBackend}. */
+    public int getMoverId() {
+        return moverId;
     }
 
     /**
@@ -192,7 +242,7 @@ public class Enemy extends GameObject {
      */
     @Override
     public float getX() {
-        return  hitbox.getPosition().x;
+        return map.getMovement().getX(moverId);
     }
 
     /**
@@ -202,6 +252,6 @@ public class Enemy extends GameObject {
      */
     @Override
     public float getY() {
-        return hitbox.getPosition().y;
+        return map.getMovement().getY(moverId);
     }
 }
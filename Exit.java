@@ -11,6 +11,7 @@ import de.tum.cit.ase.bomberquest.texture.Textures;
 public class Exit extends GameObject {
 
     private boolean unlocked;// Indicates if the exit is unlocked
+    private int sensorId = -1;// Detects the player entering the exit, inactive while the exit is hidden
 
     /**
      * Constructs an Exit at the specified coordinates.
@@ -33,6 +34,14 @@ public class Exit extends GameObject {
         this.unlocked = unlocked;
     }
 
+    public int getSensorId() {
+        return sensorId;
+    }
+
+    public void setSensorId(int sensorId) {
+        this.sensorId = sensorId;
+    }
+
     /**
      * Returns the current appearance of the exit based on its lock state.
      * Overrides the getCurrentAppearance method from the GameObject class.
@@ -0,0 +1,297 @@
+package de.tum.cit.ase.bomberquest.screen;
+
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import de.tum.cit.ase.bomberquest.map.Bomb;
+import de.tum.cit.ase.bomberquest.map.Direction;
+import de.tum.cit.ase.bomberquest.map.GameMap;
+import de.tum.cit.ase.bomberquest.map.MatchListener;
+import de.tum.cit.ase.bomberquest.texture.Animations;
+import de.tum.cit.ase.bomberquest.texture.Textures;
+
+/**
+ * Sparks along the blast of every exploding bomb and debris of every destroyed wall, drawn on top of the map.
+ *
+ * The particles live in preallocated parallel arrays, one per property, with room for a fixed budget of particles
+ * ({@code -Dbomberquest.particleBudget}, default 2048). New particles take the slot of the oldest one, so a full
+ * store culls the particles that are closest to fading out. All particles are updated in one loop and drawn in the
+ * batch of the map, so the cost of a frame is bounded by the budget however many bombs go off at once. If the
+ * explosions of one frame ask for more particles than the budget, every explosion gets proportionally fewer.
+ *
+ * The map reports explosions on the thread that ticks it; they are queued in a ring and turned into particles by
+ * {@link #update(float)} on the GL thread.
+ */
+public class ExplosionParticles {
+
+    /** The highest number of particles alive at once. */
+    public static final int DEFAULT_BUDGET = Integer.getInteger("bomberquest.particleBudget", 2048);
+
+    private static final int SIZE = GameScreen.TILE_SIZE_PX * GameScreen.SCALE;
+    private static final int KIND_SPARK = 0;
+    private static final int KIND_DEBRIS = 1;
+    private static final int SPARKS_PER_TILE = 6;
+    private static final int DEBRIS_PER_WALL = 10;
+    /** The directions of a blast, in the order of the reach of a queued explosion. */
+    private static final Direction[] DIRECTIONS = {Direction.UP, Direction.DOWN, Direction.LEFT, Direction.RIGHT};
+    /** Velocity lost per second, as a fraction. */
+    private static final float DRAG = 2.5f;
+
+    /** The number of explosions that can be queued between two frames; more are dropped. */
+    private static final int EVENT_CAPACITY = 256;
+    private static final int EVENT_BLAST = 0;
+    private static final int EVENT_WALL = 1;
+
+    private final int budget;
+    private final TextureRegion sparkRegion;
+    private final TextureRegion debrisRegion;
+
+    // The particles, one array per property; a particle is dead when its age reaches its lifetime
+    private final float[] x;
+    private final float[] y;
+    private final float[] velocityX;
+    private final float[] velocityY;
+    private final float[] age;
+    private final float[] lifetime;
+    private final float[] size;
+    private final byte[] kinds;
+    /** The slot of the next particle, which holds the oldest one. */
+    private int nextSlot;
+    /** The number of slots used so far; the update loop never looks past it. */
+    private int usedSlots;
+    private int liveCount;
+
+    // The queued explosions: kind, tile and the reach of the blast in every direction
+    private final int[] eventKinds = new int[EVENT_CAPACITY];
+    private final int[] eventX = new int[EVENT_CAPACITY];
+    private final int[] eventY = new int[EVENT_CAPACITY];
+    private final int[] eventReach = new int[EVENT_CAPACITY * 4];
+    /** The next event to write, only changed by the thread that ticks the map. */
+    private volatile long eventTail;
+    /** The next event to emit, only changed by the GL thread. */
+    private volatile long eventHead;
+    private long droppedEvents;
+
+    /** xorshift state; the particles only need to look random. */
+    private int random = 0x9E3779B9;
+
+    private GameMap map;
+    private final MatchListener mapListener = new MatchListener() {
+        @Override
+        public void bombExploded(Bomb bomb) {
+            addEvent(EVENT_BLAST, (int) bomb.getX(), (int) bomb.getY(), bomb.getBlastRadius(Direction.UP),
+                    bomb.getBlastRadius(Direction.DOWN), bomb.getBlastRadius(Direction.LEFT),
+                    bomb.getBlastRadius(Direction.RIGHT)); // getBlastRadius() would build a map of boxed reaches
+        }
+
+        @Override
+        public void wallDestroyed(int x, int y) {
+            addEvent(EVENT_WALL, x, y, 0, 0, 0, 0);
+        }
+    };
+
+    /**
+     * Must be created on the GL thread, since it cuts its particles out of the textures.
+     */
+    public ExplosionParticles() {
+        this(DEFAULT_BUDGET);
+    }
+
+    /**
+     * @param budget The highest number of particles alive at once.
+     */
+    public ExplosionParticles(int budget) {
+        this.budget = budget;
+        this.x = new float[budget];
+        this.y = new float[budget];
+        this.velocityX = new float[budget];
+        this.velocityY = new float[budget];
+        this.age = new float[budget];
+        this.lifetime = new float[budget];
+        this.size = new float[budget];
+        this.kinds = new byte[budget];
+        this.sparkRegion = new TextureRegion(Animations.BOMB_EXPLOSION.getKeyFrame(0), 36, 36, 8, 8); // The core of the blast
+        this.debrisRegion = new TextureRegion(Textures.DESTRUCTIBLE_WALL, 4, 4, 8, 8);
+    }
+
+    /** Starts listening to the explosions of a map; call before the map is ticked. */
+    public void attach(GameMap map) {
+        detach();
+        this.map = map;
+        map.getEventBus().subscribe(mapListener);
+    }
+
+    /** Stops listening to the map; call once the map is not ticked any more. */
+    public void detach() {
+        if (map != null) {
+            map.getEventBus().unsubscribe(mapListener);
+            map = null;
+        }
+    }
+
+    private void addEvent(int kind, int tileX, int tileY, int up, int down, int left, int right) {
+        long event = eventTail;
+        if (event - eventHead == EVENT_CAPACITY) {
+            droppedEvents++; // A missing effect does no harm
+            return;
+        }
+        int slot = (int) (event % EVENT_CAPACITY);
+        eventKinds[slot] = kind;
+        eventX[slot] = tileX;
+        eventY[slot] = tileY;
+        eventReach[slot * 4] = up;
+        eventReach[slot * 4 + 1] = down;
+        eventReach[slot * 4 + 2] = left;
+        eventReach[slot * 4 + 3] = right;
+        eventTail = event + 1; // Publishes the slot
+    }
+
+    /**
+     * Emits the particles of the explosions since the last frame and moves all particles, on the GL thread.
+     * @param delta The time since the last frame in seconds.
+     */
+    public void update(float delta) {
+        emitQueuedEvents();
+        float damping = Math.max(0f, 1f - DRAG * delta);
+        int live = 0;
+        for (int i = 0; i < usedSlots; i++) {
+            if (age[i] >= lifetime[i]) {
+                continue;
+            }
+            age[i] += delta;
+            x[i] += velocityX[i] * delta;
+            y[i] += velocityY[i] * delta;
+            velocityX[i] *= damping;
+            velocityY[i] *= damping;
+            live++;
+        }
+        liveCount = live;
+    }
+
+    private void emitQueuedEvents() {
+        long end = eventTail;
+        long start = eventHead;
+        if (start == end) {
+            return;
+        }
+        int requested = 0;
+        for (long event = start; event < end; event++) {
+            requested += particlesFor((int) (event % EVENT_CAPACITY));
+        }
+        // If a chain reaction asks for more than the budget, every explosion of the frame gets fewer particles
+        float share = Math.min(1f, (float) budget / requested);
+        for (long event = start; event < end; event++) {
+            int slot = (int) (event % EVENT_CAPACITY);
+            if (eventKinds[slot] == EVENT_BLAST) {
+                emitBlast(slot, share);
+            } else {
+                emitDebris(eventX[slot], eventY[slot], share);
+            }
+        }
+        eventHead = end;
+    }
+
+    private int particlesFor(int slot) {
+        if (eventKinds[slot] == EVENT_WALL) {
+            return DEBRIS_PER_WALL;
+        }
+        int tiles = 1;
+        for (int i = 0; i < 4; i++) {
+            tiles += eventReach[slot * 4 + i];
+        }
+        return tiles * SPARKS_PER_TILE;
+    }
+
+    private void emitBlast(int slot, float share) {
+        int count = Math.max(1, Math.round(SPARKS_PER_TILE * share));
+        emitSparks(eventX[slot], eventY[slot], 0, 0, count);
+        for (int d = 0; d < DIRECTIONS.length; d++) {
+            Direction direction = DIRECTIONS[d];
+            for (int i = 1; i <= eventReach[slot * 4 + d]; i++) {
+                emitSparks(eventX[slot] + direction.getOffsetX() * i, eventY[slot] + direction.getOffsetY() * i,
+                        direction.getOffsetX(), direction.getOffsetY(), count);
+            }
+        }
+    }
+
+    /** Emits sparks on a tile of a blast, flying outwards along the blast and a little to the sides. */
+    private void emitSparks(int tileX, int tileY, int directionX, int directionY, int count) {
+        for (int n = 0; n < count; n++) {
+            float speed = 40f + 120f * nextFloat();
+            float spread = (nextFloat() - 0.5f) * 80f;
+            float vx = directionX == 0 && directionY == 0 ? (nextFloat() - 0.5f) * 160f : directionX * speed + directionY * spread;
+            float vy = directionX == 0 && directionY == 0 ? (nextFloat() - 0.5f) * 160f : directionY * speed + directionX * spread;
+            emit(KIND_SPARK, (tileX + nextFloat()) * SIZE, (tileY + nextFloat()) * SIZE, vx, vy,
+                    0.35f + 0.35f * nextFloat(), 16f + 16f * nextFloat());
+        }
+    }
+
+    /** Emits pieces of a destroyed wall, flying apart in all directions. */
+    private void emitDebris(int tileX, int tileY, float share) {
+        int count = Math.max(1, Math.round(DEBRIS_PER_WALL * share));
+        for (int n = 0; n < count; n++) {
+            float angle = nextFloat() * (float) (Math.PI * 2);
+            float speed = 60f + 120f * nextFloat();
+            emit(KIND_DEBRIS, (tileX + 0.5f) * SIZE, (tileY + 0.5f) * SIZE,
+                    (float) Math.cos(angle) * speed, (float) Math.sin(angle) * speed,
+                    0.5f + 0.5f * nextFloat(), 8f + 8f * nextFloat());
+        }
+    }
+
+    private void emit(int kind, float px, float py, float vx, float vy, float life, float particleSize) {
+        int i = nextSlot;
+        nextSlot = (nextSlot + 1) % budget; // Overwrites the oldest particle once the store is full
+        usedSlots = Math.max(usedSlots, i + 1);
+        kinds[i] = (byte) kind;
+        x[i] = px;
+        y[i] = py;
+        velocityX[i] = vx;
+        velocityY[i] = vy;
+        age[i] = 0f;
+        lifetime[i] = life;
+        size[i] = particleSize;
+    }
+
+    /**
+     * Draws all particles, on the GL thread, between {@code begin()} and {@code end()} of the batch of the map.
+     * Only the color of the batch changes between particles, so they do not break the batch.
+     */
+    public void draw(SpriteBatch spriteBatch) {
+        if (liveCount == 0) {
+            return;
+        }
+        for (int i = 0; i < usedSlots; i++) {
+            if (age[i] >= lifetime[i]) {
+                continue;
+            }
+            float t = age[i] / lifetime[i];
+            float drawSize;
+            if (kinds[i] == KIND_SPARK) {
+                spriteBatch.setColor(1f, 0.9f - 0.6f * t, 0.4f - 0.4f * t, 1f - t); // Yellow to red, fading out
+                drawSize = size[i] * (1f - 0.6f * t);
+            } else {
+                spriteBatch.setColor(1f, 1f, 1f, t < 0.7f ? 1f : (1f - t) / 0.3f);
+                drawSize = size[i];
+            }
+            float half = drawSize / 2;
+            spriteBatch.draw(kinds[i] == KIND_SPARK ? sparkRegion : debrisRegion, x[i] - half, y[i] - half, drawSize, drawSize);
+        }
+        spriteBatch.setColor(1f, 1f, 1f, 1f);
+    }
+
+    /** Returns the number of particles alive after the last update. */
+    public int getLiveCount() {
+        return liveCount;
+    }
+
+    /** Returns the number of explosions that were dropped because the queue was full. */
+    public long getDroppedEvents() {
+        return droppedEvents;
+    }
+
+    private float nextFloat() {
+        random ^= random << 13;
+        random ^= random >>> 17;
+        random ^= random << 5;
+        return (random >>> 8) / (float) (1 << 24);
+    }
+}
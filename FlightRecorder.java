@@ -0,0 +1,252 @@
+package de.tum.cit.ase.bomberquest.debug;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import de.tum.cit.ase.bomberquest.map.GameMap;
+import de.tum.cit.ase.bomberquest.map.Player;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Records timing information about the last few hundred frames in a preallocated ring buffer.
+ * When a frame takes longer than the configured budget, the whole buffer is written to a file
+ * together with a compact snapshot of the map, so rare hitches can be analysed afterwards
+ * without having a profiler attached all the time.
+ * The report is put together on the thread that hitched, but written to the file on a background thread, so the
+ * dump does not make the hitch longer.
+ * All per-frame data lives in primitive arrays that are allocated once, so recording itself never allocates.
+ */
+public class FlightRecorder {
+
+    /** Time spent polling input and handling the pause key. */
+    public static final int PHASE_INPUT = 0;
+    /** Time spent in {@link GameMap#tick(float)}. */
+    public static final int PHASE_TICK = 1;
+    /** Time spent updating the camera. */
+    public static final int PHASE_CAMERA = 2;
+    /** Time spent drawing the map. */
+    public static final int PHASE_RENDER = 3;
+    /** Time spent drawing the HUD. */
+    public static final int PHASE_HUD = 4;
+    /** The number of phases a frame is split into. */
+    public static final int PHASE_COUNT = 5;
+    private static final String[] PHASE_NAMES = {"input", "tick", "camera", "render", "hud"};
+
+    /** Bits used for the inputs that were applied in a frame. */
+    public static final int INPUT_LEFT = Player.INPUT_LEFT;
+    public static final int INPUT_RIGHT = Player.INPUT_RIGHT;
+    public static final int INPUT_UP = Player.INPUT_UP;
+    public static final int INPUT_DOWN = Player.INPUT_DOWN;
+    public static final int INPUT_BOMB = Player.INPUT_BOMB;
+
+    /** The default number of frames kept in the ring buffer. */
+    public static final int DEFAULT_CAPACITY = 300;
+    /** The default frame budget, can be overridden with {@code -Dbomberquest.hitchBudgetMs=...}. */
+    public static final long DEFAULT_BUDGET_MS = Long.getLong("bomberquest.hitchBudgetMs", 50L);
+    /** Minimum time between two dumps, so a burst of slow frames only produces one file. */
+    private static final long DUMP_COOLDOWN_NANOS = 5_000_000_000L;
+    /** Writes the dumps, one after another. */
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hitch-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int capacity;
+    // One slot per frame, indexed by frameNumber % capacity.
+    private final long[] frameNumbers;
+    private final long[] frameNanos;
+    private final long[] phaseNanos; // capacity * PHASE_COUNT entries
+    private final int[] enemyCounts;
+    private final int[] bombCounts;
+    private final int[] powerUpCounts;
+    private final int[] gcDeltas;
+    private final int[] inputs;
+
+    private final GarbageCollectorMXBean[] collectors;
+    private long lastGcCount;
+
+    private long budgetNanos;
+    private long frameNumber;
+    private long frameStart;
+    private long phaseStart;
+    private int slot;
+    private long lastDump;
+
+    /**
+     * Creates a recorder with the default capacity and budget.
+     */
+    public FlightRecorder() {
+        this(DEFAULT_CAPACITY, DEFAULT_BUDGET_MS);
+    }
+
+    /**
+     * Creates a new flight recorder.
+     * @param capacity The number of frames kept in the ring buffer.
+     * @param budgetMillis Frames that take longer than this trigger a dump.
+     */
+    public FlightRecorder(int capacity, long budgetMillis) {
+        this.capacity = capacity;
+        this.frameNumbers = new long[capacity];
+        this.frameNanos = new long[capacity];
+        this.phaseNanos = new long[capacity * PHASE_COUNT];
+        this.enemyCounts = new int[capacity];
+        this.bombCounts = new int[capacity];
+        this.powerUpCounts = new int[capacity];
+        this.gcDeltas = new int[capacity];
+        this.inputs = new int[capacity];
+        this.collectors = ManagementFactory.getGarbageCollectorMXBeans().toArray(new GarbageCollectorMXBean[0]);
+        this.lastGcCount = totalGcCount();
+        this.lastDump = System.nanoTime() - DUMP_COOLDOWN_NANOS; // The first hitch is dumped right away
+        setBudgetMillis(budgetMillis);
+    }
+
+    public void setBudgetMillis(long budgetMillis) {
+        this.budgetNanos = budgetMillis * 1_000_000L;
+    }
+
+    public long getBudgetMillis() {
+        return budgetNanos / 1_000_000L;
+    }
+
+    /**
+     * Starts recording a new frame. Must be called before any {@link #mark(int)} of this frame.
+     */
+    public void beginFrame() {
+        slot = (int) (frameNumber % capacity);
+        frameStart = System.nanoTime();
+        phaseStart = frameStart;
+        int base = slot * PHASE_COUNT;
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            phaseNanos[base + i] = 0;
+        }
+    }
+
+    /**
+     * Attributes the time since the previous mark (or the start of the frame) to the given phase.
+     * @param phase One of the PHASE_ constants.
+     */
+    public void mark(int phase) {
+        long now = System.nanoTime();
+        phaseNanos[slot * PHASE_COUNT + phase] += now - phaseStart;
+        phaseStart = now;
+    }
+
+    /**
+     * Finishes the current frame and dumps the buffer if the frame exceeded the budget.
+     * @param map The map that was simulated this frame, used for entity counts and the snapshot.
+     * @param inputMask The INPUT_ bits that were applied this frame.
+     */
+    public void endFrame(GameMap map, int inputMask) {
+        long elapsed = record(map.getEnemies().size(), map.getBombs().size(), map.getPowerUpCount(), inputMask);
+        if (elapsed > 0) {
+            dump(map::describeState, elapsed);
+        }
+    }
+
+    /**
+     * Finishes the current frame of a thread that must not look at the map, e.g. the GL thread while the map is
+     * ticked on a {@link de.tum.cit.ase.bomberquest.screen.SimulationThread}.
+     * @param enemies The number of enemies drawn this frame.
+     * @param bombs The number of bombs drawn this frame.
+     * @param powerUps The number of power-ups drawn this frame.
+     * @param inputMask The INPUT_ bits that were applied this frame.
+     * @param describer Appends the state that was drawn to the dump; only called if the frame is dumped.
+     */
+    public void endFrame(int enemies, int bombs, int powerUps, int inputMask, Consumer<StringBuilder> describer) {
+        long elapsed = record(enemies, bombs, powerUps, inputMask);
+        if (elapsed > 0) {
+            dump(describer, elapsed);
+        }
+    }
+
+    /** Records the current frame; returns its duration if it should be dumped, or 0. */
+    private long record(int enemies, int bombs, int powerUps, int inputMask) {
+        long elapsed = System.nanoTime() - frameStart;
+        long gcCount = totalGcCount();
+
+        frameNumbers[slot] = frameNumber;
+        frameNanos[slot] = elapsed;
+        enemyCounts[slot] = enemies;
+        bombCounts[slot] = bombs;
+        powerUpCounts[slot] = powerUps;
+        gcDeltas[slot] = (int) (gcCount - lastGcCount);
+        inputs[slot] = inputMask;
+        lastGcCount = gcCount;
+        frameNumber++;
+
+        if (elapsed > budgetNanos && frameStart - lastDump > DUMP_COOLDOWN_NANOS) {
+            lastDump = frameStart;
+            return elapsed;
+        }
+        return 0;
+    }
+
+    private long totalGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * Writes the recorded frames, oldest first, and a snapshot of the map around the player to {@code hitches/}.
+     */
+    private void dump(Consumer<StringBuilder> describer, long hitchNanos) {
+        StringBuilder out = new StringBuilder(capacity * 96);
+        out.append("Hitch of ").append(hitchNanos / 1_000_000.0).append(" ms (budget ")
+                .append(getBudgetMillis()).append(" ms) at frame ").append(frameNumber - 1).append('\n');
+        out.append("frame\ttotal_ms");
+        for (String name : PHASE_NAMES) {
+            out.append('\t').append(name).append("_ms");
+        }
+        out.append("\tenemies\tbombs\tpowerups\tgc\tinputs\n");
+
+        int recorded = (int) Math.min(frameNumber, capacity);
+        for (int i = 0; i < recorded; i++) {
+            int s = (int) ((frameNumber - recorded + i) % capacity);
+            out.append(frameNumbers[s]).append('\t').append(frameNanos[s] / 1_000_000.0);
+            for (int p = 0; p < PHASE_COUNT; p++) {
+                out.append('\t').append(phaseNanos[s * PHASE_COUNT + p] / 1_000_000.0);
+            }
+            out.append('\t').append(enemyCounts[s])
+                    .append('\t').append(bombCounts[s])
+                    .append('\t').append(powerUpCounts[s])
+                    .append('\t').append(gcDeltas[s])
+                    .append('\t').append(describeInputs(inputs[s]))
+                    .append('\n');
+        }
+
+        out.append("\nMap at the time of the hitch:\n");
+        describer.accept(out);
+
+        String report = out.toString();
+        FileHandle file = Gdx.files.local("hitches/hitch-" + System.currentTimeMillis() + ".txt");
+        WRITER.execute(() -> {
+            try {
+                file.writeString(report, false);
+                Log.info("FlightRecorder: wrote {}", file.path());
+            } catch (Exception e) {
+                Log.warn("FlightRecorder: could not write the hitch, {}", e);
+            }
+        });
+    }
+
+    private static String describeInputs(int mask) {
+        if (mask == 0) {
+            return "-";
+        }
+        StringBuilder keys = new StringBuilder();
+        if ((mask & INPUT_LEFT) != 0) keys.append('L');
+        if ((mask & INPUT_RIGHT) != 0) keys.append('R');
+        if ((mask & INPUT_UP) != 0) keys.append('U');
+        if ((mask & INPUT_DOWN) != 0) keys.append('D');
+        if ((mask & INPUT_BOMB) != 0) keys.append('B');
+        return keys.toString();
+    }
+}
@@ -0,0 +1,112 @@
+package de.tum.cit.ase.bomberquest.screen;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.utils.Timer;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decides how often the game renders, so screens that rarely change do not keep the CPU and GPU busy.
+ *
+ * During gameplay the game renders continuously. Optionally the frame rate is capped with
+ * {@code -Dbomberquest.fpsCap=<frames per second>} (default 0, no cap besides vsync); the pacer then waits for the
+ * next frame at the end of every frame, parking until shortly before it and spinning for the rest, since parking
+ * alone overshoots by up to a millisecond or more.
+ *
+ * All other screens, and the game while the application is paused, render only on demand: the backend renders a
+ * frame when there is input, scene2d requests frames while actions are running, and screens that show something
+ * changing, such as the progress of a {@link LoadingScreen}, call {@link #requestFrameAfter(float)}.
+ */
+public class FramePacer {
+
+    /** The frame cap during gameplay in frames per second, or 0 for none. */
+    public static final int DEFAULT_FPS_CAP = Integer.getInteger("bomberquest.fpsCap", 0);
+    /** The last part of the wait for the next frame is spent spinning. */
+    private static final long SPIN_NANOS = 1_000_000L;
+    /** Requests a frame when it runs; shared, so idle screens do not schedule a new task every frame. */
+    private static final Timer.Task frameRequest = new Timer.Task() {
+        @Override
+        public void run() {
+            Gdx.graphics.requestRendering();
+        }
+    };
+
+    private long frameNanos;
+    private long nextFrame;
+    private boolean gameplay;
+    private boolean paused;
+
+    public FramePacer() {
+        setFpsCap(DEFAULT_FPS_CAP);
+    }
+
+    /**
+     * Sets the frame cap during gameplay.
+     * @param fps The highest number of frames per second, or 0 for none.
+     */
+    public void setFpsCap(int fps) {
+        frameNanos = fps > 0 ? 1_000_000_000L / fps : 0;
+        nextFrame = 0;
+    }
+
+    /** Renders continuously on the game screen and on demand on all others; called whenever the screen changes. */
+    public void screenChanged(Screen screen) {
+        gameplay = screen instanceof GameScreen;
+        nextFrame = 0;
+        apply();
+    }
+
+    /** Renders only on demand while the application is paused, e.g. minimized. */
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+        apply();
+    }
+
+    private void apply() {
+        boolean continuous = gameplay && !paused;
+        if (Gdx.graphics.isContinuousRendering() != continuous) {
+            Gdx.graphics.setContinuousRendering(continuous);
+        }
+        if (!continuous) {
+            Gdx.graphics.requestRendering(); // Draws the new screen once
+        }
+    }
+
+    /**
+     * Waits until the next frame is due, if the frame rate is capped. Called at the end of every frame.
+     */
+    public void endFrame() {
+        if (!gameplay || paused || frameNanos == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (nextFrame == 0 || now - nextFrame > frameNanos) {
+            nextFrame = now + frameNanos; // First frame, or too far behind to catch up
+            return;
+        }
+        waitUntil(nextFrame);
+        nextFrame += frameNanos;
+    }
+
+    /**
+     * Makes sure a frame is rendered after the given delay, for screens that render on demand but show something
+     * that changes by itself. Does nothing if a frame is requested already.
+     * @param seconds The delay in seconds.
+     */
+    public static void requestFrameAfter(float seconds) {
+        if (!frameRequest.isScheduled()) {
+            Timer.schedule(frameRequest, seconds);
+        }
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > SPIN_NANOS) {
+            LockSupport.parkNanos(remaining - SPIN_NANOS);
+        }
+        while (System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+}
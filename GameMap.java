@@ -1,19 +1,17 @@
 package de.tum.cit.ase.bomberquest.map;
 
-import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.World;
-import de.tum.cit.ase.bomberquest.BomberQuestGame;
 import de.tum.cit.ase.bomberquest.map.PowerUp;
 import de.tum.cit.ase.bomberquest.map.PowerUpType;
-import de.tum.cit.ase.bomberquest.screen.CountdownTimer;
-import de.tum.cit.ase.bomberquest.screen.Hud;
+import de.tum.cit.ase.bomberquest.debug.Log;
 import de.tum.cit.ase.bomberquest.texture.Drawable;
 
 import java.awt.*;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.List;
 
@@ -21,165 +19,183 @@ import java.util.List;
  * Represents the game map.
  * The map holds all objects, including walls, enemies, bombs, power-ups, and the player.
  * It manages physics, collision detection, and game logic updates.
+ * A map keeps all of its state in the instance and reports to its {@link MatchEventBus}, so many maps can be
+ * simulated independently in one process, e.g. on a match server.
  */
 public class GameMap {
 
-    // A static block is executed once when the class is referenced for the first time.
-    static {
-        // Initialize the Box2D physics engine.
-        com.badlogic.gdx.physics.box2d.Box2D.init();
-    }
-
-    // Box2D physics simulation parameters (you can experiment with these if you want, but they work well as they are)
     /**
-     * The time step for the physics simulation.
-     * This is the amount of time that the physics simulation advances by in each frame.
-     * It is set to 1/refreshRate, where refreshRate is the refresh rate of the monitor, e.g., 1/60 for 60 Hz.
+     * The default time step for the physics simulation, used without a display, e.g. on a match server.
+     * The game uses 1/refreshRate instead, where refreshRate is the refresh rate of the monitor.
      */
-    private static final float TIME_STEP = 1f / Gdx.graphics.getDisplayMode().refreshRate;
-    /** The number of velocity iterations for the physics simulation. */
-    private static final int VELOCITY_ITERATIONS = 6;
-    /** The number of position iterations for the physics simulation. */
-    private static final int POSITION_ITERATIONS = 2;
-    /**
-     * The accumulated time since the last physics step.
-     * We use this to keep the physics simulation at a constant rate even if the frame rate is variable.
-     */
-    private float physicsTime = 0;
-
-    /** The game, in case the map needs to access it. */
-    private final BomberQuestGame game;
-    /** The Box2D world for physics simulation. */
-    private final World world;
-
-
-    private Player player;
-
-    private final Flowers[][] flowers;
+    public static final float DEFAULT_TIME_STEP = 1f / 60;
+    /** The size of one enemy record written by {@link #writeState(ByteBuffer)}: position and direction. */
+    private static final int ENEMY_RECORD_SIZE = 4 + 4 + 1;
+    /** The size of one bomb record: tile and remaining fuse. */
+    private static final int BOMB_RECORD_SIZE = 2 + 2 + 4;
+    /** The size of one power-up record: tile and type. */
+    private static final int POWER_UP_RECORD_SIZE = 2 + 2 + 1;
+    /** Value of the {@code movement} key in a map file that selects {@link GridMovement} instead of Box2D. */
+    public static final String MOVEMENT_GRID = "grid";
+
+    /** Event: a bomb was placed. Arguments: tile x, tile y, index of the player. */
+    public static final int EVENT_BOMB_PLACED = 0;
+    /** Event: a bomb exploded. Arguments: tile x, tile y, index of the player. */
+    public static final int EVENT_BOMB_EXPLODED = 1;
+    /** Event: a power-up was collected. Arguments: tile x, tile y, index of the player. */
+    public static final int EVENT_POWER_UP_COLLECTED = 2;
+    /** Event: a player died. Arguments: index of the player, one of the {@code CAUSE_} constants. */
+    public static final int EVENT_PLAYER_KILLED = 3;
+    /** Event: a player reached the unlocked exit. Arguments: index of the player. */
+    public static final int EVENT_VICTORY = 4;
+    /** The player ran into an enemy. */
+    public static final int CAUSE_ENEMY = 0;
+    /** The player was caught in a blast. */
+    public static final int CAUSE_BOMB = 1;
+    /** The number of tiles around the player that {@link #describeState(StringBuilder)} shows in every direction. */
+    public static final int DESCRIBE_RADIUS = 20;
+    /** The death reasons shown on the game over screen, also reported by the bot tournament. */
+    public static final String DEATH_BY_BOMB = "Player killed by bomb.";
+    public static final String DEATH_BY_ENEMY = "Player killed by enemy.";
+    public static final String DEATH_BY_TIME = "Time ran out.";
+    /** The number of ints of one event record: the kind and three arguments. */
+    private static final int EVENT_RECORD_SIZE = 4;
+
+    /** Tells the subscribers what happens, e.g. which sounds to play and when the match ends. */
+    private final MatchEventBus eventBus = new MatchEventBus();
+    /** Moves the player and the enemies and detects their contacts, see {@link MovementBackend}. */
+    private final MovementBackend movement;
+
+    /** All players, in the order they joined; a single-player game only has the first one. */
+    private final List<Player> players = new ArrayList<>();
+    /** The index of the player that is controlled and followed on this machine. */
+    private int localPlayerIndex = 0;
+
+    /** The parsed map file this map was created from, used to restart the level. */
+    private final MapTemplate template;
+    /** The tile of every position (see the {@code TILE_} constants of {@link MapTemplate}), indexed by y * width + x. */
+    private final byte[] tiles;
     private final Wall[][] walls;
+    /** The walls, bombs, revealed power-ups and enemies as bitboards, kept in sync with the lists and arrays here. */
+    private final TileBitboards bitboards;
+    /** The bomb, power-up and enemies on every tile, kept in sync like the bitboards. */
+    private final TileOccupancy occupancy;
 
     private List<Enemy> enemies = new ArrayList<>();
     private List<Bomb> bombs = new ArrayList<>();
-    private List<PowerUp> powerUps = new ArrayList<>();
+    private final List<PowerUp> powerUps = new ArrayList<>();
+    /** A read-only view of the power-ups, handed out instead of a copy. */
+    private final List<PowerUp> powerUpView = Collections.unmodifiableList(powerUps);
+
+    /** Receives the contacts of each physics step, they are handled in {@link #processContacts()}. */
+    private final MapContactListener contacts = new MapContactListener();
+    /**
+     * Everything that happened on the map so far, {@link #EVENT_RECORD_SIZE} ints per event.
+     * A match server forwards the events that a client has not acknowledged yet.
+     */
+    private int[] events = new int[16 * EVENT_RECORD_SIZE];
+    private int eventCount;
+    /** The tiles whose wall was destroyed so far, in order, as y * width + x. */
+    private int[] tileChanges = new int[16];
+    private int tileChangeCount;
+    /**
+     * State of the map's random number generator (SplitMix64), seeded from the map path, so every copy of a map
+     * makes the same random decisions and matches can be replayed and rolled back.
+     */
+    private long randomState;
+    /** Whether the game on this map has ended, by victory or because the players died. */
+    private boolean over;
+    private boolean won;
 
     private Vector2 entrance;
     private Exit exit;
     private boolean exitRevealed = false;
     private int totalEnemies;
 
-    public GameMap(BomberQuestGame game, String mapFilePath) throws IOException {
-        this.game = game;
-        this.world = new World( new Vector2(0,0), true);//initialize physical world
+    /**
+     * Creates a map from a map file. The file is parsed only the first time, see {@link MapTemplate#load(String)}.
+     * @param mapFilePath The path of the map file.
+     * @param timeStep The time step of the physics simulation in seconds.
+     * @throws IOException If the map file cannot be read.
+     */
+    public GameMap(String mapFilePath, float timeStep) throws IOException {
+        this(MapTemplate.load(mapFilePath), timeStep);
+    }
 
-        System.out.println("GameMap: " + mapFilePath);
+    /**
+     * Creates a fresh map from an already parsed template with the {@link #DEFAULT_TIME_STEP}.
+     * @param template The parsed map file.
+     */
+    public GameMap(MapTemplate template) {
+        this(template, DEFAULT_TIME_STEP);
+    }
+
+    /**
+     * Creates a fresh map from an already parsed template, e.g. to restart a level.
+     * @param template The parsed map file.
+     * @param timeStep The time step of the physics simulation in seconds.
+     */
+    public GameMap(MapTemplate template, float timeStep) {
+        this.template = template;
+
+        Log.debug("GameMap: {}", template.getPath()); // Tools create thousands of maps
 
         this.exitRevealed = false;
 
-        // Create flowers
-        this.flowers = new Flowers[Gdx.graphics.getWidth()][Gdx.graphics.getHeight()];
-        for (int i = 0; i < flowers.length; i++) {
-            for (int j = 0; j < flowers[i].length; j++) {
-                this.flowers[i][j] = new Flowers(i, j);
+        // Copy the tiles in one go, then create the walls; indestructible walls never change, so they are shared
+        int width = template.getWidth();
+        int height = template.getHeight();
+        this.tiles = new byte[width * height];
+        template.copyTiles(tiles);
+        this.walls = new Wall[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                byte tile = tiles[y * width + x];
+                if (tile == MapTemplate.TILE_INDESTRUCTIBLE) {
+                    walls[y][x] = template.getIndestructibleWall(x, y);
+                } else if (tile == MapTemplate.TILE_DESTRUCTIBLE) {
+                    walls[y][x] = new DestructibleWall(x, y);
+                }
             }
         }
-        //Load the map configuration file
-        Properties properties = new Properties();
-        properties.load(Gdx.files.internal(mapFilePath).reader());
-
-        // Determine the maximum X and Y dimensions of the map
-        int maxX = 0, maxY = 0;
-
-        //Explain each rows in the map file
-        for (String key : properties.stringPropertyNames()) {
-            if (key.startsWith("#")) continue; //skip comment lines
-
-            String[] coordinates = key.split(",");
-
-            int x = Integer.parseInt(coordinates[0]);
-            int y = Integer.parseInt(coordinates[1]);
+        this.randomState = template.getPath().hashCode();
+        this.entrance = new Vector2(template.getEntranceX(), template.getEntranceY());
+        // The template places the exit at a reachable destructible wall if the map file does not define one
+        this.exit = new Exit(template.getExitX(), template.getExitY());
+        for (int i = 0; i < template.getPowerUpCount(); i++) {
+            powerUps.add(new PowerUp(template.getPowerUpX(i), template.getPowerUpY(i), template.getPowerUpType(i)));
+        }
 
-            maxX = Math.max(maxX, x);
-            maxY = Math.max(maxY, y);
+        // Box2D by default, or plain grid movement without any native calls if the map asks for it
+        if (MOVEMENT_GRID.equals(template.getMovement())) {
+            this.movement = new GridMovement(this, walls, contacts, timeStep);
+        } else {
+            this.movement = new Box2dMovement(walls, contacts, timeStep);
         }
-        //create walls，
-        this.walls = new Wall[maxY + 1][maxX + 1];
 
-        //Parse map file to initialize game objects
-        for (String key : properties.stringPropertyNames()) {
-            if (key.startsWith("#")) continue;
-            String[] coordinates = key.split(",");
-            int x = Integer.parseInt(coordinates[0]);
-            int y = Integer.parseInt(coordinates[1]);
-            int type = Integer.parseInt(properties.getProperty(key));
-            switch (type) {
-                case 0: // indestructible walls
-                    walls[y][x] = new IndestructibleWall(x, y);
-                    break;
-                case 1: // destructible walls
-                    walls[y][x] = new DestructibleWall(x, y);
-                    break;
-                case 2: // entrance(player's origin point)
-                    this.entrance = new Vector2(x, y);
-                    this.player = new Player(this.world, entrance.x, entrance.y, this);
-                    break;
-                case 3: // Enemy
-                    Enemy enemy = new Enemy(world,x,y,this);
-                    enemies.add(enemy);
-                    break;
-                case 4: // exit(hidden behind destructible wall)
-                    this.exit = new Exit(x, y);
-                    walls[y][x] = new DestructibleWall(x, y);
-                    break;
-                case 5: // Power-up: Increases bomb count
-                    powerUps.add(new PowerUp(x, y, PowerUpType.CONCURRENT_BOMBS));
-                    walls[y][x] = new DestructibleWall(x, y);
-                    break;
-                case 6: // Power-up: Increases blast radius
-                    powerUps.add(new PowerUp(x, y, PowerUpType.BLAST_RADIUS));
-                    walls[y][x] = new DestructibleWall(x, y);
-                    break;
-//                case 7: //Power-up: Increase countdown time
-//                    powerUps.add(new PowerUp(x,y,PowerUpType.TIME_EXTENSION));
-//                    walls[y][x] = new DestructibleWall(x, y);
-//                    break;
-            }
+        for (int i = 0; i < template.getEnemyCount(); i++) {
+            enemies.add(new Enemy(template.getEnemyX(i), template.getEnemyY(i), this));
         }
 
         // Create a player with initial position (1, 3)
-        this.player = new Player(this.world, entrance.x, entrance.y, this);//入口位置
+        players.add(new Player(entrance.x, entrance.y, this));//入口位置
 
-        // If no exit exists, place one randomly behind a destructible wall
-        if (this.exit == null) {
-            System.out.println("No Exit");
-            addRandomExit();
+        // Power-ups and the exit are detected by sensors, which are switched on once their wall is destroyed
+        for (PowerUp powerUp : powerUps) {
+            powerUp.setSensorId(movement.addSensor(powerUp, (int) powerUp.getX(), (int) powerUp.getY(), isReveal(powerUp)));
         }
+        this.exit.setSensorId(movement.addSensor(exit, (int) exit.getX(), (int) exit.getY(), isReveal(exit)));
 
         totalEnemies = enemies.size();
+        this.bitboards = new TileBitboards(width, height);
+        this.occupancy = new TileOccupancy(width, height);
+        rebuildTileIndexes();
     }
 
     public int getTotalEnemies() {
         return totalEnemies;
     }
 
-    /**
-     * Adds a random exit location if no exit was defined in the map file.
-     */
-    private void addRandomExit(){
-        List<Vector2> destructibleWalls = new ArrayList<>();
-        for (int y = 0; y < walls.length; y++) {
-            for (int x = 0; x < walls[y].length; x++) {
-                Wall wall = walls[y][x];
-                if (wall != null && wall.isDestructible()) {
-                    destructibleWalls.add(new Vector2(x, y));//Add destructible walls to the Vector2 destructibleWalls list
-                }
-            }
-        }
-        if (!destructibleWalls.isEmpty()) {
-            Vector2 randomWall = destructibleWalls.get((int) (Math.random() * destructibleWalls.size()));
-            this.exit = new Exit((int)randomWall.x, (int)randomWall.y);
-        }
-    }
-
     public boolean isReveal(Drawable d){
         return walls[(int)d.getY()][(int)d.getX()] == null;
     }
@@ -191,42 +207,167 @@ public class GameMap {
      * @param frameTime Time passed since last update.
      */
     public void tick(float frameTime) {
-        this.player.tick(frameTime);
+        if (over) {
+            return;
+        }
+        for (Player player : players) {
+            if (player.isAlive()) {
+                player.tick(frameTime);
+            }
+        }
         doPhysicsStep(frameTime);
+        updateEnemyIndexes(); // The blasts of the bombs look the enemies up
         updateBombs(frameTime);
         updateEnemies(frameTime);
 
-        // Handle power-up collection
-        for(PowerUp powerUp : new ArrayList<>(powerUps)){
-            if(isReveal(powerUp) && isCollision(player, powerUp)){
-                powerUp.applyEffect(player);
-                powerUps.remove(powerUp);
+        // Power-ups, player-enemy and enemy-enemy collisions and the exit are all driven by the contacts of the step
+        if (processContacts()) {
+            return;
+        }
+
+        // Check if a player reaches the exit (or stands on it when the last enemy dies)
+        if (exit.isUnlocked()) {
+            for (Player player : players) {
+                if (player.isAlive() && player.isOnExit()) {
+                    declareVictory(player);
+                    return;
+                }
             }
         }
+    }
+
+    /**
+     * Kills a player and ends the game if no player is alive any more.
+     * @param player The player to kill.
+     * @param cause One of the {@code CAUSE_} constants.
+     */
+    public void killPlayer(Player player, int cause) {
+        if (!player.isAlive()) {
+            return; // Already hit by another blast ray
+        }
+        player.kill();
+        movement.setVelocity(player.getMoverId(), 0, 0);
+        recordEvent(EVENT_PLAYER_KILLED, players.indexOf(player), cause, 0);
+        eventBus.playerKilled(player, cause);
+
+        if (!over && getLivingPlayerCount() == 0) {
+            over = true;
+            eventBus.matchOver(false);
+        }
+    }
+
+    /**
+     * Ends the game with a victory, because a player reached the unlocked exit.
+     * @param player The player that reached the exit.
+     */
+    public void declareVictory(Player player) {
+        if (over) {
+            return;
+        }
+        over = true;
+        won = true;
+        recordEvent(EVENT_VICTORY, players.indexOf(player), 0, 0);
+        eventBus.matchOver(true);
+    }
 
-        // Check for player-enemy collisions (Game Over scenario)
-        for(Enemy enemy : enemies){
-            if(isCollision(player, enemy)){
-                getGame().setDeathReason("Player killed by enemy."); // Set the death reason
-                getPlayer().kill(); // Player dies
-                getGame().goToVictoryAndGameOver(false); // Go to Game Over screen
-                return;
+    /**
+     * Reseeds the map's random number generator, e.g. to play many different matches on the same map.
+     * Every copy of a map with the same seed still makes the same random decisions.
+     * @param seed The new seed.
+     */
+    public void setRandomSeed(long seed) {
+        this.randomState = seed;
+    }
+
+    /**
+     * Returns the next random number of the map's deterministic generator.
+     * @param bound The upper bound (exclusive), must be positive.
+     * @return A number between 0 (inclusive) and the bound (exclusive).
+     */
+    public int nextRandom(int bound) {
+        long z = (randomState += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return (int) ((z >>> 33) % bound);
+    }
+
+    /** Returns whether the game on this map has ended. */
+    public boolean isOver() {
+        return over;
+    }
+
+    /** Returns whether the game on this map was won. */
+    public boolean isWon() {
+        return won;
+    }
+
+    /**
+     * Handles the contacts that the movement backend reported during the last physics step.
+     * @return True if the game ended because of a contact, in which case the rest of the tick is skipped.
+     */
+    private boolean processContacts() {
+        for (int i = 0; i < contacts.size(); i++) {
+            Object a = contacts.getFirst(i);
+            Object b = contacts.getSecond(i);
+            boolean began = contacts.hasBegun(i);
+            if (b instanceof Player) { // Make sure the player is always the first object
+                Object swap = a;
+                a = b;
+                b = swap;
             }
 
-        // Check for enemy-enemy collisions
-        for(Enemy enemy2 : enemies){
-                if(enemy != enemy2 && isCollision(enemy, enemy2)){//make sure there are two different enemies
+            if (a instanceof Player) {
+                Player player = (Player) a;
+                if (b instanceof Enemy && began && ((Enemy) b).isAlive()) {
+                    // Player-enemy collision (Game Over scenario)
+                    killPlayer(player, CAUSE_ENEMY);
+                    if (over) {
+                        contacts.clear();
+                        return true;
+                    }
+                } else if (b instanceof PowerUp && began && player.isAlive()) {
+                    collectPowerUp(player, (PowerUp) b);
+                } else if (b instanceof Exit) {
+                    player.setOnExit(began);
+                }
+            } else if (a instanceof Enemy && b instanceof Enemy && began) {
+                Enemy enemy = (Enemy) a;
+                Enemy enemy2 = (Enemy) b;
+                if (enemy.isAlive() && enemy2.isAlive()) {
                     enemy.reverseVelocity(enemy2);//make the first enemy turn around
                     enemy2.reverseVelocity(enemy);//the second one also turns around
-                    break;
                 }
             }
         }
+        contacts.clear();
+        return false;
+    }
+
+    /**
+     * Applies a power-up a player walked over and removes it from the map.
+     * @param player The player that collected the power-up.
+     * @param powerUp The collected power-up.
+     */
+    private void collectPowerUp(Player player, PowerUp powerUp) {
+        if (powerUps.remove(powerUp)) { // Only the first contact counts
+            bitboards.clear(TileBitboards.POWER_UPS, (int) powerUp.getX(), (int) powerUp.getY());
+            occupancy.setPowerUp((int) powerUp.getX(), (int) powerUp.getY(), null);
+            powerUp.applyEffect(player);
+            movement.removeSensor(powerUp.getSensorId());
+            recordEvent(EVENT_POWER_UP_COLLECTED, (int) powerUp.getX(), (int) powerUp.getY(), players.indexOf(player));
+            eventBus.powerUpCollected(player, powerUp); // E.g. play the collection sound effect
+        }
+    }
 
-        // Check if the player reaches the exit
-        if(exit.isUnlocked() && isCollision(player, exit)){
-            getGame().goToVictoryAndGameOver(true);
-            return;
+    /**
+     * Lets a player collect the power-up at the given tile, e.g. when a match client learns that it was collected.
+     * @param player The player that collected the power-up.
+     */
+    public void collectPowerUpAt(int x, int y, Player player) {
+        PowerUp powerUp = occupancy.getPowerUpAt(x, y);
+        if (powerUp != null) {
+            collectPowerUp(player, powerUp);
         }
     }
 
@@ -235,17 +376,22 @@ public class GameMap {
      * @param frameTime Time passed since the last frame.
      */
     private void doPhysicsStep(float frameTime) {
-        this.physicsTime += frameTime;
-        while (this.physicsTime >= TIME_STEP) {
-            this.world.step(TIME_STEP, VELOCITY_ITERATIONS, POSITION_ITERATIONS);
-            this.physicsTime -= TIME_STEP;
-        }
+        movement.step(frameTime);
+    }
+
+    /**
+     * Releases the native resources of this map, most importantly the Box2D world with all its bodies.
+     * The map must not be used afterwards.
+     */
+    public void dispose() {
+        movement.dispose();
     }
 
-    //Reveals the exit when a player reaches the corresponding position.
+    //Reveals the exit when the wall on top of it is destroyed.
     public void revealExitIfNecessary(int x, int y){
         if(!exitRevealed && exit.getX() == x && exit.getY() ==y){
             exitRevealed = true;
+            eventBus.exitRevealed(exit);
         }
     }
 
@@ -263,11 +409,7 @@ public class GameMap {
         if (x < 0 || y < 0 || y >= walls.length || x >= walls[0].length) {
             return false;
         }
-        Wall wall = walls[y][x];
-        if (wall == null) {
-            return true;
-        }
-        return wall.isDestructible() && wall.isDestroyed(); // Passable if a destructible wall has been destroyed
+        return tiles[y * walls[0].length + x] == MapTemplate.TILE_FREE; // Destroyed walls are set to free in destroyWall
     }
 
     /**
@@ -295,64 +437,77 @@ public class GameMap {
         return r1.intersects(r2);// Check if the rectangles overlap
     }
 
-    //Checks if the player can move to a given position.
-    // The player cannot pass through walls that are not destroyed.
-    public boolean isPassablePlayer(float targetX, float targetY){
-        for(Wall[] row : walls){
-            for(Wall wall : row){
-                if(wall != null && !wall.isDestroyed()){// If the wall exists and is not destroyed
-                    Vector2 p1 = new Vector2(targetX, targetY);
-                    Vector2 p2 = wall.getPosition();
-                    // Create collision rectangles
-                    Rectangle r1 = new Rectangle((int)(p1.x*64), (int)(p1.y*64 ), (int)(player.getWidth()*64),(int)(player.getHeight()*64));
-                    Rectangle r2 = new Rectangle((int)(p2.x*64), (int)(p2.y*64) , 64,64);
-
-                    if(r1.intersects(r2)){
-                        return false;// Player is blocked
-                    }
-                }
-            }
-        }
+    /** Returns the player that is controlled and followed on this machine. */
+    public Player getPlayer() {
+        return players.get(localPlayerIndex);
+    }
 
-        return true;// Player can move
+    /** Returns all players on the map, in the order they joined. */
+    public List<Player> getPlayers() {
+        return players;
     }
 
-    //Checks if an enemy can move to a given position.
-    //  Enemies cannot pass through walls that are not destroyed.
-    public boolean isPassableEnemy(Enemy enemy, float targetX, float targetY){
-        for(Wall[] row : walls){
-            for(Wall wall : row){
-                if(wall != null && !wall.isDestroyed()){
-                    Vector2 p1 = new Vector2(targetX, targetY);
-                    Vector2 p2 = wall.getPosition();
+    /**
+     * Adds another player at the entrance, e.g. when a client joins a match.
+     * @return The new player.
+     */
+    public Player addPlayer() {
+        Player player = new Player(entrance.x, entrance.y, this);
+        players.add(player);
+        return player;
+    }
 
-                    Rectangle r1 = new Rectangle((int)(p1.x*64), (int)(p1.y*64 ), (int)(enemy.getWidth()*64),(int)(enemy.getHeight()*64));
-                    Rectangle r2 = new Rectangle((int)(p2.x*64), (int)(p2.y*64) , 64,64);
+    /**
+     * Selects the player that is controlled and followed on this machine, e.g. the slot a match client was given.
+     * @param index The index of the player, see {@link #getPlayers()}.
+     */
+    public void setLocalPlayer(int index) {
+        this.localPlayerIndex = index;
+    }
 
-                    if(r1.intersects(r2)){
-                        return false;
-                    }
-                }
+    private int getLivingPlayerCount() {
+        int count = 0;
+        for (Player player : players) {
+            if (player.isAlive()) {
+                count++;
             }
         }
-
-        return true;
+        return count;
     }
 
-
-    /** Returns the player on the map. */
-    public Player getPlayer() {
-        return this.player;
+    /** Returns the bus to subscribe to for what happens on the map. */
+    public MatchEventBus getEventBus() {
+        return eventBus;
     }
 
 
     /** Returns the flowers on the map. */
     public List<Flowers> getFlowers() {
-        return Arrays.stream(flowers).flatMap(Arrays::stream).toList();
+        return template.getFlowers();
+    }
+
+    /**
+     * Returns the connected component of a tile, see {@link MapAnalysis}.
+     * Tiles in the same component can reach each other once the destructible walls between them are destroyed.
+     * @return The component id, or {@link MapAnalysis#NO_COMPONENT} for indestructible walls.
+     */
+    public int getComponentAt(int x, int y) {
+        return template.getAnalysis().getComponent(x, y);
+    }
+
+    /** Returns the parsed map file this map was created from. */
+    public MapTemplate getTemplate() {
+        return template;
     }
 
+    /** Returns the power-ups that have not been collected yet, as a read-only view that changes with the map. */
     public List<PowerUp> getPowerUps() {
-        return new ArrayList<>(powerUps);
+        return powerUpView;
+    }
+
+    /** Returns the number of power-ups that have not been collected yet, without copying the list. */
+    public int getPowerUpCount() {
+        return powerUps.size();
     }
 
     public Wall[][] getWalls() {
@@ -385,18 +540,60 @@ public class GameMap {
 
 
     public void destroyWall(Wall wall) {
-        System.out.println("destroyWall: " + wall.getPosition());
-
         for(int i=0;i<walls.length;i++){
             for(int j=0;j<walls[i].length;j++){
                 if(walls[i][j] == wall){
-                    walls[i][j].destroy();
-                    walls[i][j] = null;
+                    clearWall(j, i);
                 }
             }
         }
     }
 
+    /**
+     * Destroys the destructible wall at the given tile, if there is one, e.g. when a match client learns that it was blown up.
+     */
+    public void destroyWallAt(int x, int y) {
+        Wall wall = getWallAt(x, y);
+        if (wall != null && wall.isDestructible()) {
+            clearWall(x, y);
+        }
+    }
+
+    /**
+     * Destroys the wall at the given tile and reveals whatever was hidden under it.
+     */
+    private void clearWall(int x, int y) {
+        walls[y][x].destroy();
+        walls[y][x] = null;
+        int tile = y * walls[y].length + x;
+        tiles[tile] = MapTemplate.TILE_FREE;
+        Log.debug("Wall destroyed at {}, {}", x, y);
+        bitboards.clear(TileBitboards.DESTRUCTIBLE, x, y);
+        if (tileChangeCount == tileChanges.length) {
+            tileChanges = Arrays.copyOf(tileChanges, tileChangeCount * 2);
+        }
+        tileChanges[tileChangeCount++] = tile;
+        movement.removeWall(x, y);
+        eventBus.wallDestroyed(x, y);
+        activateSensorsAt(x, y);
+    }
+
+    /**
+     * Switches on the sensors of a power-up or the exit that were hidden under the wall at the given tile.
+     */
+    private void activateSensorsAt(int x, int y) {
+        PowerUp powerUp = occupancy.getPowerUpAt(x, y);
+        if (powerUp != null) {
+            movement.setSensorActive(powerUp.getSensorId(), true);
+            bitboards.set(TileBitboards.POWER_UPS, x, y);
+            eventBus.powerUpRevealed(powerUp);
+        }
+        if (exit != null && (int) exit.getX() == x && (int) exit.getY() == y) {
+            movement.setSensorActive(exit.getSensorId(), true);
+            revealExitIfNecessary(x, y);
+        }
+    }
+
     public int getWidth() {
         if (walls == null || walls.length == 0) return 0;
         return walls[0].length;
@@ -418,16 +615,13 @@ public class GameMap {
         return exitRevealed;
     }
 
+    /** Returns the Box2D world, or null if the map uses {@link GridMovement}. */
     public World getWorld() {
-        return world;
-    }
-
-    public BomberQuestGame getGame() {
-        return game;
+        return movement.getWorld();
     }
 
-    public float getPhysicsTime() {
-        return physicsTime;
+    public MovementBackend getMovement() {
+        return movement;
     }
 
     public List<Enemy> getEnemies() {
@@ -438,22 +632,25 @@ public class GameMap {
         return bombs;
     }
 
-    //Checks if there is an enemy at a specific position.
+    //Checks if there is an enemy at a specific position, the first one in the list if several overlap the tile.
     public Enemy getEnemyAt2(int x, int y) {
-        for (Enemy enemy : enemies) {
-            if (isCollision(enemy, new Flowers(x, y))) {
-                return enemy;
-            }
-        }
-        return null;
+        return occupancy.getEnemyAt(x, y);
     }
 
 
     public void killEnemy(Enemy enemy) {
+        if (!enemy.isAlive()) {
+            return; // Already hit by another blast ray
+        }
+        enemy.kill();
         enemies.remove(enemy);
+        movement.removeActor(enemy.getMoverId()); // Stops colliding right away, resources are freed after the step
+        occupancy.removeEnemy(enemy, bitboards);
+        eventBus.enemyKilled(enemy);
 
         if(enemies.size() == 0){
             exit.setUnlocked(true);
+            eventBus.exitUnlocked(exit);
         }
     }
 
@@ -470,8 +667,12 @@ public class GameMap {
 
     public void addBomb(Bomb bomb){
         bombs.add(bomb);
+        bitboards.set(TileBitboards.BOMBS, (int) bomb.getX(), (int) bomb.getY());
+        occupancy.setBomb((int) bomb.getX(), (int) bomb.getY(), bomb);
+        recordEvent(EVENT_BOMB_PLACED, (int) bomb.getX(), (int) bomb.getY(), players.indexOf(bomb.getOwner()));
+        eventBus.bombPlaced(bomb); // E.g. play the bomb drop sound effect
         //setBombAt((int)bomb.getX(), (int)bomb.getY());
-        System.out.println("Bomb added to map at: " + bomb.getX() + ", " + bomb.getY());
+        Log.debug("Bomb added to map at: {}, {}", bomb.getX(), bomb.getY());
     }
 
     public void updateBombs(float delta) {
@@ -482,19 +683,403 @@ public class GameMap {
 
             if (bomb.isExploded()) {
                 iterator.remove();
-                getPlayer().bombExploded(); // Notify the player that they can place a new bomb
+                bitboards.clear(TileBitboards.BOMBS, (int) bomb.getX(), (int) bomb.getY());
+                occupancy.removeBomb(bomb);
+                bomb.getOwner().bombExploded(); // Notify the player that they can place a new bomb
+                recordEvent(EVENT_BOMB_EXPLODED, (int) bomb.getX(), (int) bomb.getY(), players.indexOf(bomb.getOwner()));
             }
         }
     }
 
+    /**
+     * Removes the bomb at the given tile without letting it explode, e.g. when a match client learns that it exploded
+     * on the server, which already sent the destroyed walls.
+     * @return The removed bomb, or null if there is no bomb at the tile.
+     */
+    public Bomb removeBombAt(int x, int y) {
+        Bomb bomb = occupancy.getBombAt(x, y);
+        if (bomb != null) {
+            bombs.remove(bomb);
+            bitboards.clear(TileBitboards.BOMBS, x, y);
+            occupancy.removeBomb(bomb);
+            bomb.getOwner().bombExploded();
+        }
+        return bomb;
+    }
+
+    private void recordEvent(int kind, int a, int b, int c) {
+        if (eventCount * EVENT_RECORD_SIZE == events.length) {
+            events = Arrays.copyOf(events, events.length * 2);
+        }
+        int offset = eventCount++ * EVENT_RECORD_SIZE;
+        events[offset] = kind;
+        events[offset + 1] = a;
+        events[offset + 2] = b;
+        events[offset + 3] = c;
+    }
+
+    /** Returns the number of events recorded since the map was created. */
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    /** Returns the kind of an event, one of the {@code EVENT_} constants. */
+    public int getEventKind(int index) {
+        return events[index * EVENT_RECORD_SIZE];
+    }
+
+    /**
+     * Returns an argument of an event, see the {@code EVENT_} constants.
+     * @param index The index of the event.
+     * @param argument The index of the argument, 0 to 2.
+     */
+    public int getEventArgument(int index, int argument) {
+        return events[index * EVENT_RECORD_SIZE + 1 + argument];
+    }
+
+    /** Returns the number of walls destroyed since the map was created. */
+    public int getTileChangeCount() {
+        return tileChangeCount;
+    }
+
+    /** Returns the tile of a destroyed wall as y * width + x, in the order the walls were destroyed. */
+    public int getTileChange(int index) {
+        return tileChanges[index];
+    }
+
+    /**
+     * Returns the exact number of bytes {@link #writeState(ByteBuffer)} writes for the current state.
+     */
+    public int getStateSize() {
+        return 2 + 2                                   // width, height
+                + 4 + 1                                // exit position, exit flags
+                + (tiles.length + 3) / 4               // 2 bits per tile
+                + 4 + 4 + 1 + 1                        // player
+                + 2 + enemies.size() * ENEMY_RECORD_SIZE
+                + 2 + bombs.size() * BOMB_RECORD_SIZE
+                + 2 + powerUps.size() * POWER_UP_RECORD_SIZE;
+    }
+
+    /**
+     * Writes the changing part of the map state: the tiles packed into 2 bits each, followed by fixed-width records
+     * for the player, the enemies, the ticking bombs and the power-ups that were not collected yet.
+     * Everything that never changes is taken from the {@link MapTemplate} again when the state is read.
+     * @param out The buffer to write to, with at least {@link #getStateSize()} bytes remaining.
+     */
+    public void writeState(ByteBuffer out) {
+        out.putShort((short) getWidth()).putShort((short) getHeight());
+        out.putShort((short) (exit == null ? -1 : (int) exit.getX()));
+        out.putShort((short) (exit == null ? -1 : (int) exit.getY()));
+        out.put((byte) ((exitRevealed ? 1 : 0) | (exit != null && exit.isUnlocked() ? 2 : 0)));
+
+        int packed = 0;
+        for (int i = 0; i < tiles.length; i++) {
+            packed |= tiles[i] << ((i & 3) * 2);
+            if ((i & 3) == 3 || i == tiles.length - 1) {
+                out.put((byte) packed);
+                packed = 0;
+            }
+        }
+
+        Player player = getPlayer();
+        out.putFloat(player.getX()).putFloat(player.getY());
+        out.put((byte) player.getBlastRadius()).put((byte) player.getBombLimit());
+
+        out.putShort((short) enemies.size());
+        for (Enemy enemy : enemies) {
+            out.putFloat(enemy.getX()).putFloat(enemy.getY()).put((byte) enemy.getDirection().ordinal());
+        }
+        out.putShort((short) bombs.size());
+        for (Bomb bomb : bombs) {
+            out.putShort((short) bomb.getX()).putShort((short) bomb.getY()).putFloat(bomb.getExplosionTimer());
+        }
+        out.putShort((short) powerUps.size());
+        for (PowerUp powerUp : powerUps) {
+            out.putShort((short) powerUp.getX()).putShort((short) powerUp.getY()).put((byte) powerUp.getType().ordinal());
+        }
+    }
+
+    /**
+     * Restores a state written by {@link #writeState(ByteBuffer)} onto this map, which must have been freshly created
+     * from the same template.
+     * @param in The buffer to read from.
+     * @throws IOException If the state does not belong to this map.
+     */
+    public void readState(ByteBuffer in) throws IOException {
+        int width = in.getShort();
+        int height = in.getShort();
+        if (width != getWidth() || height != getHeight()) {
+            throw new IOException("Saved state is " + width + "x" + height + ", map is " + getWidth() + "x" + getHeight());
+        }
+
+        // The exit may have been placed randomly, so restore it before the tiles reveal anything
+        int exitX = in.getShort();
+        int exitY = in.getShort();
+        int exitFlags = in.get();
+        if (exitX >= 0 && (exit == null || (int) exit.getX() != exitX || (int) exit.getY() != exitY)) {
+            if (exit != null) {
+                movement.removeSensor(exit.getSensorId());
+            }
+            exit = new Exit(exitX, exitY);
+            exit.setSensorId(movement.addSensor(exit, exitX, exitY, isReveal(exit)));
+        }
+        exitRevealed = (exitFlags & 1) != 0;
+
+        int packed = 0;
+        for (int i = 0; i < tiles.length; i++) {
+            if ((i & 3) == 0) {
+                packed = in.get();
+            }
+            int tile = (packed >> ((i & 3) * 2)) & 3;
+            if (tile != tiles[i]) {
+                if (tile != MapTemplate.TILE_FREE || tiles[i] != MapTemplate.TILE_DESTRUCTIBLE) {
+                    throw new IOException("Saved tile " + tile + " at " + i + " does not match the map");
+                }
+                clearWall(i % width, i / width);
+            }
+        }
+
+        float playerX = in.getFloat();
+        float playerY = in.getFloat();
+        int blastRadius = in.get();
+        int bombLimit = in.get();
+
+        for (Enemy enemy : enemies) {
+            movement.removeActor(enemy.getMoverId());
+        }
+        enemies.clear();
+        int enemyCount = in.getShort();
+        for (int i = 0; i < enemyCount; i++) {
+            Enemy enemy = new Enemy(in.getFloat(), in.getFloat(), this);
+            enemy.setDirection(Direction.values()[in.get()]);
+            enemies.add(enemy);
+        }
+
+        bombs.clear();
+        int bombCount = in.getShort();
+        for (int i = 0; i < bombCount; i++) {
+            Bomb bomb = new Bomb(in.getShort(), in.getShort(), this, getPlayer());
+            bomb.setExplosionTimer(in.getFloat());
+            bombs.add(bomb);
+        }
+        getPlayer().restore(playerX, playerY, blastRadius, bombLimit, bombCount);
+
+        // Drop the power-ups that had been collected
+        boolean[] remaining = new boolean[tiles.length];
+        int powerUpCount = in.getShort();
+        for (int i = 0; i < powerUpCount; i++) {
+            int x = in.getShort();
+            int y = in.getShort();
+            in.get(); // The type is part of the template
+            remaining[y * width + x] = true;
+        }
+        Iterator<PowerUp> iterator = powerUps.iterator();
+        while (iterator.hasNext()) {
+            PowerUp powerUp = iterator.next();
+            if (!remaining[(int) powerUp.getY() * width + (int) powerUp.getX()]) {
+                iterator.remove();
+                movement.removeSensor(powerUp.getSensorId());
+            }
+        }
+
+        if (exit != null) {
+            exit.setUnlocked((exitFlags & 2) != 0 || enemies.isEmpty());
+        }
+        rebuildTileIndexes();
+    }
+
+    /**
+     * Copies the complete simulation state into a snapshot, e.g. once per tick for rollback netcode.
+     * Only maps with {@link GridMovement} can be snapshotted, Box2D keeps part of its state in native code.
+     * @param into The snapshot to overwrite.
+     * @throws UnsupportedOperationException If the movement backend cannot be rolled back.
+     */
+    public void saveSnapshot(MapSnapshot into) {
+        into.movement = movement.saveState(into.movement);
+        into.prepare(64 + players.size() * Player.SNAPSHOT_SIZE + enemies.size() * Enemy.SNAPSHOT_SIZE
+                + bombs.size() * Bomb.SNAPSHOT_SIZE, tiles.length);
+        System.arraycopy(tiles, 0, into.tiles, 0, tiles.length);
+
+        ByteBuffer out = into.data;
+        out.putLong(randomState).putInt(eventCount).putInt(tileChangeCount);
+        out.put((byte) ((over ? 1 : 0) | (won ? 2 : 0) | (exitRevealed ? 4 : 0) | (exit.isUnlocked() ? 8 : 0)));
+        out.putInt(players.size());
+        for (Player player : players) {
+            player.writeSnapshot(out);
+        }
+        into.enemies.clear();
+        into.enemies.addAll(enemies);
+        for (Enemy enemy : enemies) {
+            enemy.writeSnapshot(out);
+        }
+        into.bombs.clear();
+        into.bombs.addAll(bombs);
+        for (Bomb bomb : bombs) {
+            bomb.writeSnapshot(out);
+        }
+        into.powerUps.clear();
+        into.powerUps.addAll(powerUps);
+    }
+
+    /**
+     * Rolls the map back (or forward) to a snapshot taken by {@link #saveSnapshot(MapSnapshot)} on this map.
+     * Players cannot join between the snapshot and the restore.
+     * @param from The snapshot to restore.
+     */
+    public void restoreSnapshot(MapSnapshot from) {
+        movement.restoreState(from.movement);
+        int width = getWidth();
+        for (int i = 0; i < tiles.length; i++) {
+            if (tiles[i] == from.tiles[i]) {
+                continue;
+            }
+            int x = i % width;
+            int y = i / width;
+            if (from.tiles[i] == MapTemplate.TILE_DESTRUCTIBLE) {
+                walls[y][x] = new DestructibleWall(x, y); // Blown up after the snapshot
+            } else {
+                walls[y][x] = null;
+            }
+            tiles[i] = from.tiles[i];
+        }
+
+        ByteBuffer in = from.data.duplicate();
+        in.flip();
+        randomState = in.getLong();
+        eventCount = in.getInt();
+        tileChangeCount = in.getInt();
+        int flags = in.get();
+        over = (flags & 1) != 0;
+        won = (flags & 2) != 0;
+        exitRevealed = (flags & 4) != 0;
+        exit.setUnlocked((flags & 8) != 0);
+        int playerCount = in.getInt();
+        if (playerCount != players.size()) {
+            throw new IllegalStateException("Snapshot has " + playerCount + " players, map has " + players.size());
+        }
+        for (Player player : players) {
+            player.readSnapshot(in);
+        }
+        enemies.clear();
+        enemies.addAll(from.enemies);
+        for (Enemy enemy : enemies) {
+            enemy.readSnapshot(in);
+        }
+        bombs.clear();
+        bombs.addAll(from.bombs);
+        for (Bomb bomb : bombs) {
+            bomb.readSnapshot(in);
+        }
+        powerUps.clear();
+        powerUps.addAll(from.powerUps);
+        rebuildTileIndexes();
+    }
+
+    /**
+     * Appends a compact text picture of the current map state around the player, one row per line with the top row
+     * first: at most {@link #DESCRIBE_RADIUS} tiles in every direction, so a large map does not produce a huge dump.
+     * '#' indestructible wall, '+' destructible wall, 'X' exit, 'E' enemy, 'B' bomb, 'P' player, '.' free tile.
+     * Used by the flight recorder when dumping a hitch.
+     * @param out The builder to append to.
+     */
+    public void describeState(StringBuilder out) {
+        Player player = getPlayer();
+        int playerX = (int) Math.floor(player.getX());
+        int playerY = (int) Math.floor(player.getY());
+        int left = Math.max(0, playerX - DESCRIBE_RADIUS);
+        int bottom = Math.max(0, playerY - DESCRIBE_RADIUS);
+        int right = Math.min(getWidth() - 1, playerX + DESCRIBE_RADIUS);
+        int top = Math.min(getHeight() - 1, playerY + DESCRIBE_RADIUS);
+
+        out.append(getWidth()).append('x').append(getHeight())
+                .append(" player=").append(player.getX()).append(',').append(player.getY())
+                .append(" enemies=").append(enemies.size())
+                .append(" bombs=").append(bombs.size())
+                .append(" powerups=").append(powerUps.size())
+                .append(" exitUnlocked=").append(exit != null && exit.isUnlocked())
+                .append(" tiles=").append(left).append(',').append(bottom)
+                .append('-').append(right).append(',').append(top)
+                .append('\n');
+        for (int y = top; y >= bottom; y--) {
+            for (int x = left; x <= right; x++) {
+                out.append(x == playerX && y == playerY ? 'P' : describeTile(x, y));
+            }
+            out.append('\n');
+        }
+    }
+
+    private char describeTile(int x, int y) {
+        if (occupancy.getBombAt(x, y) != null) {
+            return 'B';
+        }
+        if (occupancy.getEnemyAt(x, y) != null) {
+            return 'E';
+        }
+        if (exit != null && (int) exit.getX() == x && (int) exit.getY() == y) {
+            return 'X';
+        }
+        Wall wall = walls[y][x];
+        if (wall == null || wall.isDestroyed()) {
+            return '.';
+        }
+        return wall.isDestructible() ? '+' : '#';
+    }
+
     public boolean hasBombAt(int x, int y) {
-        for(Bomb bomb: new ArrayList<>(bombs)){
-            if(bomb.getX() == x && bomb.getY() == y){
-                return true;
+        return occupancy.getBombAt(x, y) != null;
+    }
+
+    /** Returns what is on every tile, see {@link TileOccupancy}. */
+    public TileOccupancy getOccupancy() {
+        return occupancy;
+    }
+
+    /** Returns the bitboards of the walls, bombs, revealed power-ups and enemies, see {@link TileBitboards}. */
+    public TileBitboards getBitboards() {
+        return bitboards;
+    }
+
+    /**
+     * Recomputes the bitboards and the occupancy from the tiles, bombs, power-ups and enemies, after they were
+     * replaced wholesale.
+     */
+    private void rebuildTileIndexes() {
+        int width = getWidth();
+        bitboards.clearLayer(TileBitboards.SOLID);
+        bitboards.clearLayer(TileBitboards.DESTRUCTIBLE);
+        for (int i = 0; i < tiles.length; i++) {
+            if (tiles[i] == MapTemplate.TILE_INDESTRUCTIBLE) {
+                bitboards.set(TileBitboards.SOLID, i % width, i / width);
+            } else if (tiles[i] == MapTemplate.TILE_DESTRUCTIBLE) {
+                bitboards.set(TileBitboards.DESTRUCTIBLE, i % width, i / width);
+            }
+        }
+        bitboards.clearLayer(TileBitboards.BOMBS);
+        occupancy.clearBombsAndPowerUps();
+        for (Bomb bomb : bombs) {
+            bitboards.set(TileBitboards.BOMBS, (int) bomb.getX(), (int) bomb.getY());
+            occupancy.setBomb((int) bomb.getX(), (int) bomb.getY(), bomb);
+        }
+        bitboards.clearLayer(TileBitboards.POWER_UPS);
+        for (PowerUp powerUp : powerUps) {
+            int x = (int) powerUp.getX();
+            int y = (int) powerUp.getY();
+            occupancy.setPowerUp(x, y, powerUp);
+            if (isPassable(x, y)) {
+                bitboards.set(TileBitboards.POWER_UPS, x, y);
             }
         }
+        updateEnemyIndexes();
+    }
 
-        return false;
+    /**
+     * Puts the enemies on the tiles they overlap, in the bitboards and the occupancy, with the same 64-pixel
+     * rectangles as {@link #isCollision(Drawable, Drawable)}. Enemies move every step, so this runs after every
+     * physics step; whoever moves enemies directly, like a match client applying a snapshot, has to call it as well.
+     * Only the enemies that changed tiles are updated, see {@link TileOccupancy}.
+     */
+    public void updateEnemyIndexes() {
+        occupancy.updateEnemies(enemies, bitboards);
     }
 
 
@@ -9,12 +9,17 @@ import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.Vector2;
-import com.badlogic.gdx.physics.box2d.World;
 import com.badlogic.gdx.utils.ScreenUtils;
 import de.tum.cit.ase.bomberquest.BomberQuestGame;
+import de.tum.cit.ase.bomberquest.debug.FlightRecorder;
+import de.tum.cit.ase.bomberquest.debug.Log;
+import de.tum.cit.ase.bomberquest.debug.ResourceTracker;
 import de.tum.cit.ase.bomberquest.map.*;
+import de.tum.cit.ase.bomberquest.net.MatchClient;
 import de.tum.cit.ase.bomberquest.texture.Drawable;
 
+import java.util.function.Consumer;
+
 /**
  * The GameScreen class is responsible for rendering the gameplay screen.
  * It manages the game state, rendering objects, and handling input.
@@ -43,7 +48,14 @@ public class GameScreen implements Screen {
     private CountdownTimer timer; // Countdown timer for game time limit
     private boolean isGameOver = false; // Flag to check if the game is over
     private Player player; // The player object
-    private World world; // Physics simulation world
+    private final FlightRecorder flightRecorder = new FlightRecorder(); // Dumps the last frames when a frame exceeds its budget
+    private final MatchClient client; // Mirrors a match from a server, or null if the map is simulated locally
+    private final InputQueue inputQueue = new InputQueue(); // Key events, applied at the start of the next tick
+    private SimulationThread simulation; // Ticks the local map while the screen is shown, or null
+    private final RenderSnapshot clientSnapshot = new RenderSnapshot(); // The state of the client's map, captured every frame
+    private RenderSnapshot drawnSnapshot; // The snapshot drawn this frame
+    private final ExplosionParticles particles = new ExplosionParticles(); // Sparks and debris of the explosions
+    private final Consumer<StringBuilder> describeDrawnSnapshot = out -> drawnSnapshot.describeState(out); // For hitch dumps
 
 
     /**
@@ -52,8 +64,20 @@ public class GameScreen implements Screen {
      * @param game The main game class, used to access global resources and methods.
      */
     public GameScreen(BomberQuestGame game, GameMap map) {
-        this.world = new World(new Vector2(0, 0), true);// Create a physics world with no gravity
+        this(game, map, null);
+    }
+
+    /**
+     * Constructor for a GameScreen that shows a match played on a server.
+     * The map is not ticked; it is updated from the snapshots the client receives.
+     *
+     * @param game The main game class.
+     * @param map The map the client mirrors the match onto.
+     * @param client The connected client, or null to simulate the map locally.
+     */
+    public GameScreen(BomberQuestGame game, GameMap map, MatchClient client) {
         this.game = game;
+        this.client = client;
         this.spriteBatch = game.getSpriteBatch();
 
         this.map = game.getMap();
@@ -75,20 +99,21 @@ public class GameScreen implements Screen {
      */
     @Override
     public void render(float deltaTime) {
-
-        // Render the HUD (game timer)
-        spriteBatch.begin();
-        drawHUD();
-        spriteBatch.end();
+        flightRecorder.beginFrame();
 
         // If the timer runs out, trigger game over
         if (timer.isGameOver() && !isGameOver) {
             isGameOver = true;
             onGameOver();
+            return; // hide() has released the batch and the HUD font
         }
         // If the player presses the ESCAPE key, return to the menu
         if (Gdx.input.isKeyJustPressed(Input.Keys.ESCAPE)) {
             game.goToMenu();
+            return; // hide() has released the batch and the HUD font
+        }
+        if (client == null && simulation == null) {
+            return; // Hidden in the middle of the frame, e.g. by a screen change; nothing may be drawn any more
         }
 
         // Clear the previous frame from the screen, or else the picture smears
@@ -96,32 +121,44 @@ public class GameScreen implements Screen {
 
         // Cap frame time to 250ms to prevent spiral of death
         float frameTime = Math.min(deltaTime, 0.250f);
-
-        // Update the map state
-        map.tick(frameTime);
+        int inputMask = 0;
+
+        // Let the server update the map and copy it, or take the newest tick of the simulation thread
+        if (client != null) {
+            inputMask = inputQueue.drain(System.nanoTime());
+            flightRecorder.mark(FlightRecorder.PHASE_INPUT);
+            client.update(frameTime, inputMask);
+            clientSnapshot.capture(map);
+            drawnSnapshot = clientSnapshot;
+        } else {
+            drawnSnapshot = simulation.acquire();
+        }
+        particles.update(frameTime);
+        flightRecorder.mark(FlightRecorder.PHASE_TICK);
 
         // Update the camera
-        updateCamera();
-
-        // Handle player input
-        player.handleInput();
+        updateCamera(drawnSnapshot);
+        flightRecorder.mark(FlightRecorder.PHASE_CAMERA);
 
         // Render the map on the screen
-        renderMap();
+        renderMap(drawnSnapshot);
+        flightRecorder.mark(FlightRecorder.PHASE_RENDER);
 
         // Render the HUD on the screen
-        hud.render(player.getX(), player.getY());
+        hud.render(drawnSnapshot.getPlayerX(), drawnSnapshot.getPlayerY());
+        flightRecorder.mark(FlightRecorder.PHASE_HUD);
 
+        flightRecorder.endFrame(drawnSnapshot.getEnemyCount(), drawnSnapshot.getBombCount(),
+                drawnSnapshot.getPowerUpCount(), inputMask, describeDrawnSnapshot);
     }
 
     /**
      * Updates the camera to match the current state of the game.
      * Currently, this just centers the camera at the origin.
      */
-    private void updateCamera() {
-        Player player = map.getPlayer(); // get player instance
-        float playerX = player.getX() * TILE_SIZE_PX * SCALE;
-        float playerY = player.getY() * TILE_SIZE_PX * SCALE;
+    private void updateCamera(RenderSnapshot snapshot) {
+        float playerX = snapshot.getPlayerX() * TILE_SIZE_PX * SCALE;
+        float playerY = snapshot.getPlayerY() * TILE_SIZE_PX * SCALE;
         // Keep the player centered on the screen
         mapCamera.position.set(playerX, playerY, 0);
         // Ensure the camera does not move outside the map boundaries
@@ -134,7 +171,7 @@ public class GameScreen implements Screen {
         mapCamera.update(); // This is necessary to apply the changes
     }
 
-    private void renderMap() {
+    private void renderMap(RenderSnapshot snapshot) {
         // This configures the spriteBatch to use the camera's perspective when rendering
         spriteBatch.setProjectionMatrix(mapCamera.combined);
 
@@ -142,44 +179,19 @@ public class GameScreen implements Screen {
         spriteBatch.begin();
 
         // Render everything in the map here, in order from lowest to highest (later things appear on top)
-        // You may want to add a method to GameMap to return all the drawables in the correct order
+        // The flowers never change; everything else is drawn as it was at the end of the snapshot's tick
 
         //flowers
         for (Flowers flowers : map.getFlowers()) {
             draw(spriteBatch, flowers);
         }
 
-        //powerups
-        for (PowerUp powerUp : map.getPowerUps()) {
-            draw(spriteBatch, powerUp);
-        }
+        //powerups, exit, walls, enemies, bombs and the player
+        snapshot.draw(spriteBatch);
 
-        //exit
-        draw(spriteBatch, map.getExit());
-
-        //walls
-        for (int y = 0; y < map.getWalls().length; y++) {
-            for (int x = 0; x < map.getWalls()[y].length; x++) {
-                Wall wall = map.getWallAt(x, y);
-                if (wall != null) {
-                    draw(spriteBatch, wall);
-                }
-            }
-        }
-        // enemies
-        for (Enemy enemy : map.getEnemies()) {
-            draw(spriteBatch, enemy);
-        }
-        //bombs
-        for (Bomb bomb : map.getBombs()) {
-            if (bomb.getExplosionTimer() < 0.8f) {
-                draw2(spriteBatch, bomb);
-            } else {
-                draw(spriteBatch, bomb);
-            }
-        }
+        //explosion particles
+        particles.draw(spriteBatch);
 
-        draw(spriteBatch, map.getPlayer());
         // Finish drawing, i.e. send the drawn items to the graphics card
         spriteBatch.end();
     }
@@ -199,69 +211,8 @@ public class GameScreen implements Screen {
         // Additionally scale everything by the game scale
         float width = texture.getRegionWidth() * SCALE;
         float height = texture.getRegionHeight() * SCALE;
-
-        if (drawable instanceof Player) {
-            width = 8 * SCALE;
-            height = 13 * SCALE;
-        }
         spriteBatch.draw(texture, x, y, width, height);
     }
-    /**
-     * Draws the bomb explosion animation.
-     * This method renders the explosion effect in all four cardinal directions (UP, DOWN, LEFT, RIGHT),
-     * extending based on the bomb's blast radius.
-     *
-     * @param spriteBatch The sprite batch used for rendering.
-     * @param bomb The bomb whose explosion needs to be drawn.
-     */
-    private static void draw2(SpriteBatch spriteBatch, Bomb bomb) {
-
-        // Get the current appearance of the bomb (or explosion animation)
-        TextureRegion texture = bomb.getCurrentAppearance();
-        // Convert bomb's grid-based coordinates to pixel-based coordinates
-        float x = bomb.getX() * TILE_SIZE_PX * SCALE;
-        float y = bomb.getY() * TILE_SIZE_PX * SCALE;
-
-        // Draw the center of the explosion at the bomb's position
-        TextureRegion center = new TextureRegion(texture, 32, 32, 16, 16);
-        spriteBatch.draw(center, x, y, 64, 64);
-
-        // Render explosion in the UP direction
-        int radius = bomb.getBlastRadius().get(Direction.UP);
-        for (int i = 0; i < radius; i++) {
-            TextureRegion top = new TextureRegion(texture, 32, 16, 16, 16);
-            spriteBatch.draw(top, x, y + 64 * i + 64, 64, 64);
-        }
-
-        // Render explosion in the DOWN direction
-        radius = bomb.getBlastRadius().get(Direction.DOWN);
-        for (int i = 0; i < radius; i++) {
-            TextureRegion down = new TextureRegion(texture, 32, 48, 16, 16);
-            spriteBatch.draw(down, x, y - 64 * i - 64, 64, 64);
-        }
-
-        // Render explosion in the LEFT direction
-        radius = bomb.getBlastRadius().get(Direction.LEFT);
-        for (int i = 0; i < radius; i++) {
-            TextureRegion left = new TextureRegion(texture, 16, 32, 16, 16);
-            spriteBatch.draw(left, x- 64 * i - 64, y  , 64, 64);
-        }
-
-        // Render explosion in the RIGHT direction
-        radius = bomb.getBlastRadius().get(Direction.RIGHT);
-        for (int i = 0; i < radius; i++) {
-            TextureRegion right = new TextureRegion(texture, 48, 32, 16, 16);
-            spriteBatch.draw(right, x+ 64 * i + 64, y, 64, 64);
-        }
-    }
-
-    /**
-     * Draws the Heads-Up Display (HUD), such as the countdown timer.
-     */
-    private void drawHUD() {
-        // Create a font for rendering text
-        BitmapFont font = new BitmapFont();
-    }
 
     /**
      * Handles game-over logic when the timer expires.
@@ -291,35 +242,72 @@ public class GameScreen implements Screen {
         return timer;
     }
 
+    /** Returns the client of the match shown on this screen, or null if the map is simulated locally. */
+    public MatchClient getClient() {
+        return client;
+    }
+
     // Unused methods from the Screen interface
     @Override
     public void pause() {
         timer.setPause(true);
+        if (simulation != null) {
+            simulation.setPaused(true); // Waits for the running tick, so the map can be saved
+        }
+        game.saveGame(); // The application may be closed while it is paused
     }
 
     @Override
     public void resume() {
         timer.setPause(false);
+        if (simulation != null) {
+            simulation.setPaused(false);
+        }
     }
 
     @Override
     public void show() {
-        spriteBatch = new SpriteBatch();
+        spriteBatch = ResourceTracker.track(new SpriteBatch());
 
         timer.setPause(false);
-        BitmapFont font = new BitmapFont();
+        BitmapFont font = ResourceTracker.track(new BitmapFont());
+
+        inputQueue.reset();
+        Gdx.input.setInputProcessor(inputQueue);
 
         //将计时器传递给hud
+        hud.detach(); // The HUD of the constructor or of the last show() must not keep listening
         hud = new Hud(spriteBatch, font, timer, map);
+
+        particles.attach(map); // Before the map is ticked again
+
+        // Tick the local map on its own thread until the screen is hidden; the server ticks the client's map
+        if (client == null) {
+            simulation = new SimulationThread(map, inputQueue, game.getTimeStep());
+            simulation.start();
+        }
     }
 
     @Override
     public void hide() {
+        if (simulation != null) {
+            simulation.stop(); // The map may be saved or replaced once the screen is hidden
+            simulation = null;
+        }
+        particles.detach();
+        if (inputQueue.getEventCount() > 0) {
+            Log.info("Input latency p50 {} us, p99 {} us", inputQueue.getLatencyMicros(50), inputQueue.getLatencyMicros(99));
+        }
+        Gdx.input.setInputProcessor(null); // The next screen sets its own
+        // show() creates a new batch and HUD font every time, so release them here
+        hud.dispose();
+        ResourceTracker.dispose(spriteBatch);
+        spriteBatch = game.getSpriteBatch();
     }
 
     @Override
     public void dispose() {
-        spriteBatch.dispose();
+        // The sprite batch is owned by the game at this point (see hide()), so there is nothing left to release
     }
 
 }
@@ -0,0 +1,587 @@
+package de.tum.cit.ase.bomberquest.map;
+
+import com.badlogic.gdx.physics.box2d.World;
+
+import java.util.Arrays;
+
+/**
+ * Lightweight movement backend for tile maps that does not use Box2D at all.
+ * Every moving object is an axis-aligned box that is moved one axis at a time and stopped at the edge
+ * of the first solid tile it would enter, which makes it slide along walls.
+ * Objects do not push each other, they only report contacts, exactly like sensors.
+ * All state lives in plain arrays, so a step neither allocates nor calls into native code,
+ * and the result only depends on the inputs, which makes the simulation deterministic.
+ *
+ * Like in Box2D, contacts between moving objects and with sensors are reported once when they begin and once
+ * when they end, unless one side was removed in between.
+ */
+public class GridMovement implements MovementBackend {
+
+    /** Keeps boxes from touching a wall edge exactly, so the tile behind it is never counted as entered. */
+    private static final float EPSILON = 1e-4f;
+
+    private final GameMap map;
+    private final MapContactListener contacts;
+    private final float timeStep;
+    private float physicsTime = 0;
+
+    // Moving objects, indexed by id
+    private Object[] owners = new Object[16];
+    private int[] kinds = new int[16];
+    private float[] x = new float[16];
+    private float[] y = new float[16];
+    private float[] vx = new float[16];
+    private float[] vy = new float[16];
+    private boolean[] active = new boolean[16];
+    private int actorCount;
+    /** Ids of removed objects that can be handed out again. */
+    private int[] freeIds = new int[16];
+    private int freeIdCount;
+
+    // Sensors, indexed by id
+    private Object[] sensorOwners = new Object[8];
+    private int[] sensorTiles = new int[8];
+    private boolean[] sensorActive = new boolean[8];
+    /** The player actor currently touching each sensor, or -1. */
+    private int[] sensorToucher = new int[8];
+    private int sensorCount;
+
+    // Per-tile buckets of moving objects, rebuilt every step to find overlapping pairs in linear time
+    private final int[] tileHead;
+    private int[] nextInTile = new int[16];
+    /** The tiles whose bucket was filled in the last step, so only those are emptied again. */
+    private int[] filledTiles = new int[16];
+    private int filledTileCount;
+
+    // The overlapping pairs of moving objects of the last step, sorted by the lower id, with the owners at the time
+    private int[] pairLow = new int[16];
+    private int[] pairHigh = new int[16];
+    private Object[] pairLowOwners = new Object[16];
+    private Object[] pairHighOwners = new Object[16];
+    private int pairCount;
+    // The pairs of the current step, swapped with the ones above at the end of it
+    private int[] nextPairLow = new int[16];
+    private int[] nextPairHigh = new int[16];
+    private Object[] nextPairLowOwners = new Object[16];
+    private Object[] nextPairHighOwners = new Object[16];
+    private int nextPairCount;
+
+    /**
+     * Creates a grid movement backend.
+     * @param map The map whose walls block movement, see {@link GameMap#isPassable(int, int)}.
+     * @param walls The walls of the map, indexed [y][x], which determine the size of the grid.
+     * @param contacts The queue that receives the contacts of every step.
+     * @param timeStep The fixed time step of the simulation.
+     */
+    public GridMovement(GameMap map, Wall[][] walls, MapContactListener contacts, float timeStep) {
+        this.map = map;
+        this.contacts = contacts;
+        this.timeStep = timeStep;
+        int height = walls.length;
+        int width = height == 0 ? 0 : walls[0].length;
+        this.tileHead = new int[width * height];
+        Arrays.fill(tileHead, -1);
+    }
+
+    /** The offset of the hitbox from the object's position. */
+    private static float offset(int kind) {
+        return kind == KIND_PLAYER ? 0 : 0.1f;
+    }
+
+    /** The width and height of the hitbox. */
+    private static float size(int kind) {
+        return kind == KIND_PLAYER ? 0.5f : 0.8f;
+    }
+
+    @Override
+    public int addActor(Object owner, int kind, float startX, float startY) {
+        int id;
+        if (freeIdCount > 0) {
+            id = freeIds[--freeIdCount];
+        } else {
+            if (actorCount == owners.length) {
+                int capacity = actorCount * 2;
+                owners = Arrays.copyOf(owners, capacity);
+                kinds = Arrays.copyOf(kinds, capacity);
+                x = Arrays.copyOf(x, capacity);
+                y = Arrays.copyOf(y, capacity);
+                vx = Arrays.copyOf(vx, capacity);
+                vy = Arrays.copyOf(vy, capacity);
+                active = Arrays.copyOf(active, capacity);
+                nextInTile = Arrays.copyOf(nextInTile, capacity);
+                filledTiles = Arrays.copyOf(filledTiles, capacity);
+            }
+            id = actorCount++;
+        }
+        owners[id] = owner;
+        kinds[id] = kind;
+        x[id] = startX;
+        y[id] = startY;
+        vx[id] = 0;
+        vy[id] = 0;
+        active[id] = true;
+        return id;
+    }
+
+    @Override
+    public void removeActor(int id) {
+        if (!active[id]) {
+            return;
+        }
+        owners[id] = null;
+        active[id] = false;
+        if (freeIdCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIdCount * 2);
+        }
+        freeIds[freeIdCount++] = id;
+    }
+
+    @Override
+    public void setVelocity(int id, float velocityX, float velocityY) {
+        vx[id] = velocityX;
+        vy[id] = velocityY;
+    }
+
+    @Override
+    public void setPosition(int id, float newX, float newY) {
+        x[id] = newX;
+        y[id] = newY;
+    }
+
+    @Override
+    public float getX(int id) {
+        return x[id];
+    }
+
+    @Override
+    public float getY(int id) {
+        return y[id];
+    }
+
+    @Override
+    public int addSensor(Object owner, int tileX, int tileY, boolean isActive) {
+        if (sensorCount == sensorOwners.length) {
+            int capacity = sensorCount * 2;
+            sensorOwners = Arrays.copyOf(sensorOwners, capacity);
+            sensorTiles = Arrays.copyOf(sensorTiles, capacity);
+            sensorActive = Arrays.copyOf(sensorActive, capacity);
+            sensorToucher = Arrays.copyOf(sensorToucher, capacity);
+        }
+        int id = sensorCount++;
+        sensorOwners[id] = owner;
+        sensorTiles[id] = tileY * map.getWidth() + tileX;
+        sensorActive[id] = isActive;
+        sensorToucher[id] = -1;
+        return id;
+    }
+
+    @Override
+    public void setSensorActive(int id, boolean isActive) {
+        sensorActive[id] = isActive;
+    }
+
+    @Override
+    public void removeSensor(int id) {
+        sensorActive[id] = false;
+        sensorOwners[id] = null;
+    }
+
+    @Override
+    public void removeWall(int tileX, int tileY) {
+        // Walls are read directly from the map, nothing to update
+    }
+
+    @Override
+    public void step(float frameTime) {
+        physicsTime += frameTime;
+        boolean stepped = false;
+        while (physicsTime >= timeStep) {
+            for (int id = 0; id < actorCount; id++) {
+                if (active[id]) {
+                    moveX(id, vx[id] * timeStep);
+                    moveY(id, vy[id] * timeStep);
+                }
+            }
+            physicsTime -= timeStep;
+            stepped = true;
+        }
+        if (stepped) {
+            reportContacts();
+        }
+    }
+
+    /**
+     * Moves a box along the x-axis and stops it at the first solid tile column it would enter.
+     * Steps are much shorter than a tile, so only the column at the leading edge has to be checked.
+     */
+    private void moveX(int id, float dx) {
+        if (dx == 0) {
+            return;
+        }
+        float off = offset(kinds[id]);
+        float size = size(kinds[id]);
+        float newX = x[id] + dx;
+        int bottom = (int) Math.floor(y[id] + off + EPSILON);
+        int top = (int) Math.floor(y[id] + off + size - EPSILON);
+        if (dx > 0) {
+            int column = (int) Math.floor(newX + off + size - EPSILON);
+            if (isBlocked(column, bottom, column, top)) {
+                newX = column - off - size;
+            }
+        } else {
+            int column = (int) Math.floor(newX + off + EPSILON);
+            if (isBlocked(column, bottom, column, top)) {
+                newX = column + 1 - off;
+            }
+        }
+        x[id] = newX;
+    }
+
+    /** Same as {@link #moveX(int, float)}, for the y-axis. */
+    private void moveY(int id, float dy) {
+        if (dy == 0) {
+            return;
+        }
+        float off = offset(kinds[id]);
+        float size = size(kinds[id]);
+        float newY = y[id] + dy;
+        int left = (int) Math.floor(x[id] + off + EPSILON);
+        int right = (int) Math.floor(x[id] + off + size - EPSILON);
+        if (dy > 0) {
+            int row = (int) Math.floor(newY + off + size - EPSILON);
+            if (isBlocked(left, row, right, row)) {
+                newY = row - off - size;
+            }
+        } else {
+            int row = (int) Math.floor(newY + off + EPSILON);
+            if (isBlocked(left, row, right, row)) {
+                newY = row + 1 - off;
+            }
+        }
+        y[id] = newY;
+    }
+
+    private boolean isBlocked(int x1, int y1, int x2, int y2) {
+        for (int tileY = y1; tileY <= y2; tileY++) {
+            for (int tileX = x1; tileX <= x2; tileX++) {
+                if (!map.isPassable(tileX, tileY)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reports the overlaps between moving objects and with sensors that began or ended in this step to the contact
+     * queue. Objects are bucketed by the tile of their lower left corner; every hitbox is at most one tile large,
+     * so overlapping objects are always in the same or a neighbouring bucket.
+     */
+    private void reportContacts() {
+        int width = map.getWidth();
+        int height = map.getHeight();
+        for (int i = 0; i < filledTileCount; i++) {
+            tileHead[filledTiles[i]] = -1; // Cheaper than clearing all buckets on a large map
+        }
+        filledTileCount = 0;
+        for (int id = 0; id < actorCount; id++) {
+            int tile = tileOf(id, width, height);
+            if (active[id] && tile >= 0) {
+                if (tileHead[tile] < 0) {
+                    filledTiles[filledTileCount++] = tile;
+                }
+                nextInTile[id] = tileHead[tile];
+                tileHead[tile] = id;
+            }
+        }
+
+        int previous = 0;
+        nextPairCount = 0;
+        for (int id = 0; id < actorCount; id++) {
+            // The pairs of the last step in which this object had the lower id
+            int previousStart = previous;
+            while (previous < pairCount && pairLow[previous] == id) {
+                previous++;
+            }
+            int start = nextPairCount;
+            int tile = tileOf(id, width, height);
+            if (active[id] && tile >= 0) {
+                addOverlaps(id, tile, width, height, previousStart, previous);
+            }
+            reportEnded(previousStart, previous, start);
+        }
+        reportEnded(previous, pairCount, nextPairCount); // Objects removed by a restored state
+
+        for (int sensor = 0; sensor < sensorCount; sensor++) {
+            if (sensorOwners[sensor] == null) {
+                continue;
+            }
+            int toucher = sensorActive[sensor] ? touchingPlayer(sensor, width, height) : -1;
+            int previousToucher = sensorToucher[sensor];
+            if (toucher != previousToucher) {
+                sensorToucher[sensor] = toucher;
+                if (previousToucher >= 0 && owners[previousToucher] != null) {
+                    contacts.add(owners[previousToucher], sensorOwners[sensor], false);
+                }
+                if (toucher >= 0) {
+                    contacts.add(owners[toucher], sensorOwners[sensor], true);
+                }
+            }
+        }
+        swapPairs();
+    }
+
+    /**
+     * Adds the objects with a higher id that overlap an object to the pairs of this step, and reports the ones
+     * that did not overlap it in the last step, given by a range of the last step's pairs.
+     */
+    private void addOverlaps(int id, int tile, int width, int height, int previousStart, int previousEnd) {
+        int tileX = tile % width;
+        int tileY = tile / width;
+        for (int ny = Math.max(0, tileY - 1); ny <= Math.min(height - 1, tileY + 1); ny++) {
+            for (int nx = Math.max(0, tileX - 1); nx <= Math.min(width - 1, tileX + 1); nx++) {
+                for (int other = tileHead[ny * width + nx]; other >= 0; other = nextInTile[other]) {
+                    // Each pair is reported once, by the object with the lower id
+                    if (other > id && overlaps(id, other)) {
+                        addPair(id, other);
+                        if (!containsPair(pairHigh, pairLowOwners, pairHighOwners, previousStart, previousEnd,
+                                other, owners[id], owners[other])) {
+                            contacts.add(owners[id], owners[other], true);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reports the end of the given pairs of the last step that are not among the pairs of this step from the given
+     * index on. Pairs with an object that was removed in between are dropped silently, like Box2D does.
+     */
+    private void reportEnded(int previousStart, int previousEnd, int start) {
+        for (int i = previousStart; i < previousEnd; i++) {
+            Object low = pairLowOwners[i];
+            Object high = pairHighOwners[i];
+            if (owners[pairLow[i]] == low && owners[pairHigh[i]] == high
+                    && !containsPair(nextPairHigh, nextPairLowOwners, nextPairHighOwners, start, nextPairCount,
+                    pairHigh[i], low, high)) {
+                contacts.add(low, high, false);
+            }
+        }
+    }
+
+    private static boolean containsPair(int[] highs, Object[] lowOwners, Object[] highOwners, int start, int end,
+                                        int high, Object lowOwner, Object highOwner) {
+        for (int i = start; i < end; i++) {
+            if (highs[i] == high && lowOwners[i] == lowOwner && highOwners[i] == highOwner) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addPair(int low, int high) {
+        if (nextPairCount == nextPairLow.length) {
+            int capacity = nextPairCount * 2;
+            nextPairLow = Arrays.copyOf(nextPairLow, capacity);
+            nextPairHigh = Arrays.copyOf(nextPairHigh, capacity);
+            nextPairLowOwners = Arrays.copyOf(nextPairLowOwners, capacity);
+            nextPairHighOwners = Arrays.copyOf(nextPairHighOwners, capacity);
+        }
+        nextPairLow[nextPairCount] = low;
+        nextPairHigh[nextPairCount] = high;
+        nextPairLowOwners[nextPairCount] = owners[low];
+        nextPairHighOwners[nextPairCount] = owners[high];
+        nextPairCount++;
+    }
+
+    /** Makes the pairs of this step the last step's pairs, and drops the references to the older owners. */
+    private void swapPairs() {
+        Arrays.fill(pairLowOwners, 0, pairCount, null);
+        Arrays.fill(pairHighOwners, 0, pairCount, null);
+        int[] low = pairLow;
+        int[] high = pairHigh;
+        Object[] lowOwners = pairLowOwners;
+        Object[] highOwners = pairHighOwners;
+        pairLow = nextPairLow;
+        pairHigh = nextPairHigh;
+        pairLowOwners = nextPairLowOwners;
+        pairHighOwners = nextPairHighOwners;
+        pairCount = nextPairCount;
+        nextPairLow = low;
+        nextPairHigh = high;
+        nextPairLowOwners = lowOwners;
+        nextPairHighOwners = highOwners;
+        nextPairCount = 0;
+    }
+
+    private int tileOf(int id, int width, int height) {
+        int tileX = (int) Math.floor(x[id] + offset(kinds[id]));
+        int tileY = (int) Math.floor(y[id] + offset(kinds[id]));
+        if (tileX < 0 || tileY < 0 || tileX >= width || tileY >= height) {
+            return -1;
+        }
+        return tileY * width + tileX;
+    }
+
+    private boolean overlaps(int a, int b) {
+        float ax = x[a] + offset(kinds[a]);
+        float ay = y[a] + offset(kinds[a]);
+        float bx = x[b] + offset(kinds[b]);
+        float by = y[b] + offset(kinds[b]);
+        return ax < bx + size(kinds[b]) && bx < ax + size(kinds[a])
+                && ay < by + size(kinds[b]) && by < ay + size(kinds[a]);
+    }
+
+    /**
+     * Finds a player whose box overlaps the sensor, which covers the middle of its tile like the Box2D sensor.
+     * Only the buckets around the sensor's tile are searched; they must be filled, see {@link #reportContacts()}.
+     * @return The lowest actor id of a player touching the sensor, or -1 if no player touches it.
+     */
+    private int touchingPlayer(int sensor, int width, int height) {
+        int tileX = sensorTiles[sensor] % width;
+        int tileY = sensorTiles[sensor] / width;
+        float left = tileX + 0.2f;
+        float bottom = tileY + 0.2f;
+        int found = -1;
+        // A box of at most one tile that overlaps the sensor has its lower left corner in this tile or a neighbour
+        for (int ny = Math.max(0, tileY - 1); ny <= Math.min(height - 1, tileY + 1); ny++) {
+            for (int nx = Math.max(0, tileX - 1); nx <= Math.min(width - 1, tileX + 1); nx++) {
+                for (int id = tileHead[ny * width + nx]; id >= 0; id = nextInTile[id]) {
+                    if (kinds[id] == KIND_PLAYER && (found < 0 || id < found)
+                            && x[id] < left + 0.6f && left < x[id] + size(KIND_PLAYER)
+                            && y[id] < bottom + 0.6f && bottom < y[id] + size(KIND_PLAYER)) {
+                        found = id;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /** A copy of all arrays, see {@link #saveState(Object)}. */
+    private static final class State {
+        float physicsTime;
+        Object[] owners;
+        int[] kinds;
+        float[] x;
+        float[] y;
+        float[] vx;
+        float[] vy;
+        boolean[] active;
+        int actorCount;
+        int[] freeIds;
+        int freeIdCount;
+        Object[] sensorOwners;
+        int[] sensorTiles;
+        boolean[] sensorActive;
+        int[] sensorToucher;
+        int sensorCount;
+        int[] pairLow;
+        int[] pairHigh;
+        Object[] pairLowOwners;
+        Object[] pairHighOwners;
+        int pairCount;
+    }
+
+    @Override
+    public Object saveState(Object reuse) {
+        State state = reuse instanceof State ? (State) reuse : new State();
+        state.physicsTime = physicsTime;
+        state.owners = copy(owners, state.owners);
+        state.kinds = copy(kinds, state.kinds);
+        state.x = copy(x, state.x);
+        state.y = copy(y, state.y);
+        state.vx = copy(vx, state.vx);
+        state.vy = copy(vy, state.vy);
+        state.active = copy(active, state.active);
+        state.actorCount = actorCount;
+        state.freeIds = copy(freeIds, state.freeIds);
+        state.freeIdCount = freeIdCount;
+        state.sensorOwners = copy(sensorOwners, state.sensorOwners);
+        state.sensorTiles = copy(sensorTiles, state.sensorTiles);
+        state.sensorActive = copy(sensorActive, state.sensorActive);
+        state.sensorToucher = copy(sensorToucher, state.sensorToucher);
+        state.sensorCount = sensorCount;
+        state.pairLow = copy(pairLow, state.pairLow);
+        state.pairHigh = copy(pairHigh, state.pairHigh);
+        state.pairLowOwners = copy(pairLowOwners, state.pairLowOwners);
+        state.pairHighOwners = copy(pairHighOwners, state.pairHighOwners);
+        state.pairCount = pairCount;
+        return state;
+    }
+
+    @Override
+    public void restoreState(Object saved) {
+        State state = (State) saved;
+        physicsTime = state.physicsTime;
+        owners = copy(state.owners, owners);
+        kinds = copy(state.kinds, kinds);
+        x = copy(state.x, x);
+        y = copy(state.y, y);
+        vx = copy(state.vx, vx);
+        vy = copy(state.vy, vy);
+        active = copy(state.active, active);
+        actorCount = state.actorCount;
+        freeIds = copy(state.freeIds, freeIds);
+        freeIdCount = state.freeIdCount;
+        sensorOwners = copy(state.sensorOwners, sensorOwners);
+        sensorTiles = copy(state.sensorTiles, sensorTiles);
+        sensorActive = copy(state.sensorActive, sensorActive);
+        sensorToucher = copy(state.sensorToucher, sensorToucher);
+        sensorCount = state.sensorCount;
+        pairLow = copy(state.pairLow, pairLow);
+        pairHigh = copy(state.pairHigh, pairHigh);
+        pairLowOwners = copy(state.pairLowOwners, pairLowOwners);
+        pairHighOwners = copy(state.pairHighOwners, pairHighOwners);
+        pairCount = state.pairCount;
+        if (nextInTile.length < owners.length) {
+            nextInTile = new int[owners.length];
+            filledTiles = Arrays.copyOf(filledTiles, owners.length); // Still lists the buckets to empty
+        }
+    }
+
+    // Copies into the destination if it has the same length, so saving every tick does not allocate
+    private static Object[] copy(Object[] source, Object[] destination) {
+        if (destination == null || destination.length != source.length) {
+            return source.clone();
+        }
+        System.arraycopy(source, 0, destination, 0, source.length);
+        return destination;
+    }
+
+    private static int[] copy(int[] source, int[] destination) {
+        if (destination == null || destination.length != source.length) {
+            return source.clone();
+        }
+        System.arraycopy(source, 0, destination, 0, source.length);
+        return destination;
+    }
+
+    private static float[] copy(float[] source, float[] destination) {
+        if (destination == null || destination.length != source.length) {
+            return source.clone();
+        }
+        System.arraycopy(source, 0, destination, 0, source.length);
+        return destination;
+    }
+
+    private static boolean[] copy(boolean[] source, boolean[] destination) {
+        if (destination == null || destination.length != source.length) {
+            return source.clone();
+        }
+        System.arraycopy(source, 0, destination, 0, source.length);
+        return destination;
+    }
+
+    @Override
+    public World getWorld() {
+        return null;
+    }
+
+    @Override
+    public void dispose() {
+        Arrays.fill(owners, null);
+        Arrays.fill(sensorOwners, null);
+    }
+}
@@ -5,7 +5,13 @@ import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import de.tum.cit.ase.bomberquest.debug.ResourceTracker;
+import de.tum.cit.ase.bomberquest.map.Enemy;
+import de.tum.cit.ase.bomberquest.map.Exit;
 import de.tum.cit.ase.bomberquest.map.GameMap;
+import de.tum.cit.ase.bomberquest.map.MatchListener;
+import de.tum.cit.ase.bomberquest.map.Player;
+import de.tum.cit.ase.bomberquest.map.PowerUp;
 
 import static com.badlogic.gdx.scenes.scene2d.utils.TiledDrawable.draw;
 
@@ -13,6 +19,7 @@ import static com.badlogic.gdx.scenes.scene2d.utils.TiledDrawable.draw;
  * A Heads-Up Display (HUD) that displays game-related information on the screen.
  * This includes the countdown timer, player stats, and enemy status.
  * It uses a separate OrthographicCamera so that it remains fixed in position.
+ * The texts are only rebuilt when the map reports a change on its event bus, not every frame.
  */
 public class Hud {
 
@@ -27,6 +34,36 @@ public class Hud {
     /** The game map, used to retrieve player and enemy information. */
     private GameMap map;
 
+    /**
+     * The texts that are drawn every frame; each is rebuilt only when its value changes.
+     * The map's texts are rebuilt on the thread that ticks the map, hence volatile.
+     */
+    private String timeText;
+    private int shownSeconds = -1;
+    private volatile String blastRadiusText;
+    private volatile String bombLimitText;
+    private volatile String defeatedText;
+    private volatile String remainingText;
+    private volatile String exitText;
+
+    /** Updates the texts when the map reports a change. */
+    private final MatchListener mapListener = new MatchListener() {
+        @Override
+        public void enemyKilled(Enemy enemy) {
+            updateEnemyTexts();
+        }
+
+        @Override
+        public void exitUnlocked(Exit exit) {
+            updateEnemyTexts();
+        }
+
+        @Override
+        public void powerUpCollected(Player player, PowerUp powerUp) {
+            updatePlayerTexts();
+        }
+    };
+
     public Hud(SpriteBatch spriteBatch, BitmapFont font, CountdownTimer timer, GameMap map) {
         this.map = map;
         this.spriteBatch = spriteBatch;
@@ -35,6 +72,9 @@ public class Hud {
         // Set the camera to match the screen size
         camera.setToOrtho(false, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
         this.timer = timer;
+        updatePlayerTexts();
+        updateEnemyTexts();
+        map.getEventBus().subscribe(mapListener);
     }
 
 
@@ -64,30 +104,55 @@ public class Hud {
         // Draw the HUD elements
         font.draw(spriteBatch, "Press Esc to Pause!", 10, Gdx.graphics.getHeight() - 10);
         // Display the countdown timer
-        font.draw(spriteBatch, "Time left: " + (int)timer.getTimeLeft() + " second(s)", 10, Gdx.graphics.getHeight() - 30);
+        int seconds = (int) timer.getTimeLeft();
+        if (seconds != shownSeconds) {
+            shownSeconds = seconds;
+            timeText = "Time left: " + seconds + " second(s)";
+        }
+        font.draw(spriteBatch, timeText, 10, Gdx.graphics.getHeight() - 30);
         // Display player stats and game status
         int x = 10;
         int y = Gdx.graphics.getHeight() - 50;
         // Bomb blast radius
-        font.draw(spriteBatch, "Bomb blast radius: " + map.getPlayer().getBlastRadius(), x, y);
+        font.draw(spriteBatch, blastRadiusText, x, y);
         y -= 20;
         // Maximum bombs that can be placed at once
-        font.draw(spriteBatch, "Concurrent bomb limit: " + map.getPlayer().getBombLimit(), x, y);
+        font.draw(spriteBatch, bombLimitText, x, y);
         y -= 20;
         // Number of defeated enemies
-        font.draw(spriteBatch, "Defeated enemies: " + (map.getTotalEnemies() - map.getEnemies().size()), x, y);
+        font.draw(spriteBatch, defeatedText, x, y);
         y -= 20;
         // Number of remaining enemies
-        font.draw(spriteBatch, "Remaining enemies: " + map.getEnemies().size(), x, y);
+        font.draw(spriteBatch, remainingText, x, y);
         y -= 20;
         // Whether the exit is unlocked
-        font.draw(spriteBatch, "Exit unlocked: " + (map.getEnemies().size() == 0?"Yes":"No"), x, y);
+        font.draw(spriteBatch, exitText, x, y);
         // Finish drawing
         spriteBatch.end();
     }
 
+    private void updatePlayerTexts() {
+        blastRadiusText = "Bomb blast radius: " + map.getPlayer().getBlastRadius();
+        bombLimitText = "Concurrent bomb limit: " + map.getPlayer().getBombLimit();
+    }
+
+    private void updateEnemyTexts() {
+        int remaining = map.getEnemies().size();
+        defeatedText = "Defeated enemies: " + (map.getTotalEnemies() - remaining);
+        remainingText = "Remaining enemies: " + remaining;
+        exitText = "Exit unlocked: " + (map.getExit().isUnlocked() ? "Yes" : "No");
+    }
+
+    /** Stops listening to the map; the HUD does not update any more. */
+    public void detach() {
+        if (map != null) {
+            map.getEventBus().unsubscribe(mapListener);
+        }
+    }
+
     public void dispose(){
-        font.dispose();
+        detach();
+        ResourceTracker.dispose(font);
     }
     /**
      * Resizes the HUD when the screen size changes.
@@ -0,0 +1,149 @@
+package de.tum.cit.ase.bomberquest.screen;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.InputAdapter;
+import de.tum.cit.ase.bomberquest.map.Player;
+
+import java.util.Arrays;
+
+/**
+ * Collects the key presses of the game screen as they arrive and turns them into the input mask of the next tick,
+ * instead of polling the keyboard in the middle of a frame.
+ *
+ * Every key event is stored with the time it was received in a preallocated ring. {@link #drain(long)} applies
+ * all events at the start of a tick: a key that was pressed and released again in between still counts for that
+ * tick, so a short press of space still places a bomb. Several presses of space before one tick place only one
+ * bomb, since a tile holds only one. The time from an event to the tick that applied it is
+ * recorded, so the input latency can be checked; it should stay below one frame.
+ *
+ * Events are added on the thread that polls the input and drained on the thread that ticks the map, which may be
+ * a different one.
+ */
+public class InputQueue extends InputAdapter {
+
+    /** The number of events that fit between two ticks; more are dropped, which no human can type. */
+    private static final int CAPACITY = 256;
+    /** The number of recent latencies the percentiles are computed from. */
+    private static final int LATENCY_SAMPLES = 512;
+
+    private final int[] masks = new int[CAPACITY];
+    private final boolean[] pressed = new boolean[CAPACITY];
+    private final long[] timestamps = new long[CAPACITY];
+    /** The next event to write, only changed by the input thread. */
+    private volatile long tail;
+    /** The next event to apply, only changed by the ticking thread. */
+    private volatile long head;
+
+    /** The direction keys that are held down after the events applied so far. */
+    private int heldMask;
+
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private final long[] sortedLatencies = new long[LATENCY_SAMPLES];
+    private long latencyCount;
+    private long maxLatency;
+
+    @Override
+    public boolean keyDown(int keycode) {
+        return add(keycode, true);
+    }
+
+    @Override
+    public boolean keyUp(int keycode) {
+        return add(keycode, false);
+    }
+
+    private boolean add(int keycode, boolean down) {
+        int mask = toMask(keycode);
+        if (mask == 0) {
+            return false; // Escape and the like are left to the screen
+        }
+        long event = tail;
+        if (event - head == CAPACITY) {
+            return true; // Full until the next tick
+        }
+        int slot = (int) (event % CAPACITY);
+        masks[slot] = mask;
+        pressed[slot] = down;
+        long time = Gdx.input.getCurrentEventTime();
+        timestamps[slot] = time != 0 ? time : System.nanoTime(); // When the backend received the event, if it knows
+        tail = event + 1; // Publishes the slot
+        return true;
+    }
+
+    /**
+     * Applies the events that arrived since the last call, at the start of a tick.
+     * @param now The time of this call from {@link System#nanoTime()}, which may be later than the tick was due.
+     * @return The input mask for the tick, a combination of the {@code INPUT_} bits of {@link Player}.
+     */
+    public int drain(long now) {
+        int mask = heldMask;
+        long end = tail;
+        for (long event = head; event < end; event++) {
+            int slot = (int) (event % CAPACITY);
+            if (pressed[slot]) {
+                mask |= masks[slot]; // Counts even if released again before this tick
+                heldMask |= masks[slot] & ~Player.INPUT_BOMB;
+            } else {
+                heldMask &= ~masks[slot];
+            }
+            recordLatency(now - timestamps[slot]);
+        }
+        head = end;
+        return mask;
+    }
+
+    /** Forgets the held keys, e.g. when the screen is hidden and the key releases go elsewhere. */
+    public void reset() {
+        head = tail;
+        heldMask = 0;
+    }
+
+    private void recordLatency(long nanos) {
+        latencies[(int) (latencyCount++ % LATENCY_SAMPLES)] = nanos;
+        maxLatency = Math.max(maxLatency, nanos);
+    }
+
+    /**
+     * Returns a percentile of the recent latencies from a key event to the tick that applied it.
+     * @param percentile The percentile, between 0 and 100.
+     * @return The latency in microseconds, or 0 if no key was pressed yet.
+     */
+    public long getLatencyMicros(double percentile) {
+        int count = (int) Math.min(latencyCount, LATENCY_SAMPLES);
+        if (count == 0) {
+            return 0;
+        }
+        System.arraycopy(latencies, 0, sortedLatencies, 0, count);
+        Arrays.sort(sortedLatencies, 0, count);
+        int index = (int) Math.ceil(percentile / 100 * count) - 1;
+        return sortedLatencies[Math.max(0, Math.min(count - 1, index))] / 1000;
+    }
+
+    /** Returns the highest latency so far in microseconds. */
+    public long getMaxLatencyMicros() {
+        return maxLatency / 1000;
+    }
+
+    /** Returns the number of key events applied so far. */
+    public long getEventCount() {
+        return latencyCount;
+    }
+
+    private static int toMask(int keycode) {
+        switch (keycode) {
+            case Input.Keys.LEFT:
+                return Player.INPUT_LEFT;
+            case Input.Keys.RIGHT:
+                return Player.INPUT_RIGHT;
+            case Input.Keys.UP:
+                return Player.INPUT_UP;
+            case Input.Keys.DOWN:
+                return Player.INPUT_DOWN;
+            case Input.Keys.SPACE:
+                return Player.INPUT_BOMB;
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package de.tum.cit.ase.bomberquest.screen;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.scenes.scene2d.Actor;
+import com.badlogic.gdx.scenes.scene2d.Stage;
+import com.badlogic.gdx.scenes.scene2d.ui.Label;
+import com.badlogic.gdx.scenes.scene2d.ui.Table;
+import com.badlogic.gdx.scenes.scene2d.ui.TextButton;
+import com.badlogic.gdx.scenes.scene2d.utils.ChangeListener;
+import com.badlogic.gdx.utils.ScreenUtils;
+import com.badlogic.gdx.utils.viewport.ScreenViewport;
+import com.badlogic.gdx.utils.viewport.Viewport;
+import de.tum.cit.ase.bomberquest.BomberQuestGame;
+import de.tum.cit.ase.bomberquest.debug.ResourceTracker;
+import de.tum.cit.ase.bomberquest.map.GameMap;
+import de.tum.cit.ase.bomberquest.map.MapLoader;
+
+/**
+ * The LoadingScreen is shown while a map file is loaded in the background by a {@link MapLoader}.
+ * It shows the progress of the loader and starts the game with the map as soon as it is loaded.
+ * If loading fails, it shows the error and lets the player go back to the menu.
+ */
+public class LoadingScreen implements Screen {
+
+    /** The number of segments of the progress bar. */
+    private static final int BAR_LENGTH = 20;
+
+    /** The stage that holds UI elements for the loading screen. */
+    private final Stage stage;
+    /** The main game instance, used to start the game when the map is loaded. */
+    private final BomberQuestGame game;
+    /** Loads the map in the background. */
+    private final MapLoader loader;
+    /** Shows the stage and progress of the loader, or the error. */
+    private final Label statusLabel;
+    /** Cancels loading, or goes back to the menu after an error. */
+    private final TextButton backButton;
+    private final StringBuilder statusText = new StringBuilder();
+    /** Whether the result of the loader has been handled. */
+    private boolean finished;
+    /** Whether the stage has already been disposed. */
+    private boolean disposed;
+
+    /**
+     * Constructor for LoadingScreen. Sets up the camera, viewport, stage, and UI elements.
+     *
+     * @param game The main game class, used to access global resources and methods.
+     * @param loader The loader of the map to start the game with.
+     */
+    public LoadingScreen(BomberQuestGame game, MapLoader loader) {
+        this.game = game;
+        this.loader = loader;
+        var camera = new OrthographicCamera();
+        camera.zoom = 1.5f; // Same zoom as the menu
+
+        Viewport viewport = new ScreenViewport(camera); // Create a viewport with the camera
+        stage = ResourceTracker.track(new Stage(viewport, game.getSpriteBatch())); // Create a stage for UI elements
+
+        Table table = new Table(); // Table layout for arranging UI components
+        table.setFillParent(true); // The table fills the entire screen
+        stage.addActor(table); // Add the table to the stage
+
+        table.add(new Label("Loading map", game.getSkin(), "title")).padBottom(40).row();
+        table.add(new Label(loader.getMapFilePath(), game.getSkin())).padBottom(20).row();
+        statusLabel = new Label("", game.getSkin());
+        table.add(statusLabel).padBottom(40).row();
+
+        backButton = new TextButton("Cancel", game.getSkin());
+        table.add(backButton).fillX().uniformX();
+        backButton.addListener(new ChangeListener() {
+            @Override
+            public void changed(ChangeEvent event, Actor actor) {
+                goBack();
+            }
+        });
+    }
+
+    /**
+     * The render method is called every frame to render the loading screen.
+     * It starts the game once the map is loaded, and otherwise updates and draws the progress.
+     * @param deltaTime The time in seconds since the last render.
+     */
+    @Override
+    public void render(float deltaTime) {
+        if (!finished && loader.isDone()) {
+            finished = true;
+            GameMap map = loader.takeMap();
+            if (map != null) {
+                game.startLoadedMap(map); // Hides this screen
+                return;
+            }
+            showError(loader.getError());
+        }
+        if (Gdx.input.isKeyJustPressed(Input.Keys.ESCAPE)) {
+            goBack();
+            return;
+        }
+        if (!finished) {
+            updateProgress();
+            FramePacer.requestFrameAfter(0.1f); // Menus render on demand; check the loader again soon
+        }
+
+        float frameTime = Math.min(deltaTime, 0.250f); // Cap frame time to 250ms to prevent spiral of death
+        ScreenUtils.clear(Color.BLACK);
+        stage.act(frameTime); // Update the stage
+        stage.draw(); // Draw the stage
+    }
+
+    /** Shows the stage of the loader with a progress bar made of text, which the skin can always draw. */
+    private void updateProgress() {
+        int filled = Math.round(loader.getProgress() * BAR_LENGTH);
+        statusText.setLength(0);
+        statusText.append(loader.getStageName()).append("  [");
+        for (int i = 0; i < BAR_LENGTH; i++) {
+            statusText.append(i < filled ? '#' : '.');
+        }
+        statusText.append("]  ").append((int) loader.getElapsedSeconds()).append(" s");
+        statusLabel.setText(statusText);
+    }
+
+    private void showError(Exception error) {
+        String message = error == null ? "unknown error" : error.getMessage();
+        System.out.println("Could not load " + loader.getMapFilePath() + ": " + message);
+        statusLabel.setText("Could not load the map:\n" + message);
+        statusLabel.setColor(Color.RED);
+        backButton.setText("Back to menu");
+    }
+
+    /** Cancels loading, if it is still running, and returns to the menu. */
+    private void goBack() {
+        if (!finished) {
+            finished = true;
+            loader.cancel();
+        }
+        game.goToMenu();
+    }
+
+    /**
+     * Resize the stage when the screen is resized.
+     * @param width The new width of the screen.
+     * @param height The new height of the screen.
+     */
+    @Override
+    public void resize(int width, int height) {
+        stage.getViewport().update(width, height, true); // Update the stage viewport on resize
+    }
+
+    @Override
+    public void dispose() {
+        // Dispose of the stage when screen is disposed
+        if (!disposed) {
+            disposed = true;
+            ResourceTracker.dispose(stage);
+        }
+    }
+
+    @Override
+    public void show() {
+        // Set the input processor so the stage can receive input events
+        Gdx.input.setInputProcessor(stage);
+    }
+
+    // The following methods are part of the Screen interface but are not used in this screen.
+    @Override
+    public void pause() {
+    }
+
+    @Override
+    public void resume() {
+    }
+
+    @Override
+    public void hide() {
+        // A new LoadingScreen is created for every map that is loaded, so this one is never shown again
+        dispose();
+    }
+}
@@ -0,0 +1,293 @@
+package de.tum.cit.ase.bomberquest.debug;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logging for the game thread and the simulation, which must not wait for the console.
+ *
+ * A log call below the level set with {@code -Dbomberquest.logLevel=debug|info|warn|off} (default info) returns
+ * right away; the level is a static final field, so the JIT removes disabled calls from the tick. Enabled calls
+ * copy the message template and up to three numbers into a preallocated slot of a ring buffer that any number of
+ * threads can write to without locking. A background thread formats the records, replacing each {@code {}} in the
+ * template with the next argument, and prints them to {@link System#out}. If the ring is full the record is
+ * dropped and counted instead of blocking the caller.
+ *
+ * Templates should be string constants; concatenating the message in the call would allocate even when the
+ * record is dropped.
+ */
+public final class Log {
+
+    public static final int DEBUG = 0;
+    public static final int INFO = 1;
+    public static final int WARN = 2;
+    public static final int OFF = 3;
+    private static final String[] LEVEL_NAMES = {"DEBUG", "INFO", "WARN"};
+
+    /** The lowest level that is logged. */
+    public static final int LEVEL = parseLevel(System.getProperty("bomberquest.logLevel", "info"));
+
+    /** The number of records the ring holds, a power of two. */
+    private static final int CAPACITY = 1 << 14;
+    private static final int MASK = CAPACITY - 1;
+    /** How long the writer sleeps when the ring is empty. */
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+    private static final int OBJECT_ARGUMENT = -1;
+
+    // The ring: slot i is free for the writer of record n if sequences[i] == n, and readable once it is n + 1
+    private static final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private static final int[] levels = new int[CAPACITY];
+    private static final String[] templates = new String[CAPACITY];
+    /**
+     * The number of numeric arguments, or {@link #OBJECT_ARGUMENT} minus their number if an object comes first,
+     * e.g. {@link #OBJECT_ARGUMENT} for a single object argument.
+     */
+    private static final int[] argumentCounts = new int[CAPACITY];
+    private static final double[] arguments = new double[CAPACITY * 3];
+    private static final Object[] objectArguments = new Object[CAPACITY];
+    private static final long[] timestamps = new long[CAPACITY];
+    private static final String[] threadNames = new String[CAPACITY];
+
+    /** The next record to be written by a producer. */
+    private static final AtomicLong tail = new AtomicLong();
+    /** The next record to be printed, only touched by the writer thread. */
+    private static long head;
+    /** The value of head for other threads, see {@link #flush()}. */
+    private static volatile long printed;
+    private static final AtomicLong dropped = new AtomicLong();
+    /** The number of dropped records the writer has mentioned in the log so far. */
+    private static long reportedDrops;
+    private static final long startNanos = System.nanoTime();
+    private static final Thread writer;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences.set(i, i);
+        }
+        writer = new Thread(Log::runWriter, "log-writer");
+        writer.setDaemon(true);
+        if (LEVEL < OFF) {
+            writer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-flush"));
+        }
+    }
+
+    private Log() {
+    }
+
+    /** Returns whether records of the given level are logged, to skip expensive preparation of arguments. */
+    public static boolean isEnabled(int level) {
+        return level >= LEVEL;
+    }
+
+    public static void debug(String template) {
+        if (DEBUG >= LEVEL) {
+            append(DEBUG, template, 0, 0, 0, 0, null);
+        }
+    }
+
+    public static void debug(String template, double a) {
+        if (DEBUG >= LEVEL) {
+            append(DEBUG, template, 1, a, 0, 0, null);
+        }
+    }
+
+    public static void debug(String template, double a, double b) {
+        if (DEBUG >= LEVEL) {
+            append(DEBUG, template, 2, a, b, 0, null);
+        }
+    }
+
+    public static void debug(String template, double a, double b, double c) {
+        if (DEBUG >= LEVEL) {
+            append(DEBUG, template, 3, a, b, c, null);
+        }
+    }
+
+    /** Logs a record whose only argument is an object, formatted with toString() on the writer thread. */
+    public static void debug(String template, Object a) {
+        if (DEBUG >= LEVEL) {
+            append(DEBUG, template, OBJECT_ARGUMENT, 0, 0, 0, a);
+        }
+    }
+
+    public static void info(String template) {
+        if (INFO >= LEVEL) {
+            append(INFO, template, 0, 0, 0, 0, null);
+        }
+    }
+
+    public static void info(String template, double a) {
+        if (INFO >= LEVEL) {
+            append(INFO, template, 1, a, 0, 0, null);
+        }
+    }
+
+    public static void info(String template, double a, double b) {
+        if (INFO >= LEVEL) {
+            append(INFO, template, 2, a, b, 0, null);
+        }
+    }
+
+    public static void info(String template, Object a) {
+        if (INFO >= LEVEL) {
+            append(INFO, template, OBJECT_ARGUMENT, 0, 0, 0, a);
+        }
+    }
+
+    public static void warn(String template) {
+        if (WARN >= LEVEL) {
+            append(WARN, template, 0, 0, 0, 0, null);
+        }
+    }
+
+    public static void warn(String template, Object a) {
+        if (WARN >= LEVEL) {
+            append(WARN, template, OBJECT_ARGUMENT, 0, 0, 0, a);
+        }
+    }
+
+    /** Logs a record with an object, e.g. the file it is about, followed by two numbers. */
+    public static void warn(String template, Object a, double b, double c) {
+        if (WARN >= LEVEL) {
+            append(WARN, template, OBJECT_ARGUMENT - 2, b, c, 0, a);
+        }
+    }
+
+    /** Returns the number of records dropped because the ring was full. */
+    public static long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Waits until the writer has printed every record logged so far, e.g. before the application exits.
+     * Gives up after a second if the writer is stuck.
+     */
+    public static void flush() {
+        if (LEVEL >= OFF || Thread.currentThread() == writer) {
+            return;
+        }
+        long target = tail.get();
+        long deadline = System.nanoTime() + 1_000_000_000L;
+        while (printed < target && System.nanoTime() < deadline) {
+            LockSupport.unpark(writer);
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void append(int level, String template, int argumentCount, double a, double b, double c, Object object) {
+        long record = tail.get();
+        int slot;
+        while (true) {
+            slot = (int) record & MASK;
+            long difference = sequences.get(slot) - record;
+            if (difference == 0) {
+                if (tail.compareAndSet(record, record + 1)) {
+                    break; // The slot is ours
+                }
+                record = tail.get();
+            } else if (difference < 0) {
+                dropped.incrementAndGet(); // The writer has not printed this slot's previous record yet
+                return;
+            } else {
+                record = tail.get(); // Another producer took the slot first
+            }
+        }
+        levels[slot] = level;
+        templates[slot] = template;
+        argumentCounts[slot] = argumentCount;
+        arguments[slot * 3] = a;
+        arguments[slot * 3 + 1] = b;
+        arguments[slot * 3 + 2] = c;
+        objectArguments[slot] = object;
+        timestamps[slot] = System.nanoTime();
+        threadNames[slot] = Thread.currentThread().getName();
+        sequences.set(slot, record + 1); // Publishes the fields above to the writer
+    }
+
+    private static void runWriter() {
+        StringBuilder line = new StringBuilder(256);
+        PrintStream out = System.out;
+        while (true) {
+            int slot = (int) head & MASK;
+            if (sequences.get(slot) != head + 1) {
+                out.flush();
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            line.setLength(0);
+            format(line, slot);
+            templates[slot] = null;
+            objectArguments[slot] = null;
+            sequences.set(slot, head + CAPACITY); // Hands the slot back to the producers
+            head++;
+            printed = head;
+            out.append(line).append('\n');
+        }
+    }
+
+    private static void format(StringBuilder line, int slot) {
+        long millis = (timestamps[slot] - startNanos) / 1_000_000L;
+        line.append(millis / 1000).append('.');
+        appendPadded(line, millis % 1000);
+        line.append(' ').append(LEVEL_NAMES[levels[slot]]).append(" [").append(threadNames[slot]).append("] ");
+        String template = templates[slot];
+        boolean hasObject = argumentCounts[slot] < 0;
+        int numbers = hasObject ? OBJECT_ARGUMENT - argumentCounts[slot] : argumentCounts[slot];
+        int argument = 0;
+        int from = 0;
+        for (int at = template.indexOf("{}"); at >= 0; at = template.indexOf("{}", from)) {
+            line.append(template, from, at);
+            from = at + 2;
+            int number = hasObject ? argument - 1 : argument;
+            if (hasObject && argument == 0) {
+                line.append(objectArguments[slot]);
+            } else if (number >= numbers) {
+                line.append("{}");
+            } else {
+                appendNumber(line, arguments[slot * 3 + number]);
+            }
+            argument++;
+        }
+        line.append(template, from, template.length());
+        long lost = dropped.get() - reportedDrops;
+        if (lost > 0) {
+            reportedDrops += lost;
+            line.append(" (").append(lost).append(" records dropped)");
+        }
+    }
+
+    /** Appends integral values without a fraction, so counters and tiles read naturally. */
+    private static void appendNumber(StringBuilder line, double value) {
+        if (value == (long) value) {
+            line.append((long) value);
+        } else {
+            line.append((float) value);
+        }
+    }
+
+    private static void appendPadded(StringBuilder line, long millis) {
+        if (millis < 100) {
+            line.append('0');
+        }
+        if (millis < 10) {
+            line.append('0');
+        }
+        line.append(millis);
+    }
+
+    private static int parseLevel(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "debug":
+                return DEBUG;
+            case "warn":
+                return WARN;
+            case "off":
+                return OFF;
+            default:
+                return INFO;
+        }
+    }
+}
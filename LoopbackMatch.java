@@ -0,0 +1,74 @@
+package de.tum.cit.ase.bomberquest.net;
+
+import de.tum.cit.ase.bomberquest.map.GameMap;
+import de.tum.cit.ase.bomberquest.map.MapGenerator;
+import de.tum.cit.ase.bomberquest.map.MapTemplate;
+import de.tum.cit.ase.bomberquest.map.Player;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+/**
+ * Plays a match over loopback with stand-in clients that wander around and drop bombs at random,
+ * and reports the snapshot traffic per client, which should stay below {@link #BUDGET_BYTES_PER_SECOND}.
+ * Nothing is rendered, so this runs without a display.
+ *
+ * Usage: {@code LoopbackMatch [clients] [seconds] [map size] [seed]}
+ */
+public final class LoopbackMatch {
+
+    /** The bandwidth budget of one client at the default tick rate. */
+    public static final int BUDGET_BYTES_PER_SECOND = 2048;
+
+    private LoopbackMatch() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int clientCount = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 21;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+
+        MapGenerator generator = new MapGenerator(size, size, seed);
+        generator.setMovement(GameMap.MOVEMENT_GRID); // No native Box2D needed
+        MapTemplate template = generator.generate();
+
+        try (MatchServer server = new MatchServer(template, 0, MatchServer.DEFAULT_TICK_RATE)) {
+            server.start();
+            MatchClient[] clients = new MatchClient[clientCount];
+            int[] inputs = new int[clientCount];
+            for (int i = 0; i < clientCount; i++) {
+                clients[i] = MatchClient.connect("localhost", server.getPort());
+            }
+
+            SplittableRandom random = new SplittableRandom(seed);
+            int[] directions = {Player.INPUT_LEFT, Player.INPUT_RIGHT, Player.INPUT_UP, Player.INPUT_DOWN, 0};
+            float frameTime = 1f / MatchServer.DEFAULT_TICK_RATE;
+            long start = System.nanoTime();
+            long end = start + seconds * 1_000_000_000L;
+            while (System.nanoTime() < end && !server.isOver()) {
+                for (int i = 0; i < clientCount; i++) {
+                    if (random.nextInt(15) == 0) {
+                        inputs[i] = directions[random.nextInt(directions.length)];
+                    }
+                    int bomb = random.nextInt(90) == 0 ? Player.INPUT_BOMB : 0;
+                    clients[i].update(frameTime, inputs[i] | bomb);
+                }
+                Thread.sleep((long) (frameTime * 1000));
+            }
+            Thread.sleep(100); // Let the last snapshots arrive
+            double elapsed = (System.nanoTime() - start) / 1e9;
+
+            for (int i = 0; i < clientCount; i++) {
+                clients[i].update(frameTime, 0);
+                MatchClient client = clients[i];
+                double bytesPerSecond = client.getBytesReceived() / elapsed;
+                System.out.printf("client %d: %d snapshots, %.1f bytes/snapshot, %.0f bytes/s (%s)%n",
+                        client.getPlayerIndex(), client.getSnapshotCount(),
+                        (double) client.getBytesReceived() / Math.max(1, client.getSnapshotCount()), bytesPerSecond,
+                        bytesPerSecond < BUDGET_BYTES_PER_SECOND ? "within budget" : "OVER BUDGET");
+                client.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package de.tum.cit.ase.bomberquest.map;
+
+import java.util.Arrays;
+
+/**
+ * Finds out which tiles of a map can reach each other once all destructible walls are blown up.
+ * Every tile that is not an indestructible wall gets the id of its connected component,
+ * so whether two tiles are connected is a single array lookup.
+ *
+ * Components are found with union-find in one pass over the tiles, joining every open tile with its left and lower
+ * neighbour. A root is always the lowest index of its component, so every parent link points to a lower index,
+ * which lets a second pass turn the parent links into component ids in place. Both passes are linear in the number
+ * of tiles, so the analysis stays cheap even on generated maps with millions of tiles.
+ */
+public class MapAnalysis {
+
+    /** The component id of indestructible walls and positions outside the map. */
+    public static final int NO_COMPONENT = -1;
+
+    private final int width;
+    private final int height;
+    /** The component of every tile, indexed by y * width + x. */
+    private final int[] components;
+    /** The number of tiles in every component. */
+    private final int[] componentSizes;
+
+    /**
+     * Analyses the given tiles.
+     * @param width The width of the map.
+     * @param height The height of the map.
+     * @param tiles The tiles, indexed by y * width + x, see the {@code TILE_} constants of {@link MapTemplate}.
+     */
+    public MapAnalysis(int width, int height, byte[] tiles) {
+        this.width = width;
+        this.height = height;
+        int[] parent = new int[width * height];
+
+        // Pass 1: union every open tile with its open left and lower neighbour
+        for (int i = 0; i < parent.length; i++) {
+            if (tiles[i] == MapTemplate.TILE_INDESTRUCTIBLE) {
+                parent[i] = NO_COMPONENT;
+                continue;
+            }
+            parent[i] = i;
+            if (i % width > 0 && tiles[i - 1] != MapTemplate.TILE_INDESTRUCTIBLE) {
+                union(parent, i, i - 1);
+            }
+            if (i >= width && tiles[i - width] != MapTemplate.TILE_INDESTRUCTIBLE) {
+                union(parent, i, i - width);
+            }
+        }
+
+        // Pass 2: parent links point to lower indices, which already hold their component id
+        int[] sizes = new int[16];
+        int count = 0;
+        for (int i = 0; i < parent.length; i++) {
+            int p = parent[i];
+            if (p == NO_COMPONENT) {
+                continue;
+            }
+            int id;
+            if (p == i) {
+                if (count == sizes.length) {
+                    sizes = Arrays.copyOf(sizes, count * 2);
+                }
+                id = count++;
+            } else {
+                id = parent[p];
+            }
+            parent[i] = id;
+            sizes[id]++;
+        }
+        this.components = parent;
+        this.componentSizes = Arrays.copyOf(sizes, count);
+    }
+
+    /** Finds the root of a tile, halving the path on the way. */
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /** Joins the components of two tiles, keeping the lower root so parent links always point downwards. */
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA < rootB) {
+            parent[rootB] = rootA;
+        } else if (rootB < rootA) {
+            parent[rootA] = rootB;
+        }
+    }
+
+    /**
+     * Returns the connected component of a tile.
+     * @return The component id, or {@link #NO_COMPONENT} for indestructible walls and positions outside the map.
+     */
+    public int getComponent(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return NO_COMPONENT;
+        }
+        return components[y * width + x];
+    }
+
+    /** Returns whether the second tile can be reached from the first one once all destructible walls are destroyed. */
+    public boolean isConnected(int x1, int y1, int x2, int y2) {
+        int component = getComponent(x1, y1);
+        return component != NO_COMPONENT && component == getComponent(x2, y2);
+    }
+
+    /** Returns the number of connected components. */
+    public int getComponentCount() {
+        return componentSizes.length;
+    }
+
+    /** Returns the number of tiles in a component. */
+    public int getComponentSize(int component) {
+        return componentSizes[component];
+    }
+}
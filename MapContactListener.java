@@ -0,0 +1,107 @@
+package de.tum.cit.ase.bomberquest.map;
+
+import com.badlogic.gdx.physics.box2d.Contact;
+import com.badlogic.gdx.physics.box2d.ContactImpulse;
+import com.badlogic.gdx.physics.box2d.ContactListener;
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.badlogic.gdx.physics.box2d.Manifold;
+
+import java.util.Arrays;
+
+/**
+ * Collects the contacts reported by Box2D during a physics step into a queue.
+ * The world is locked while it is stepping, so nothing may be changed from inside the callbacks;
+ * instead the {@link GameMap} works through the queued events after the step, see {@code GameMap.processContacts()}.
+ * The queue is made of plain arrays that only grow, so a normal tick does not allocate.
+ */
+public class MapContactListener implements ContactListener {
+
+    /** Collision category of the player's hitbox. */
+    public static final short CATEGORY_PLAYER = 0x0001;
+    /** Collision category of the enemies' hitboxes. */
+    public static final short CATEGORY_ENEMY = 0x0002;
+    /** Collision category of sensors that only the player can trigger, i.e. power-ups and the exit. */
+    public static final short CATEGORY_PICKUP = 0x0004;
+
+    /** The user data of the two bodies of every queued contact. */
+    private Object[] first = new Object[32];
+    private Object[] second = new Object[32];
+    /** True if the queued contact began, false if it ended. */
+    private boolean[] began = new boolean[32];
+    private int size;
+
+    @Override
+    public void beginContact(Contact contact) {
+        enqueue(contact, true);
+    }
+
+    @Override
+    public void endContact(Contact contact) {
+        enqueue(contact, false);
+    }
+
+    @Override
+    public void preSolve(Contact contact, Manifold oldManifold) {
+    }
+
+    @Override
+    public void postSolve(Contact contact, ContactImpulse impulse) {
+    }
+
+    private void enqueue(Contact contact, boolean begin) {
+        Object a = userDataOf(contact.getFixtureA());
+        Object b = userDataOf(contact.getFixtureB());
+        if (a == null || b == null) {
+            return; // One side is being destroyed, nothing to report
+        }
+        add(a, b, begin);
+    }
+
+    /**
+     * Queues a contact between two game objects.
+     * Normally called from the Box2D callbacks, but other code may report contacts the same way.
+     */
+    public void add(Object a, Object b, boolean begin) {
+        if (size == first.length) {
+            int capacity = size * 2;
+            first = Arrays.copyOf(first, capacity);
+            second = Arrays.copyOf(second, capacity);
+            began = Arrays.copyOf(began, capacity);
+        }
+        first[size] = a;
+        second[size] = b;
+        began[size] = begin;
+        size++;
+    }
+
+    private static Object userDataOf(Fixture fixture) {
+        return fixture == null ? null : fixture.getBody().getUserData();
+    }
+
+    /** Returns the number of queued contacts. */
+    public int size() {
+        return size;
+    }
+
+    /** Returns the user data of the first body of the i-th queued contact. */
+    public Object getFirst(int i) {
+        return first[i];
+    }
+
+    /** Returns the user data of the second body of the i-th queued contact. */
+    public Object getSecond(int i) {
+        return second[i];
+    }
+
+    /** Returns whether the i-th queued contact began (true) or ended (false). */
+    public boolean hasBegun(int i) {
+        return began[i];
+    }
+
+    /** Empties the queue, dropping the references to the game objects. */
+    public void clear() {
+        Arrays.fill(first, 0, size, null);
+        Arrays.fill(second, 0, size, null);
+        size = 0;
+    }
+}
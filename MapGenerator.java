@@ -0,0 +1,258 @@
+package de.tum.cit.ase.bomberquest.map;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Generates maps of arbitrary size from a seed, e.g. to benchmark the game on large worlds.
+ * The same seed and settings always produce the same map, no matter how many threads are used.
+ *
+ * A generated map has a border of indestructible walls and an indestructible pillar on every tile
+ * with even x- and y-coordinates, like the hand-written maps. The remaining tiles hold destructible walls
+ * with the configured density, some of which hide power-ups, and some free tiles hold enemies.
+ * The entrance is in the bottom left corner, the exit is hidden under a random destructible wall.
+ *
+ * Large maps are generated in parallel: the map is split into bands of rows, and every band uses its own
+ * random number generator derived from the seed and the band index.
+ */
+public class MapGenerator {
+
+    /** The largest supported width and height. */
+    public static final int MAX_SIZE = 4096;
+    /** The smallest supported width and height: a border plus one row of pillars. */
+    public static final int MIN_SIZE = 5;
+    /** The number of rows generated as one task. */
+    private static final int BAND_HEIGHT = 64;
+    /** Tiles closer than this to the entrance get neither walls nor enemies, so the player can start safely. */
+    private static final int SAFE_DISTANCE = 3;
+
+    private final int width;
+    private final int height;
+    private final long seed;
+    private float destructibleDensity = 0.4f;
+    private float enemyDensity = 0.02f;
+    private float powerUpDensity = 0.05f;
+    private String movement;
+
+    /**
+     * Creates a generator for maps of the given size.
+     * @param width The width of the map, between {@link #MIN_SIZE} and {@link #MAX_SIZE}.
+     * @param height The height of the map, between {@link #MIN_SIZE} and {@link #MAX_SIZE}.
+     * @param seed The seed, the same seed always produces the same map.
+     */
+    public MapGenerator(int width, int height, long seed) {
+        if (width < MIN_SIZE || height < MIN_SIZE || width > MAX_SIZE || height > MAX_SIZE) {
+            throw new IllegalArgumentException("Map size must be between " + MIN_SIZE + " and " + MAX_SIZE + ", got " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+    }
+
+    /** Sets the probability that a tile that is neither border, pillar nor near the entrance gets a destructible wall. */
+    public void setDestructibleDensity(float destructibleDensity) {
+        this.destructibleDensity = destructibleDensity;
+    }
+
+    /** Sets the probability that a free tile gets an enemy. */
+    public void setEnemyDensity(float enemyDensity) {
+        this.enemyDensity = enemyDensity;
+    }
+
+    /** Sets the probability that a destructible wall hides a power-up. */
+    public void setPowerUpDensity(float powerUpDensity) {
+        this.powerUpDensity = powerUpDensity;
+    }
+
+    /** Sets the movement backend of the generated map, e.g. {@link GameMap#MOVEMENT_GRID}, or null for the default. */
+    public void setMovement(String movement) {
+        this.movement = movement;
+    }
+
+    /**
+     * Generates the map directly as a template, without going through a map file.
+     * @return The generated template.
+     */
+    public MapTemplate generate() {
+        byte[] tiles = new byte[width * height];
+        int bandCount = (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+        int[][] bandEnemies = new int[bandCount][];
+        int[][] bandPowerUps = new int[bandCount][];
+
+        IntStream.range(0, bandCount).parallel().forEach(band -> generateBand(band, tiles, bandEnemies, bandPowerUps));
+
+        // Concatenate the spawns in band order, which keeps the result independent of the scheduling
+        int[] enemies = concat(bandEnemies);
+        int[] powerUps = concat(bandPowerUps);
+
+        int[] exit = placeExit(tiles, powerUps);
+        return new MapTemplate("generated/" + width + "x" + height + "-" + seed, width, height, tiles,
+                1, 1, exit[0], exit[1], enemies, powerUps, movement);
+    }
+
+    /**
+     * Fills the rows of one band. Only the rows of the band are written, so bands can be generated concurrently.
+     */
+    private void generateBand(int band, byte[] tiles, int[][] bandEnemies, int[][] bandPowerUps) {
+        SplittableRandom random = new SplittableRandom(mix(seed + band * 0x9E3779B97F4A7C15L));
+        int[] enemies = new int[16];
+        int enemyCount = 0;
+        int[] powerUps = new int[24];
+        int powerUpCount = 0;
+
+        int endY = Math.min(height, (band + 1) * BAND_HEIGHT);
+        for (int y = band * BAND_HEIGHT; y < endY; y++) {
+            for (int x = 0; x < width; x++) {
+                int index = y * width + x;
+                if (x == 0 || y == 0 || x == width - 1 || y == height - 1 || (x % 2 == 0 && y % 2 == 0)) {
+                    tiles[index] = MapTemplate.TILE_INDESTRUCTIBLE;
+                } else if (x + y - 2 < SAFE_DISTANCE) {
+                    tiles[index] = MapTemplate.TILE_FREE; // Keep the entrance in the corner clear
+                } else if (random.nextDouble() < destructibleDensity) {
+                    tiles[index] = MapTemplate.TILE_DESTRUCTIBLE;
+                    if (random.nextDouble() < powerUpDensity) {
+                        if (powerUpCount + 3 > powerUps.length) {
+                            powerUps = Arrays.copyOf(powerUps, powerUps.length * 2);
+                        }
+                        powerUps[powerUpCount++] = x;
+                        powerUps[powerUpCount++] = y;
+                        powerUps[powerUpCount++] = (random.nextBoolean() ? PowerUpType.CONCURRENT_BOMBS : PowerUpType.BLAST_RADIUS).ordinal();
+                    }
+                } else if (random.nextDouble() < enemyDensity) {
+                    if (enemyCount + 2 > enemies.length) {
+                        enemies = Arrays.copyOf(enemies, enemies.length * 2);
+                    }
+                    enemies[enemyCount++] = x;
+                    enemies[enemyCount++] = y;
+                }
+            }
+        }
+        bandEnemies[band] = Arrays.copyOf(enemies, enemyCount);
+        bandPowerUps[band] = Arrays.copyOf(powerUps, powerUpCount);
+    }
+
+    /**
+     * Picks a random destructible wall without a power-up for the exit.
+     * If there is none, a wall is added in the corner opposite the entrance.
+     * @return The x- and y-coordinate of the exit.
+     */
+    private int[] placeExit(byte[] tiles, int[] powerUps) {
+        boolean[] hidesPowerUp = new boolean[tiles.length];
+        for (int i = 0; i < powerUps.length; i += 3) {
+            hidesPowerUp[powerUps[i + 1] * width + powerUps[i]] = true;
+        }
+        int candidates = 0;
+        for (int i = 0; i < tiles.length; i++) {
+            if (tiles[i] == MapTemplate.TILE_DESTRUCTIBLE && !hidesPowerUp[i]) {
+                candidates++;
+            }
+        }
+        if (candidates > 0) {
+            int chosen = new SplittableRandom(mix(~seed)).nextInt(candidates);
+            for (int i = 0; i < tiles.length; i++) {
+                if (tiles[i] == MapTemplate.TILE_DESTRUCTIBLE && !hidesPowerUp[i] && chosen-- == 0) {
+                    return new int[] {i % width, i / width};
+                }
+            }
+        }
+        // Odd coordinates are never pillars
+        int x = (width - 2) % 2 == 1 ? width - 2 : width - 3;
+        int y = (height - 2) % 2 == 1 ? height - 2 : height - 3;
+        tiles[y * width + x] = MapTemplate.TILE_DESTRUCTIBLE;
+        return new int[] {x, y};
+    }
+
+    /**
+     * Writes the generated map in the map file format read by {@link MapTemplate}, one "x,y=type" line per object.
+     * @param out The writer to write to.
+     * @throws IOException If writing fails.
+     */
+    public void writeProperties(Writer out) throws IOException {
+        MapTemplate template = generate();
+        // Later lines override earlier ones, so objects hidden under walls are written after the walls
+        byte[] codes = new byte[width * height];
+        Arrays.fill(codes, (byte) -1);
+        for (int i = 0; i < codes.length; i++) {
+            int y = i / width;
+            int x = i % width;
+            byte tile = template.getTile(x, y);
+            if (tile == MapTemplate.TILE_INDESTRUCTIBLE) {
+                codes[i] = 0;
+            } else if (tile == MapTemplate.TILE_DESTRUCTIBLE) {
+                codes[i] = 1;
+            }
+        }
+        codes[template.getEntranceY() * width + template.getEntranceX()] = 2;
+        for (int i = 0; i < template.getEnemyCount(); i++) {
+            codes[template.getEnemyY(i) * width + template.getEnemyX(i)] = 3;
+        }
+        codes[template.getExitY() * width + template.getExitX()] = 4;
+        for (int i = 0; i < template.getPowerUpCount(); i++) {
+            codes[template.getPowerUpY(i) * width + template.getPowerUpX(i)] =
+                    (byte) (template.getPowerUpType(i) == PowerUpType.CONCURRENT_BOMBS ? 5 : 6);
+        }
+
+        out.write("# Generated map " + width + "x" + height + ", seed " + seed + "\n");
+        if (movement != null) {
+            out.write("movement=" + movement + "\n");
+        }
+        StringBuilder line = new StringBuilder(16);
+        for (int i = 0; i < codes.length; i++) {
+            if (codes[i] >= 0) {
+                line.setLength(0);
+                line.append(i % width).append(',').append(i / width).append('=').append(codes[i]).append('\n');
+                out.append(line);
+            }
+        }
+        out.flush();
+    }
+
+    /** Scrambles a seed so that neighbouring band indices produce unrelated random sequences (SplitMix64 finalizer). */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int[] concat(int[][] parts) {
+        int length = 0;
+        for (int[] part : parts) {
+            length += part.length;
+        }
+        int[] result = new int[length];
+        int offset = 0;
+        for (int[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+
+    /**
+     * Writes a generated map file.
+     * Usage: {@code MapGenerator <width> <height> <seed> <output file> [destructible density] [movement]}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.out.println("Usage: MapGenerator <width> <height> <seed> <output file> [destructible density] [movement]");
+            return;
+        }
+        MapGenerator generator = new MapGenerator(Integer.parseInt(args[0]), Integer.parseInt(args[1]), Long.parseLong(args[2]));
+        if (args.length > 4) {
+            generator.setDestructibleDensity(Float.parseFloat(args[4]));
+        }
+        if (args.length > 5) {
+            generator.setMovement(args[5]);
+        }
+        long start = System.nanoTime();
+        try (Writer out = new BufferedWriter(new FileWriter(args[3]), 1 << 16)) {
+            generator.writeProperties(out);
+        }
+        System.out.println("Wrote " + args[3] + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
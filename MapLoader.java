@@ -0,0 +1,143 @@
+package de.tum.cit.ase.bomberquest.map;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Loads a map file in the background, so a large map does not freeze the window while it is parsed and built.
+ *
+ * The loader runs on a single background thread: it parses the file into a {@link MapTemplate} and then builds the
+ * {@link GameMap} from it. The thread that shows the progress polls {@link #getProgress()} and {@link #isDone()},
+ * and takes the map with {@link #takeMap()} once it is done, or shows {@link #getError()} if loading failed.
+ * Building the map does not touch the GL context; the textures are loaded when the map is first drawn.
+ */
+public final class MapLoader {
+
+    public static final int STAGE_QUEUED = 0;
+    public static final int STAGE_PARSING = 1;
+    public static final int STAGE_BUILDING = 2;
+    public static final int STAGE_DONE = 3;
+    public static final int STAGE_FAILED = 4;
+    private static final String[] STAGE_NAMES = {"Waiting", "Reading map file", "Building map", "Done", "Failed"};
+    /** The progress shown during each stage: the rough share of the loading time spent before it. */
+    private static final float[] STAGE_PROGRESS = {0f, 0.05f, 0.4f, 1f, 1f};
+
+    /** Loads maps one after another, in the order they were requested. */
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "map-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String mapFilePath;
+    private final Function<MapTemplate, GameMap> factory;
+    private final long startNanos = System.nanoTime();
+
+    private volatile int stage = STAGE_QUEUED;
+    private final AtomicReference<GameMap> map = new AtomicReference<>();
+    private volatile Exception error;
+    /** Set when the result is not wanted any more; a map that is still built is disposed right away. */
+    private volatile boolean cancelled;
+
+    private MapLoader(String mapFilePath, Function<MapTemplate, GameMap> factory) {
+        this.mapFilePath = mapFilePath;
+        this.factory = factory;
+    }
+
+    /**
+     * Starts loading a map file in the background.
+     * @param mapFilePath The path of the map file.
+     * @param factory Creates the map from the parsed template, e.g. with the listeners of the game.
+     *                Called on the loader thread.
+     * @return The loader, to follow its progress.
+     */
+    public static MapLoader start(String mapFilePath, Function<MapTemplate, GameMap> factory) {
+        MapLoader loader = new MapLoader(mapFilePath, factory);
+        LOADER.execute(loader::load);
+        return loader;
+    }
+
+    private void load() {
+        if (cancelled) {
+            return;
+        }
+        try {
+            stage = STAGE_PARSING;
+            MapTemplate template = MapTemplate.load(mapFilePath);
+            stage = STAGE_BUILDING;
+            map.set(factory.apply(template));
+            stage = STAGE_DONE;
+            if (cancelled) {
+                disposeMap(); // Cancelled while the map was built
+            }
+        } catch (Exception e) {
+            error = e;
+            stage = STAGE_FAILED;
+        }
+    }
+
+    /** Returns the path of the map file. */
+    public String getMapFilePath() {
+        return mapFilePath;
+    }
+
+    /** Returns the current stage, one of the {@code STAGE_} constants. */
+    public int getStage() {
+        return stage;
+    }
+
+    /** Returns a short description of the current stage for the user. */
+    public String getStageName() {
+        return STAGE_NAMES[stage];
+    }
+
+    /**
+     * Returns the progress between 0 and 1. Parsing and building cannot tell how far along they are, so the
+     * progress is the share of the stages that are finished.
+     */
+    public float getProgress() {
+        return STAGE_PROGRESS[stage];
+    }
+
+    /** Returns the time since loading was requested in seconds. */
+    public float getElapsedSeconds() {
+        return (System.nanoTime() - startNanos) / 1_000_000_000f;
+    }
+
+    /** Returns whether loading has finished, successfully or not. */
+    public boolean isDone() {
+        int current = stage;
+        return current == STAGE_DONE || current == STAGE_FAILED;
+    }
+
+    /** Returns why loading failed, or null. */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * Returns the loaded map once and forgets it, so the caller owns it.
+     * @return The map, or null if it is not loaded (yet).
+     */
+    public GameMap takeMap() {
+        return map.getAndSet(null);
+    }
+
+    /**
+     * Discards the result: a map that is still being built is disposed by the loader, one that is already built
+     * is disposed here.
+     */
+    public void cancel() {
+        cancelled = true;
+        disposeMap();
+    }
+
+    private void disposeMap() {
+        GameMap loaded = takeMap();
+        if (loaded != null) {
+            loaded.dispose();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package de.tum.cit.ase.bomberquest.map;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The complete simulation state of a {@link GameMap} at one tick, taken by {@link GameMap#saveSnapshot(MapSnapshot)}
+ * so the map can be rolled back to it later.
+ *
+ * Unlike {@link GameMap#writeState(ByteBuffer)}, which writes a compact save file for a fresh map, a snapshot is
+ * exact: it keeps references to the very objects that were on the map and every field that influences later ticks,
+ * so a map that is restored and ticked again with the same inputs ends up in exactly the same state.
+ * Snapshots are meant to be reused; saving into an old snapshot does not allocate unless the map grew.
+ */
+public final class MapSnapshot {
+
+    ByteBuffer data = ByteBuffer.allocate(256);
+    byte[] tiles;
+    final List<Enemy> enemies = new ArrayList<>();
+    final List<Bomb> bombs = new ArrayList<>();
+    final List<PowerUp> powerUps = new ArrayList<>();
+    Object movement;
+
+    /** Makes sure at least the given number of bytes fit into the data buffer, which is cleared. */
+    void prepare(int size, int tileCount) {
+        if (data.capacity() < size) {
+            data = ByteBuffer.allocate(Math.max(size, data.capacity() * 2));
+        }
+        data.clear();
+        if (tiles == null || tiles.length != tileCount) {
+            tiles = new byte[tileCount];
+        }
+    }
+
+    /**
+     * Returns a hash of the primitive state, i.e. tiles, counters and the state and position of every object.
+     * Two peers that simulated the same inputs must have the same checksum.
+     */
+    public int checksum() {
+        int hash = 1;
+        for (byte tile : tiles) {
+            hash = 31 * hash + tile;
+        }
+        for (int i = 0; i < data.position(); i++) {
+            hash = 31 * hash + data.get(i);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,418 @@
+package de.tum.cit.ase.bomberquest.map;
+
+import com.badlogic.gdx.Gdx;
+import de.tum.cit.ase.bomberquest.debug.Log;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable, already parsed map file: the tiles as a byte array plus the spawn points of all entities.
+ * Parsing a map file is comparatively slow, so every file is parsed once and cached (see {@link #load(String)});
+ * a {@link GameMap} is then created from the template with a bulk copy of the tiles.
+ * Templates can also be built directly in memory, see {@link MapGenerator}.
+ * Objects that never change, i.e. the indestructible walls and the flowers, are created once here, when they are
+ * first needed, and shared by all maps created from the template.
+ */
+public final class MapTemplate {
+
+    /** A tile without a wall. */
+    public static final byte TILE_FREE = 0;
+    /** A tile with an indestructible wall. */
+    public static final byte TILE_INDESTRUCTIBLE = 1;
+    /** A tile with a destructible wall, possibly hiding the exit or a power-up. */
+    public static final byte TILE_DESTRUCTIBLE = 2;
+
+    /**
+     * All templates parsed or being parsed so far, by file path. A file is parsed outside of any lock, so loading a
+     * large map in the background does not hold up loading other maps.
+     */
+    private static final Map<String, CompletableFuture<MapTemplate>> CACHE = new ConcurrentHashMap<>();
+
+    private final String path;
+    private final int width;
+    private final int height;
+    /** The tile of every position, indexed by y * width + x. */
+    private final byte[] tiles;
+    /** The value of the {@code movement} key, or null if the map does not set it. */
+    private final String movement;
+    private final int entranceX;
+    private final int entranceY;
+    /** The position of the exit. */
+    private final int exitX;
+    private final int exitY;
+    /** x, y pairs of the enemy spawn points. */
+    private final int[] enemySpawns;
+    /** x, y, {@link PowerUpType} ordinal triples of the hidden power-ups. */
+    private final int[] powerUps;
+    /** The connected components of the map, see {@link MapAnalysis}. */
+    private final MapAnalysis analysis;
+    /** The indestructible wall of every position, indexed by y * width + x, created on first use. */
+    private Wall[] indestructibleWalls;
+    /** The flowers covering the map, created on first use. */
+    private List<Flowers> flowers;
+
+    /**
+     * Creates a template from already prepared data. The arrays are not copied, so they must not be modified afterwards.
+     * The map is checked with a {@link MapAnalysis}: a map whose entrance is missing or walled in is rejected,
+     * an exit that is missing or cannot be reached from the entrance is moved to a reachable destructible wall,
+     * and enemies and power-ups that cannot be reached are dropped.
+     * @param path A name for the template, used by saved games to find the map again.
+     * @param width The width of the map.
+     * @param height The height of the map.
+     * @param tiles The tile of every position, indexed by y * width + x, see the {@code TILE_} constants.
+     * @param entranceX The x-coordinate of the entrance.
+     * @param entranceY The y-coordinate of the entrance.
+     * @param exitX The x-coordinate of the exit, or -1 to place it at a random reachable destructible wall.
+     * @param exitY The y-coordinate of the exit, or -1.
+     * @param enemySpawns x, y pairs of the enemy spawn points.
+     * @param powerUps x, y, {@link PowerUpType} ordinal triples of the hidden power-ups.
+     * @param movement The movement backend, e.g. {@link GameMap#MOVEMENT_GRID}, or null for the default.
+     * @throws IllegalArgumentException If the map cannot be repaired.
+     */
+    public MapTemplate(String path, int width, int height, byte[] tiles, int entranceX, int entranceY,
+                       int exitX, int exitY, int[] enemySpawns, int[] powerUps, String movement) {
+        if (tiles.length != width * height) {
+            throw new IllegalArgumentException("Expected " + width * height + " tiles, got " + tiles.length);
+        }
+        this.path = path;
+        this.width = width;
+        this.height = height;
+        this.tiles = tiles;
+        this.entranceX = entranceX;
+        this.entranceY = entranceY;
+        this.movement = movement;
+        this.analysis = new MapAnalysis(width, height, tiles);
+
+        int start = analysis.getComponent(entranceX, entranceY);
+        if (start == MapAnalysis.NO_COMPONENT) {
+            throw new IllegalArgumentException(path + ": the entrance is missing or inside an indestructible wall");
+        }
+        if (exitX < 0 || analysis.getComponent(exitX, exitY) != start || tiles[exitY * width + exitX] != TILE_DESTRUCTIBLE) {
+            if (exitX >= 0) {
+                Log.warn("{}: exit at {},{} cannot be reached, moving it", path, exitX, exitY);
+            }
+            int exit = pickExit(tiles, powerUps, start, path.hashCode());
+            if (exit < 0) {
+                throw new IllegalArgumentException(path + ": no reachable destructible wall to hide the exit under");
+            }
+            exitX = exit % width;
+            exitY = exit / width;
+        }
+        this.exitX = exitX;
+        this.exitY = exitY;
+        this.enemySpawns = reachableEnemySpawns(enemySpawns, start);
+        this.powerUps = reachablePowerUps(powerUps, start);
+    }
+
+    /**
+     * Picks a random destructible wall in the entrance's component that does not hide a power-up.
+     * The choice only depends on the seed, so the exit is at the same place every time the map is loaded.
+     * @return The index of the chosen tile, or -1 if there is none.
+     */
+    private int pickExit(byte[] tiles, int[] powerUps, int component, long seed) {
+        boolean[] hidesPowerUp = new boolean[tiles.length];
+        for (int i = 0; i < powerUps.length; i += 3) {
+            hidesPowerUp[powerUps[i + 1] * width + powerUps[i]] = true;
+        }
+        int candidates = 0;
+        for (int i = 0; i < tiles.length; i++) {
+            if (isExitCandidate(tiles, hidesPowerUp, component, i)) {
+                candidates++;
+            }
+        }
+        if (candidates == 0) {
+            return -1;
+        }
+        int chosen = new SplittableRandom(seed).nextInt(candidates);
+        for (int i = 0; i < tiles.length; i++) {
+            if (isExitCandidate(tiles, hidesPowerUp, component, i) && chosen-- == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isExitCandidate(byte[] tiles, boolean[] hidesPowerUp, int component, int i) {
+        return tiles[i] == TILE_DESTRUCTIBLE && !hidesPowerUp[i] && analysis.getComponent(i % width, i / width) == component;
+    }
+
+    /** Returns the enemy spawn points that can be reached from the entrance's component. */
+    private int[] reachableEnemySpawns(int[] enemySpawns, int component) {
+        int[] reachable = new int[enemySpawns.length];
+        int count = 0;
+        for (int i = 0; i < enemySpawns.length; i += 2) {
+            if (analysis.getComponent(enemySpawns[i], enemySpawns[i + 1]) == component) {
+                reachable[count++] = enemySpawns[i];
+                reachable[count++] = enemySpawns[i + 1];
+            } else {
+                Log.warn("{}: enemy at {},{} cannot be reached, dropping it", path, enemySpawns[i], enemySpawns[i + 1]);
+            }
+        }
+        return count == enemySpawns.length ? enemySpawns : Arrays.copyOf(reachable, count);
+    }
+
+    /** Returns the power-ups that can be reached from the entrance's component. */
+    private int[] reachablePowerUps(int[] powerUps, int component) {
+        int[] reachable = new int[powerUps.length];
+        int count = 0;
+        for (int i = 0; i < powerUps.length; i += 3) {
+            if (analysis.getComponent(powerUps[i], powerUps[i + 1]) == component) {
+                reachable[count++] = powerUps[i];
+                reachable[count++] = powerUps[i + 1];
+                reachable[count++] = powerUps[i + 2];
+            } else {
+                Log.warn("{}: power-up at {},{} cannot be reached, dropping it", path, powerUps[i], powerUps[i + 1]);
+            }
+        }
+        return count == powerUps.length ? powerUps : Arrays.copyOf(reachable, count);
+    }
+
+    /**
+     * Creates a template from the contents of a map file.
+     * @param path The path of the map file.
+     * @param properties The contents of the map file.
+     */
+    private static MapTemplate fromProperties(String path, Properties properties) {
+        // Determine the maximum X and Y dimensions of the map
+        int maxX = 0, maxY = 0;
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("#") || !key.contains(",")) continue; //skip comment lines and settings such as "movement"
+            String[] coordinates = key.split(",");
+            maxX = Math.max(maxX, Integer.parseInt(coordinates[0]));
+            maxY = Math.max(maxY, Integer.parseInt(coordinates[1]));
+        }
+        int width = maxX + 1;
+        int height = maxY + 1;
+        byte[] tiles = new byte[width * height];
+
+        int entranceX = -1, entranceY = -1, exitX = -1, exitY = -1;
+        int[] enemies = new int[16];
+        int enemyCount = 0;
+        int[] powerUps = new int[24];
+        int powerUpCount = 0;
+        //Parse map file to initialize game objects
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("#") || !key.contains(",")) continue;
+            String[] coordinates = key.split(",");
+            int x = Integer.parseInt(coordinates[0]);
+            int y = Integer.parseInt(coordinates[1]);
+            int type = Integer.parseInt(properties.getProperty(key));
+            switch (type) {
+                case 0: // indestructible walls
+                    tiles[y * width + x] = TILE_INDESTRUCTIBLE;
+                    break;
+                case 1: // destructible walls
+                    tiles[y * width + x] = TILE_DESTRUCTIBLE;
+                    break;
+                case 2: // entrance(player's origin point)
+                    entranceX = x;
+                    entranceY = y;
+                    break;
+                case 3: // Enemy
+                    if (enemyCount + 2 > enemies.length) {
+                        enemies = Arrays.copyOf(enemies, enemies.length * 2);
+                    }
+                    enemies[enemyCount++] = x;
+                    enemies[enemyCount++] = y;
+                    break;
+                case 4: // exit(hidden behind destructible wall)
+                    exitX = x;
+                    exitY = y;
+                    tiles[y * width + x] = TILE_DESTRUCTIBLE;
+                    break;
+                case 5: // Power-up: Increases bomb count
+                case 6: // Power-up: Increases blast radius
+                    if (powerUpCount + 3 > powerUps.length) {
+                        powerUps = Arrays.copyOf(powerUps, powerUps.length * 2);
+                    }
+                    powerUps[powerUpCount++] = x;
+                    powerUps[powerUpCount++] = y;
+                    powerUps[powerUpCount++] = (type == 5 ? PowerUpType.CONCURRENT_BOMBS : PowerUpType.BLAST_RADIUS).ordinal();
+                    tiles[y * width + x] = TILE_DESTRUCTIBLE;
+                    break;
+            }
+        }
+        return new MapTemplate(path, width, height, tiles, entranceX, entranceY, exitX, exitY,
+                Arrays.copyOf(enemies, enemyCount), Arrays.copyOf(powerUps, powerUpCount), properties.getProperty("movement"));
+    }
+
+    /**
+     * Returns the template of the given map file, parsing the file only the first time it is requested.
+     * If another thread is parsing the same file, waits for its result instead of parsing it again.
+     * @param mapFilePath The path of the map file, relative to the assets directory or absolute.
+     * @return The parsed template.
+     * @throws IOException If the file cannot be read.
+     */
+    public static MapTemplate load(String mapFilePath) throws IOException {
+        CompletableFuture<MapTemplate> template = CACHE.get(mapFilePath);
+        if (template == null) {
+            CompletableFuture<MapTemplate> parsing = new CompletableFuture<>();
+            template = CACHE.putIfAbsent(mapFilePath, parsing);
+            if (template == null) {
+                try {
+                    MapTemplate parsed = parse(mapFilePath);
+                    parsing.complete(parsed);
+                    return parsed;
+                } catch (IOException | RuntimeException e) {
+                    CACHE.remove(mapFilePath, parsing); // Not cached, the next request tries again
+                    parsing.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        }
+        try {
+            return template.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw new IOException(e.getCause().getMessage(), e.getCause()); // Parsed by another thread
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Parses a map file without using the cache.
+     * @param mapFilePath The path of the map file.
+     * @return The parsed template.
+     * @throws IOException If the file cannot be read.
+     */
+    public static MapTemplate parse(String mapFilePath) throws IOException {
+        Properties properties = new Properties();
+        // Without libGDX, e.g. on a match server, the path is a plain file path
+        try (Reader reader = Gdx.files != null ? Gdx.files.internal(mapFilePath).reader()
+                : Files.newBufferedReader(Path.of(mapFilePath), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        try {
+            return fromProperties(mapFilePath, properties);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid map file " + mapFilePath + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Copies the tiles into the given array with a single bulk copy.
+     * @param destination An array of at least width * height elements.
+     */
+    public void copyTiles(byte[] destination) {
+        System.arraycopy(tiles, 0, destination, 0, tiles.length);
+    }
+
+    /** Returns the tile at the given position, see the {@code TILE_} constants. */
+    public byte getTile(int x, int y) {
+        return tiles[y * width + x];
+    }
+
+    /** Returns the shared indestructible wall at the given position, or null if there is none. */
+    public Wall getIndestructibleWall(int x, int y) {
+        return getIndestructibleWalls()[y * width + x];
+    }
+
+    private synchronized Wall[] getIndestructibleWalls() {
+        if (indestructibleWalls == null) {
+            Wall[] walls = new Wall[width * height];
+            for (int i = 0; i < tiles.length; i++) {
+                if (tiles[i] == TILE_INDESTRUCTIBLE) {
+                    walls[i] = new IndestructibleWall(i % width, i / width);
+                }
+            }
+            indestructibleWalls = walls;
+        }
+        return indestructibleWalls;
+    }
+
+    /** Returns the number of enemies on the map. */
+    public int getEnemyCount() {
+        return enemySpawns.length / 2;
+    }
+
+    public int getEnemyX(int i) {
+        return enemySpawns[i * 2];
+    }
+
+    public int getEnemyY(int i) {
+        return enemySpawns[i * 2 + 1];
+    }
+
+    /** Returns the number of power-ups hidden on the map. */
+    public int getPowerUpCount() {
+        return powerUps.length / 3;
+    }
+
+    public int getPowerUpX(int i) {
+        return powerUps[i * 3];
+    }
+
+    public int getPowerUpY(int i) {
+        return powerUps[i * 3 + 1];
+    }
+
+    public PowerUpType getPowerUpType(int i) {
+        return PowerUpType.values()[powerUps[i * 3 + 2]];
+    }
+
+    /** Returns the flowers covering the whole map. The list is shared and cannot be modified. */
+    public synchronized List<Flowers> getFlowers() {
+        if (flowers == null) {
+            List<Flowers> list = new ArrayList<>(width * height);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    list.add(new Flowers(x, y));
+                }
+            }
+            flowers = Collections.unmodifiableList(list);
+        }
+        return flowers;
+    }
+
+    /** Returns the connected components of the map, e.g. to check in O(1) whether a tile can be reached. */
+    public MapAnalysis getAnalysis() {
+        return analysis;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public String getMovement() {
+        return movement;
+    }
+
+    public int getEntranceX() {
+        return entranceX;
+    }
+
+    public int getEntranceY() {
+        return entranceY;
+    }
+
+    public int getExitX() {
+        return exitX;
+    }
+
+    public int getExitY() {
+        return exitY;
+    }
+}
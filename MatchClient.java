@@ -0,0 +1,327 @@
+package de.tum.cit.ase.bomberquest.net;
+
+import de.tum.cit.ase.bomberquest.map.Bomb;
+import de.tum.cit.ase.bomberquest.map.Direction;
+import de.tum.cit.ase.bomberquest.map.Enemy;
+import de.tum.cit.ase.bomberquest.map.GameMap;
+import de.tum.cit.ase.bomberquest.map.Player;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Connects to a {@link MatchServer} and mirrors the match onto a local {@link GameMap}, which is never ticked itself:
+ * walls, bombs, power-ups, deaths and positions all come from the server's snapshots.
+ *
+ * A reader thread only queues the received messages; they are applied in {@link #update(float, int)} on the thread
+ * that owns the map, usually the render thread. A client without a map only decodes the snapshots, which is enough
+ * for stand-in clients that measure the traffic, see {@link LoopbackMatch}.
+ */
+public class MatchClient implements Closeable {
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final PacketWriter packet = new PacketWriter();
+    private final ConcurrentLinkedQueue<byte[]> received = new ConcurrentLinkedQueue<>();
+    private final Thread reader;
+    private volatile boolean closed;
+    private volatile long bytesReceived;
+
+    private final int playerIndex;
+    private final int tickRate;
+    private final String templatePath;
+    private final int enemyCount;
+
+    private final SnapshotHistory history;
+    /** The entity positions currently shown on the map. */
+    private final SnapshotHistory.Entry applied;
+    private GameMap map;
+    private Enemy[] enemies;
+    private int lastSeq;
+    private int tilesApplied;
+    private int eventsApplied;
+    private int snapshotCount;
+    private int lastSentSeq = -1;
+    private int lastSentInput = -1;
+
+    private MatchClient(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        byte[] welcome = PacketReader.readFrame(in);
+        bytesReceived += 2 + welcome.length;
+        PacketReader message = new PacketReader(welcome);
+        if (message.readByte() != MatchProtocol.MSG_WELCOME) {
+            throw new IOException("Expected a welcome message");
+        }
+        this.playerIndex = message.readVarInt();
+        this.tickRate = message.readVarInt();
+        this.templatePath = message.readString();
+        this.enemyCount = message.readVarInt();
+        this.history = new SnapshotHistory(MatchProtocol.getEntityCount(enemyCount));
+        this.applied = new SnapshotHistory.Entry(MatchProtocol.getEntityCount(enemyCount));
+
+        this.reader = new Thread(this::readSnapshots, "match-client-reader");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    /**
+     * Connects to a match server and waits for its welcome message.
+     * @param host The host name of the server.
+     * @param port The port of the server.
+     * @return The connected client.
+     * @throws IOException If the connection fails or the server rejects the client.
+     */
+    public static MatchClient connect(String host, int port) throws IOException {
+        Socket socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        try {
+            return new MatchClient(socket);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /** Returns the index of the player this client controls. */
+    public int getPlayerIndex() {
+        return playerIndex;
+    }
+
+    public int getTickRate() {
+        return tickRate;
+    }
+
+    /** Returns the path of the map file the match is played on. */
+    public String getTemplatePath() {
+        return templatePath;
+    }
+
+    /** Returns the number of bytes received so far, including framing. */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /** Returns the number of snapshots applied so far. */
+    public int getSnapshotCount() {
+        return snapshotCount;
+    }
+
+    /**
+     * Mirrors the match onto a map freshly created from {@link #getTemplatePath()}.
+     * @param map The map, which must not be ticked from now on.
+     */
+    public void attach(GameMap map) {
+        if (map.getEnemies().size() != enemyCount) {
+            throw new IllegalArgumentException("Map has " + map.getEnemies().size() + " enemies, the server has " + enemyCount);
+        }
+        this.map = map;
+        this.enemies = map.getEnemies().toArray(new Enemy[0]);
+        ensurePlayer(playerIndex);
+        map.setLocalPlayer(playerIndex);
+    }
+
+    private void readSnapshots() {
+        try {
+            while (!closed) {
+                byte[] frame = PacketReader.readFrame(in);
+                bytesReceived += 2 + frame.length;
+                received.add(frame);
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                System.out.println("MatchClient: disconnected, " + e.getMessage());
+                closed = true;
+            }
+        }
+    }
+
+    /**
+     * Applies all snapshots received since the last call and sends the input of the local player.
+     * @param frameTime The time since the last call, used to animate the mirrored objects.
+     * @param input The input mask of the local player, see the {@code INPUT_} constants of {@link Player}.
+     */
+    public void update(float frameTime, int input) {
+        byte[] frame;
+        while ((frame = received.poll()) != null) {
+            try {
+                applySnapshot(new PacketReader(frame));
+            } catch (IOException e) {
+                System.out.println("MatchClient: ignoring malformed snapshot, " + e.getMessage());
+            }
+        }
+        if (map != null) {
+            animate(frameTime);
+        }
+        if (!closed && (lastSeq != lastSentSeq || input != lastSentInput)) {
+            sendInput(input);
+        }
+    }
+
+    private void sendInput(int input) {
+        packet.reset();
+        packet.writeByte(MatchProtocol.MSG_INPUT);
+        packet.writeVarInt(lastSeq);
+        packet.writeByte(input);
+        try {
+            packet.writeFrame(out);
+            out.flush();
+            lastSentSeq = lastSeq;
+            lastSentInput = input;
+        } catch (IOException e) {
+            System.out.println("MatchClient: cannot send input, " + e.getMessage());
+            closed = true;
+        }
+    }
+
+    private void applySnapshot(PacketReader message) throws IOException {
+        if (message.readByte() != MatchProtocol.MSG_SNAPSHOT) {
+            return;
+        }
+        int seq = message.readVarInt();
+        int baselineSeq = message.readVarInt();
+        SnapshotHistory.Entry baseline = history.get(baselineSeq);
+        if (baselineSeq != 0 && baseline == null) {
+            throw new IOException("Unknown baseline " + baselineSeq);
+        }
+
+        // Walls and events are logs, so parts that arrived with an older snapshot are skipped
+        int tileStart = message.readVarInt();
+        int tileCount = message.readVarInt();
+        for (int i = 0; i < tileCount; i++) {
+            int tile = message.readVarInt();
+            if (tileStart + i >= tilesApplied) {
+                if (map != null) {
+                    map.destroyWallAt(tile % map.getWidth(), tile / map.getWidth());
+                }
+                tilesApplied = tileStart + i + 1;
+            }
+        }
+        int eventStart = message.readVarInt();
+        int eventCount = message.readVarInt();
+        for (int i = 0; i < eventCount; i++) {
+            int kind = message.readByte();
+            int a = message.readVarInt();
+            int b = message.readVarInt();
+            int c = message.readVarInt();
+            if (eventStart + i >= eventsApplied) {
+                if (map != null) {
+                    applyEvent(kind, a, b, c);
+                }
+                eventsApplied = eventStart + i + 1;
+            }
+        }
+
+        SnapshotHistory.Entry snapshot = history.claim(seq);
+        MatchProtocol.readEntities(message, baseline, snapshot);
+        snapshot.tileChangeCount = tileStart + tileCount;
+        snapshot.eventCount = eventStart + eventCount;
+        if (map != null) {
+            applyEntities(snapshot);
+        }
+        lastSeq = seq;
+        snapshotCount++;
+    }
+
+    private void applyEvent(int kind, int a, int b, int c) {
+        switch (kind) {
+            case GameMap.EVENT_BOMB_PLACED:
+                if (!map.hasBombAt(a, b)) {
+                    map.addBomb(new Bomb(a, b, map, ensurePlayer(c)));
+                }
+                break;
+            case GameMap.EVENT_BOMB_EXPLODED:
+                map.removeBombAt(a, b); // The destroyed walls arrive as tile changes
+                break;
+            case GameMap.EVENT_POWER_UP_COLLECTED:
+                map.collectPowerUpAt(a, b, ensurePlayer(c));
+                break;
+            case GameMap.EVENT_PLAYER_KILLED:
+                map.killPlayer(ensurePlayer(a), b);
+                break;
+            case GameMap.EVENT_VICTORY:
+                map.declareVictory(ensurePlayer(a));
+                break;
+            default:
+                break; // Unknown events from a newer server are ignored
+        }
+    }
+
+    private void applyEntities(SnapshotHistory.Entry snapshot) {
+        for (int key = 0; key < snapshot.x.length; key++) {
+            if (!snapshot.isPresent(key)) {
+                if (applied.isPresent(key) && key >= MatchProtocol.MAX_PLAYERS) {
+                    map.killEnemy(enemies[key - MatchProtocol.MAX_PLAYERS]);
+                }
+                continue;
+            }
+            float x = MatchProtocol.dequantise(snapshot.x[key]);
+            float y = MatchProtocol.dequantise(snapshot.y[key]);
+            float dx = applied.isPresent(key) ? x - MatchProtocol.dequantise(applied.x[key]) : 0;
+            float dy = applied.isPresent(key) ? y - MatchProtocol.dequantise(applied.y[key]) : 0;
+            if (key < MatchProtocol.MAX_PLAYERS) {
+                Player player = ensurePlayer(key);
+                map.getMovement().setPosition(player.getMoverId(), x, y);
+                player.setAnimationVelocity(dx, dy);
+            } else {
+                Enemy enemy = enemies[key - MatchProtocol.MAX_PLAYERS];
+                if (!enemy.isAlive()) {
+                    continue;
+                }
+                map.getMovement().setPosition(enemy.getMoverId(), x, y);
+                if (dx != 0 || dy != 0) {
+                    Direction direction = Math.abs(dx) > Math.abs(dy)
+                            ? (dx > 0 ? Direction.RIGHT : Direction.LEFT)
+                            : (dy > 0 ? Direction.UP : Direction.DOWN);
+                    if (direction != enemy.getDirection()) {
+                        enemy.setDirection(direction);
+                    }
+                }
+            }
+        }
+        applied.copyFrom(snapshot);
+        map.updateEnemyIndexes();
+    }
+
+    /** Advances the animations and bomb fuses, which the server does not send. */
+    private void animate(float frameTime) {
+        for (Player player : map.getPlayers()) {
+            player.animate(frameTime);
+        }
+        for (Enemy enemy : map.getEnemies()) {
+            enemy.animate(frameTime);
+        }
+        for (Bomb bomb : map.getBombs()) {
+            bomb.setExplosionTimer(Math.max(0, bomb.getExplosionTimer() - frameTime));
+        }
+    }
+
+    /** Returns the player with the given index, adding players to the map until it exists. */
+    private Player ensurePlayer(int index) {
+        List<Player> players = map.getPlayers();
+        while (players.size() <= index) {
+            map.addPlayer();
+        }
+        return players.get(index);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package de.tum.cit.ase.bomberquest.map;
+
+import java.util.Arrays;
+
+/**
+ * Passes everything that happens on a {@link GameMap} on to any number of {@link MatchListener}s.
+ * The map reports to its bus only; the game's sounds, the HUD and a tournament's statistics subscribe to it.
+ *
+ * The subscribers are kept in an array that is replaced when somebody subscribes or unsubscribes, so reporting
+ * an event neither allocates nor locks, and subscribers may come and go while the map is ticked on another thread.
+ */
+public final class MatchEventBus implements MatchListener {
+
+    private static final MatchListener[] NO_LISTENERS = {};
+
+    private volatile MatchListener[] listeners = NO_LISTENERS;
+
+    /**
+     * Adds a listener, which is told about events from now on.
+     * @param listener The listener; subscribing it a second time has no effect.
+     */
+    public synchronized void subscribe(MatchListener listener) {
+        if (Arrays.asList(listeners).contains(listener)) {
+            return;
+        }
+        MatchListener[] more = Arrays.copyOf(listeners, listeners.length + 1);
+        more[listeners.length] = listener;
+        listeners = more;
+    }
+
+    /**
+     * Removes a listener; it may still receive the event that is being reported right now.
+     * @param listener The listener; nothing happens if it is not subscribed.
+     */
+    public synchronized void unsubscribe(MatchListener listener) {
+        int index = Arrays.asList(listeners).indexOf(listener);
+        if (index < 0) {
+            return;
+        }
+        MatchListener[] fewer = new MatchListener[listeners.length - 1];
+        System.arraycopy(listeners, 0, fewer, 0, index);
+        System.arraycopy(listeners, index + 1, fewer, index, fewer.length - index);
+        listeners = fewer;
+    }
+
+    /** Returns whether anybody listens. */
+    public boolean hasSubscribers() {
+        return listeners.length > 0;
+    }
+
+    @Override
+    public void bombPlaced(Bomb bomb) {
+        for (MatchListener listener : listeners) {
+            listener.bombPlaced(bomb);
+        }
+    }
+
+    @Override
+    public void bombExploded(Bomb bomb) {
+        for (MatchListener listener : listeners) {
+            listener.bombExploded(bomb);
+        }
+    }
+
+    @Override
+    public void wallDestroyed(int x, int y) {
+        for (MatchListener listener : listeners) {
+            listener.wallDestroyed(x, y);
+        }
+    }
+
+    @Override
+    public void enemyKilled(Enemy enemy) {
+        for (MatchListener listener : listeners) {
+            listener.enemyKilled(enemy);
+        }
+    }
+
+    @Override
+    public void powerUpRevealed(PowerUp powerUp) {
+        for (MatchListener listener : listeners) {
+            listener.powerUpRevealed(powerUp);
+        }
+    }
+
+    @Override
+    public void powerUpCollected(Player player, PowerUp powerUp) {
+        for (MatchListener listener : listeners) {
+            listener.powerUpCollected(player, powerUp);
+        }
+    }
+
+    @Override
+    public void exitRevealed(Exit exit) {
+        for (MatchListener listener : listeners) {
+            listener.exitRevealed(exit);
+        }
+    }
+
+    @Override
+    public void exitUnlocked(Exit exit) {
+        for (MatchListener listener : listeners) {
+            listener.exitUnlocked(exit);
+        }
+    }
+
+    @Override
+    public void playerKilled(Player player, int cause) {
+        for (MatchListener listener : listeners) {
+            listener.playerKilled(player, cause);
+        }
+    }
+
+    @Override
+    public void matchOver(boolean won) {
+        for (MatchListener listener : listeners) {
+            listener.matchOver(won);
+        }
+    }
+}
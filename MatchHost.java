@@ -0,0 +1,407 @@
+package de.tum.cit.ase.bomberquest.net;
+
+import de.tum.cit.ase.bomberquest.map.GameMap;
+import de.tum.cit.ase.bomberquest.map.MapGenerator;
+import de.tum.cit.ase.bomberquest.map.MapTemplate;
+import de.tum.cit.ase.bomberquest.map.Player;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs many independent matches ("sessions") in one process, each on its own headless {@link GameMap}.
+ *
+ * Every session runs its tick loop on its own thread, a virtual thread if the Java runtime has them, so a host
+ * can keep thousands of sessions without thousands of operating system threads. The sessions do not time
+ * themselves: one shared scheduler thread keeps the deadlines of all sessions and wakes each session when its
+ * next tick is due, parking until shortly before and spinning for the rest, which is far more precise than
+ * sleeping in every session.
+ *
+ * At most {@code parallelTicks} sessions tick at the same time, usually one per core. A session that is woken
+ * waits for a free slot in arrival order, so when the host is overloaded all sessions fall behind alike; a session
+ * that falls behind drops the ticks it missed instead of catching up, so every session runs at the same reduced
+ * tick rate instead of some sessions starving. {@link #getStats(int)} reports how far each session is behind.
+ */
+public final class MatchHost implements AutoCloseable {
+
+    public static final int DEFAULT_TICK_RATE = 60;
+    /** The number of recent ticks the latency percentiles are computed from. */
+    private static final int LATENCY_SAMPLES = 1024;
+    /** The scheduler parks until this long before a deadline and spins for the rest, parking is not precise enough. */
+    private static final long SPIN_NANOS = 100_000;
+
+    /** Thread.ofVirtual() and the methods of its builder, or null before Java 21. */
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_UNSTARTED;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method unstarted = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class);
+            unstarted = builder.getMethod("unstarted", Runnable.class);
+            ofVirtual.invoke(null); // Throws if virtual threads are a disabled preview feature
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Older runtime: sessions run on platform threads
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_UNSTARTED = unstarted;
+    }
+
+    private final int tickRate;
+    private final long periodNanos;
+    private final Semaphore tickSlots;
+    private final Map<Integer, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSessionId = new AtomicInteger();
+    /** The sessions waiting for their next tick, earliest deadline first. */
+    private final PriorityQueue<Session> due = new PriorityQueue<>(Comparator.comparingLong(session -> session.deadline));
+    private final Thread scheduler;
+    private volatile boolean closed;
+
+    /**
+     * Creates a host without sessions.
+     * @param tickRate The number of ticks per second of every session.
+     * @param parallelTicks The number of sessions that may tick at the same time, e.g. the number of cores.
+     */
+    public MatchHost(int tickRate, int parallelTicks) {
+        this.tickRate = tickRate;
+        this.periodNanos = 1_000_000_000L / tickRate;
+        this.tickSlots = new Semaphore(parallelTicks, true); // Fair, so waiting sessions tick in the order they were due
+        this.scheduler = new Thread(this::runScheduler, "match-host-scheduler");
+        this.scheduler.setDaemon(true);
+        this.scheduler.setPriority(Thread.MAX_PRIORITY);
+        this.scheduler.start();
+    }
+
+    /** Returns whether sessions run on virtual threads, which needs Java 21. */
+    public static boolean isUsingVirtualThreads() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Creates a session on a fresh copy of the map and starts ticking it. Nobody steers the player until someone joins.
+     * @param template The map to play.
+     * @return The id of the session.
+     */
+    public int createSession(MapTemplate template) {
+        if (closed) {
+            throw new IllegalStateException("Host is closed");
+        }
+        int id = nextSessionId.getAndIncrement();
+        Session session = new Session(id, new GameMap(template, 1f / tickRate));
+        sessions.put(id, session);
+        newThread(session::run, "match-session-" + id).start();
+        schedule(session, System.nanoTime());
+        return id;
+    }
+
+    /**
+     * Adds a player to a session. The player is added by the session itself before its next tick, so this waits
+     * for up to one tick.
+     * @param sessionId The id of the session.
+     * @return The index of the new player, used with {@link #setInput(int, int, int)}.
+     * @throws IllegalStateException If the session already has {@link MatchProtocol#MAX_PLAYERS} players.
+     */
+    public int join(int sessionId) {
+        Session session = getSession(sessionId);
+        CompletableFuture<Integer> joined = new CompletableFuture<>();
+        session.commands.add(() -> {
+            if (session.playerCount >= MatchProtocol.MAX_PLAYERS) {
+                joined.completeExceptionally(new IllegalStateException("Session " + sessionId + " is full"));
+                return;
+            }
+            if (session.playerCount > 0) {
+                session.map.addPlayer().setInput(0);
+            }
+            joined.complete(session.playerCount++);
+        });
+        try {
+            return joined.join();
+        } catch (CompletionException e) {
+            throw (IllegalStateException) e.getCause();
+        }
+    }
+
+    /**
+     * Sets the input of a player, which is used from the next tick on. A bomb is placed only once per request.
+     * @param sessionId The id of the session.
+     * @param playerIndex The index returned by {@link #join(int)}.
+     * @param mask The keys held, see the {@code INPUT_} constants of {@link Player}.
+     */
+    public void setInput(int sessionId, int playerIndex, int mask) {
+        Session session = getSession(sessionId);
+        session.inputs.set(playerIndex, mask & ~Player.INPUT_BOMB);
+        if ((mask & Player.INPUT_BOMB) != 0) {
+            session.bombRequests.set(playerIndex, 1);
+        }
+    }
+
+    /** Returns the tick statistics of one session. */
+    public TickStats getStats(int sessionId) {
+        return getSession(sessionId).getStats();
+    }
+
+    /** Returns the tick statistics of all sessions, ordered by id. */
+    public List<TickStats> getStats() {
+        List<TickStats> stats = new ArrayList<>();
+        for (Session session : sessions.values()) {
+            stats.add(session.getStats());
+        }
+        stats.sort(Comparator.comparingInt(TickStats::getSessionId));
+        return stats;
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /** Stops a session and forgets it. Does nothing if there is no such session. */
+    public void closeSession(int sessionId) {
+        Session session = sessions.remove(sessionId);
+        if (session != null) {
+            session.closed = true;
+            session.wake.release(); // Let the thread see that it is closed
+        }
+    }
+
+    /** Stops all sessions and the scheduler. */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(scheduler);
+        for (Integer id : new ArrayList<>(sessions.keySet())) {
+            closeSession(id);
+        }
+    }
+
+    private Session getSession(int sessionId) {
+        Session session = sessions.get(sessionId);
+        if (session == null) {
+            throw new IllegalArgumentException("No session " + sessionId);
+        }
+        return session;
+    }
+
+    private void schedule(Session session, long deadline) {
+        boolean earliest;
+        synchronized (due) {
+            session.deadline = deadline;
+            due.add(session);
+            earliest = due.peek() == session;
+        }
+        if (earliest) {
+            LockSupport.unpark(scheduler); // The scheduler may be parked until a later deadline
+        }
+    }
+
+    /** Wakes every session when its tick is due. */
+    private void runScheduler() {
+        while (!closed) {
+            Session next;
+            synchronized (due) {
+                next = due.peek();
+            }
+            if (next == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            long wait = next.deadline - System.nanoTime();
+            if (wait > SPIN_NANOS) {
+                LockSupport.parkNanos(this, wait - SPIN_NANOS);
+                continue; // An earlier session may have been scheduled meanwhile
+            }
+            while (System.nanoTime() < next.deadline) {
+                Thread.onSpinWait();
+            }
+            long now = System.nanoTime();
+            synchronized (due) {
+                while (!due.isEmpty() && due.peek().deadline <= now) {
+                    due.poll().wake.release();
+                }
+            }
+        }
+    }
+
+    /** Creates a virtual thread if the runtime supports it, or a daemon platform thread otherwise. */
+    private static Thread newThread(Runnable task, String name) {
+        if (OF_VIRTUAL != null) {
+            try {
+                Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name);
+                return (Thread) BUILDER_UNSTARTED.invoke(builder, task);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot create a virtual thread", e);
+            }
+        }
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /** One match and its tick loop. */
+    private final class Session {
+
+        final int id;
+        final GameMap map;
+        final Semaphore wake = new Semaphore(0);
+        /** Changes to the map requested by other threads, run by the session before its next tick. */
+        final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+        final AtomicIntegerArray inputs = new AtomicIntegerArray(MatchProtocol.MAX_PLAYERS);
+        final AtomicIntegerArray bombRequests = new AtomicIntegerArray(MatchProtocol.MAX_PLAYERS);
+        final long createdNanos = System.nanoTime();
+        volatile boolean closed;
+        /** When the next tick is due; only changed while the session is not in {@link #due}. */
+        long deadline;
+        int playerCount;
+
+        // Statistics, guarded by the session
+        private final int[] latencies = new int[LATENCY_SAMPLES];
+        private long ticks;
+        private long skippedTicks;
+
+        Session(int id, GameMap map) {
+            this.id = id;
+            this.map = map;
+            map.getPlayer().setInput(0); // Nobody steers the first player until someone joins
+        }
+
+        void run() {
+            try {
+                while (true) {
+                    wake.acquire();
+                    if (closed) {
+                        return;
+                    }
+                    tickSlots.acquire();
+                    try {
+                        tick();
+                    } finally {
+                        tickSlots.release();
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    long end = System.nanoTime();
+                    long next = deadline + periodNanos;
+                    long missed = next < end ? (end - next) / periodNanos + 1 : 0;
+                    synchronized (this) {
+                        latencies[(int) (ticks++ % LATENCY_SAMPLES)] = (int) Math.min(Integer.MAX_VALUE, (end - deadline) / 1000);
+                        skippedTicks += missed;
+                    }
+                    // Drop missed ticks instead of catching up, so a late session does not hold up the others
+                    schedule(this, next + missed * periodNanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                System.out.println("MatchHost: session " + id + " failed: " + e);
+                e.printStackTrace();
+                sessions.remove(id);
+            }
+        }
+
+        private void tick() {
+            Runnable command;
+            while ((command = commands.poll()) != null) {
+                command.run();
+            }
+            List<Player> players = map.getPlayers();
+            for (int i = 0; i < players.size(); i++) {
+                int bomb = bombRequests.getAndSet(i, 0) != 0 ? Player.INPUT_BOMB : 0;
+                players.get(i).setInput(inputs.get(i) | bomb);
+            }
+            map.tick(1f / tickRate);
+        }
+
+        synchronized TickStats getStats() {
+            int count = (int) Math.min(ticks, LATENCY_SAMPLES);
+            int[] recent = new int[count];
+            System.arraycopy(latencies, 0, recent, 0, count);
+            double seconds = (System.nanoTime() - createdNanos) / 1e9;
+            return new TickStats(id, ticks, skippedTicks, ticks / seconds, map.isOver(), recent);
+        }
+    }
+
+    /**
+     * Finds out how many sessions the host sustains: runs more and more sessions of stand-in players
+     * on a generated map, and stops once the sessions fall behind their tick rate.
+     *
+     * Usage: {@code MatchHost [parallel ticks] [seconds per step] [map size]}
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int parallelTicks = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 21;
+
+        MapGenerator generator = new MapGenerator(size, size, 1);
+        generator.setMovement(GameMap.MOVEMENT_GRID); // No native Box2D needed
+        MapTemplate template = generator.generate();
+        System.out.println("MatchHost: " + parallelTicks + " parallel ticks at " + DEFAULT_TICK_RATE + " Hz, "
+                + (isUsingVirtualThreads() ? "virtual threads" : "platform threads"));
+
+        int sustained = 0;
+        for (int sessionCount = 25; ; sessionCount *= 2) {
+            try (MatchHost host = new MatchHost(DEFAULT_TICK_RATE, parallelTicks)) {
+                int[] ids = new int[sessionCount];
+                for (int i = 0; i < sessionCount; i++) {
+                    ids[i] = host.createSession(template);
+                    host.join(ids[i]);
+                }
+
+                // Stand-in players wander around; finished matches are replaced so the load stays the same
+                SplittableRandom random = new SplittableRandom(sessionCount);
+                int[] directions = {Player.INPUT_LEFT, Player.INPUT_RIGHT, Player.INPUT_UP, Player.INPUT_DOWN, 0};
+                long end = System.nanoTime() + seconds * 1_000_000_000L;
+                while (System.nanoTime() < end) {
+                    for (int i = 0; i < sessionCount; i++) {
+                        if (host.getStats(ids[i]).isOver()) {
+                            host.closeSession(ids[i]);
+                            ids[i] = host.createSession(template);
+                            host.join(ids[i]);
+                        }
+                        host.setInput(ids[i], 0, directions[random.nextInt(directions.length)]);
+                    }
+                    Thread.sleep(250);
+                }
+
+                double rate = 0;
+                double slowest = Double.MAX_VALUE;
+                int worstP99 = 0;
+                long skipped = 0;
+                for (TickStats stats : host.getStats()) {
+                    rate += stats.getTickRate() / sessionCount;
+                    slowest = Math.min(slowest, stats.getTickRate());
+                    worstP99 = Math.max(worstP99, stats.getLatencyMicros(99));
+                    skipped += stats.getSkippedTicks();
+                }
+                System.out.printf("%5d sessions: %.1f Hz on average (slowest %.1f Hz), worst p99 latency %d us, %d ticks skipped%n",
+                        sessionCount, rate, slowest, worstP99, skipped);
+                if (rate < DEFAULT_TICK_RATE * 0.95) {
+                    break;
+                }
+                sustained = sessionCount;
+            }
+        }
+        System.out.printf("MatchHost: sustains at least %d sessions at %d Hz with %d parallel ticks%n",
+                sustained, DEFAULT_TICK_RATE, parallelTicks);
+    }
+}
@@ -0,0 +1,60 @@
+package de.tum.cit.ase.bomberquest.map;
+
+/**
+ * Receives what happens on a {@link GameMap}, so the simulation does not need to know about screens or sounds.
+ * Listeners subscribe to the map's {@link MatchEventBus}: the game plays sounds and switches to the game over
+ * screen from its listener and the HUD updates its text only when something changed; a server can run many maps
+ * without listeners or with listeners that only collect results.
+ *
+ * The methods are called on the thread that ticks the map, in the middle of a tick, and must not change the map.
+ * {@link GameMap#restoreSnapshot} reports nothing and {@link GameMap#readState} only the walls it destroys.
+ * All methods do nothing by default, so a listener only overrides what it needs.
+ */
+public interface MatchListener {
+
+    /** A bomb was placed on the map. */
+    default void bombPlaced(Bomb bomb) {
+    }
+
+    /** A bomb exploded; walls, enemies and players in its blast are removed right after this call. */
+    default void bombExploded(Bomb bomb) {
+    }
+
+    /** A destructible wall was destroyed, by a blast or because a match client learnt about it. */
+    default void wallDestroyed(int x, int y) {
+    }
+
+    /** An enemy was killed and removed from the map. */
+    default void enemyKilled(Enemy enemy) {
+    }
+
+    /** The wall hiding a power-up was destroyed, so it can be seen and collected. */
+    default void powerUpRevealed(PowerUp powerUp) {
+    }
+
+    /** A player walked over a power-up, whose effect has already been applied. */
+    default void powerUpCollected(Player player, PowerUp powerUp) {
+    }
+
+    /** The wall hiding the exit was destroyed. */
+    default void exitRevealed(Exit exit) {
+    }
+
+    /** The last enemy died, so the exit lets the players out. */
+    default void exitUnlocked(Exit exit) {
+    }
+
+    /**
+     * A player died.
+     * @param cause One of the {@code CAUSE_} constants of {@link GameMap}.
+     */
+    default void playerKilled(Player player, int cause) {
+    }
+
+    /**
+     * The match ended, because a player reached the unlocked exit or because no player is alive any more.
+     * The map does not change any more after this call.
+     */
+    default void matchOver(boolean won) {
+    }
+}
@@ -0,0 +1,157 @@
+package de.tum.cit.ase.bomberquest.net;
+
+import de.tum.cit.ase.bomberquest.map.Enemy;
+import de.tum.cit.ase.bomberquest.map.GameMap;
+import de.tum.cit.ase.bomberquest.map.Player;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The messages exchanged between a {@link MatchServer} and its {@link MatchClient}s.
+ * Every message is one frame (see {@link PacketWriter#writeFrame}) that starts with its type.
+ *
+ * <ul>
+ *     <li>{@link #MSG_WELCOME}, server to client once: player index, tick rate, map path, enemy count.</li>
+ *     <li>{@link #MSG_SNAPSHOT}, server to client every tick: sequence number, baseline sequence number,
+ *     the walls destroyed and the events since the baseline, and the entities that moved since the baseline.</li>
+ *     <li>{@link #MSG_INPUT}, client to server: the newest snapshot received, and the input mask of the player.</li>
+ * </ul>
+ *
+ * The baseline of a snapshot is the newest snapshot the client acknowledged, so everything the client already has
+ * is left out. Entity positions are quantised to 1/{@link #POSITION_SCALE} of a tile and sent as differences to the
+ * baseline, which usually fit into one byte per axis. Entities are addressed by a key: players by their index,
+ * enemies by {@link #MAX_PLAYERS} plus their index in the enemy list of the freshly created map.
+ */
+public final class MatchProtocol {
+
+    public static final int MSG_WELCOME = 1;
+    public static final int MSG_SNAPSHOT = 2;
+    public static final int MSG_INPUT = 3;
+
+    /** The largest number of players in one match. */
+    public static final int MAX_PLAYERS = 4;
+    /** Positions are sent in 1/32 tiles, i.e. half a pixel at the game's tile size. */
+    public static final int POSITION_SCALE = 32;
+    /** The number of snapshots both sides remember as possible baselines. */
+    public static final int HISTORY = 32;
+
+    private MatchProtocol() {
+    }
+
+    /** Returns the number of entity keys for a map with the given number of enemies. */
+    public static int getEntityCount(int enemyCount) {
+        return MAX_PLAYERS + enemyCount;
+    }
+
+    public static int quantise(float position) {
+        return Math.round(position * POSITION_SCALE);
+    }
+
+    public static float dequantise(int position) {
+        return (float) position / POSITION_SCALE;
+    }
+
+    /**
+     * Stores the quantised positions of all players and living enemies of the map in a snapshot.
+     * @param map The map.
+     * @param enemies The enemies of the map in key order, including the ones that were killed.
+     * @param into The snapshot to fill.
+     */
+    public static void capture(GameMap map, Enemy[] enemies, SnapshotHistory.Entry into) {
+        into.clear();
+        into.tileChangeCount = map.getTileChangeCount();
+        into.eventCount = map.getEventCount();
+        List<Player> players = map.getPlayers();
+        for (int i = 0; i < players.size() && i < MAX_PLAYERS; i++) {
+            into.x[i] = quantise(players.get(i).getX());
+            into.y[i] = quantise(players.get(i).getY());
+        }
+        for (int i = 0; i < enemies.length; i++) {
+            if (enemies[i].isAlive()) {
+                into.x[MAX_PLAYERS + i] = quantise(enemies[i].getX());
+                into.y[MAX_PLAYERS + i] = quantise(enemies[i].getY());
+            }
+        }
+    }
+
+    /**
+     * Writes the entities that changed between the baseline and the current snapshot.
+     * @param out The message.
+     * @param current The current snapshot.
+     * @param baseline The snapshot the client has, or null to send all entities.
+     */
+    public static void writeEntities(PacketWriter out, SnapshotHistory.Entry current, SnapshotHistory.Entry baseline) {
+        int count = current.x.length;
+        int changed = 0;
+        int removed = 0;
+        for (int key = 0; key < count; key++) {
+            if (current.isPresent(key)) {
+                if (baseline == null || !baseline.isPresent(key)
+                        || baseline.x[key] != current.x[key] || baseline.y[key] != current.y[key]) {
+                    changed++;
+                }
+            } else if (baseline != null && baseline.isPresent(key)) {
+                removed++;
+            }
+        }
+
+        out.writeVarInt(changed);
+        for (int key = 0; key < count; key++) {
+            if (!current.isPresent(key)) {
+                continue;
+            }
+            boolean known = baseline != null && baseline.isPresent(key);
+            int baseX = known ? baseline.x[key] : 0;
+            int baseY = known ? baseline.y[key] : 0;
+            if (!known || baseX != current.x[key] || baseY != current.y[key]) {
+                out.writeVarInt(key);
+                out.writeSignedVarInt(current.x[key] - baseX);
+                out.writeSignedVarInt(current.y[key] - baseY);
+            }
+        }
+        out.writeVarInt(removed);
+        if (removed > 0) {
+            for (int key = 0; key < count; key++) {
+                if (!current.isPresent(key) && baseline.isPresent(key)) {
+                    out.writeVarInt(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the entities written by {@link #writeEntities} and applies them to a copy of the baseline.
+     * @param in The message.
+     * @param baseline The snapshot the entities are relative to, or null if all entities were sent.
+     * @param into The snapshot to fill.
+     * @throws IOException If the message is malformed.
+     */
+    public static void readEntities(PacketReader in, SnapshotHistory.Entry baseline, SnapshotHistory.Entry into) throws IOException {
+        if (baseline == null) {
+            into.clear();
+        } else {
+            into.copyFrom(baseline);
+        }
+        int changed = in.readVarInt();
+        for (int i = 0; i < changed; i++) {
+            int key = checkKey(in.readVarInt(), into);
+            boolean known = into.isPresent(key);
+            into.x[key] = (known ? into.x[key] : 0) + in.readSignedVarInt();
+            into.y[key] = (known ? into.y[key] : 0) + in.readSignedVarInt();
+        }
+        int removed = in.readVarInt();
+        for (int i = 0; i < removed; i++) {
+            int key = checkKey(in.readVarInt(), into);
+            into.x[key] = SnapshotHistory.ABSENT;
+            into.y[key] = SnapshotHistory.ABSENT;
+        }
+    }
+
+    private static int checkKey(int key, SnapshotHistory.Entry entry) throws IOException {
+        if (key < 0 || key >= entry.x.length) {
+            throw new IOException("Unknown entity " + key);
+        }
+        return key;
+    }
+}
@@ -0,0 +1,337 @@
+package de.tum.cit.ase.bomberquest.net;
+
+import de.tum.cit.ase.bomberquest.map.Enemy;
+import de.tum.cit.ase.bomberquest.map.GameMap;
+import de.tum.cit.ase.bomberquest.map.MapTemplate;
+import de.tum.cit.ase.bomberquest.map.Player;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs one match authoritatively: the server owns the only simulated {@link GameMap}, ticks it headless at a fixed
+ * rate, applies the inputs its clients send and sends every client a snapshot after each tick.
+ *
+ * Snapshots are delta-compressed against the newest snapshot the client acknowledged, see {@link MatchProtocol}.
+ * Each client has its own reader thread that only stores the latest input; the map itself is only touched by the
+ * tick thread, so the simulation stays single-threaded like in the local game.
+ *
+ * Usage: {@code MatchServer <map file> [port] [tick rate]}
+ */
+public class MatchServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 7777;
+    public static final int DEFAULT_TICK_RATE = 30;
+
+    /** One connected client. */
+    private static final class Connection {
+        final Socket socket;
+        final DataOutputStream out;
+        final DataInputStream in;
+        final SnapshotHistory history;
+        /** The player this client controls, assigned on the tick thread. */
+        Player player;
+        int playerIndex;
+        /** The movement bits of the latest input. */
+        volatile int input;
+        /** Whether the client pressed the bomb key since the last tick. */
+        final AtomicBoolean bombRequested = new AtomicBoolean();
+        /** The newest snapshot the client received, 0 if none. */
+        volatile int ackedSeq;
+        volatile boolean closed;
+        long bytesSent;
+
+        Connection(Socket socket, int entityCount) throws IOException {
+            this.socket = socket;
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.history = new SnapshotHistory(entityCount);
+        }
+    }
+
+    private final GameMap map;
+    private final int tickRate;
+    private final ServerSocket serverSocket;
+    /** The enemies in key order, see {@link MatchProtocol}; killed enemies stay in the array. */
+    private final Enemy[] enemies;
+    /** Clients that connected but were not given a player yet; players are only added on the tick thread. */
+    private final ConcurrentLinkedQueue<Connection> joining = new ConcurrentLinkedQueue<>();
+    /** Clients with a player, only used on the tick thread. */
+    private final List<Connection> connections = new ArrayList<>();
+    private final ScheduledExecutorService ticker;
+    private final Thread acceptor;
+    private final PacketWriter packet = new PacketWriter();
+    /** The state after the current tick, shared by the snapshots of all clients. */
+    private final SnapshotHistory.Entry current;
+    private int seq;
+    private volatile boolean over;
+
+    /**
+     * Creates a match on a fresh, headless copy of the map. Nothing happens until {@link #start()} is called.
+     * @param template The map to play.
+     * @param port The TCP port, or 0 for any free port.
+     * @param tickRate The number of ticks and snapshots per second.
+     * @throws IOException If the port cannot be opened.
+     */
+    public MatchServer(MapTemplate template, int port, int tickRate) throws IOException {
+        this.map = new GameMap(template);
+        this.tickRate = tickRate;
+        this.enemies = map.getEnemies().toArray(new Enemy[0]);
+        this.current = new SnapshotHistory.Entry(MatchProtocol.getEntityCount(enemies.length));
+        map.getPlayer().setInput(0); // Nobody steers the first player until a client joins
+        this.serverSocket = new ServerSocket(port);
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "match-tick");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.acceptor = new Thread(this::acceptClients, "match-accept");
+        this.acceptor.setDaemon(true);
+    }
+
+    /** Starts accepting clients and ticking. The map only starts moving once the first client has joined. */
+    public void start() {
+        acceptor.start();
+        ticker.scheduleAtFixedRate(this::tick, 0, 1_000_000_000L / tickRate, TimeUnit.NANOSECONDS);
+        System.out.println("MatchServer: " + map.getTemplate().getPath() + " on port " + getPort() + " at " + tickRate + " Hz");
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** Returns whether the match has ended. */
+    public boolean isOver() {
+        return over;
+    }
+
+    private void acceptClients() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true); // Snapshots are small and time-critical
+                Connection connection = new Connection(socket, current.x.length);
+                joining.add(connection);
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /** Reads the inputs of one client until it disconnects. */
+    private void readInputs(Connection connection) {
+        try {
+            while (!connection.closed) {
+                PacketReader in = new PacketReader(PacketReader.readFrame(connection.in));
+                if (in.readByte() != MatchProtocol.MSG_INPUT) {
+                    continue;
+                }
+                int ack = in.readVarInt();
+                int mask = in.readByte();
+                if (ack > connection.ackedSeq) {
+                    connection.ackedSeq = ack;
+                }
+                connection.input = mask & ~Player.INPUT_BOMB;
+                if ((mask & Player.INPUT_BOMB) != 0) {
+                    connection.bombRequested.set(true);
+                }
+            }
+        } catch (IOException e) {
+            connection.closed = true; // The tick thread removes the connection
+        }
+    }
+
+    private void tick() {
+        try {
+            acceptJoiningClients();
+            if (connections.isEmpty() || over) {
+                return;
+            }
+
+            for (Connection connection : connections) {
+                int bomb = connection.bombRequested.getAndSet(false) ? Player.INPUT_BOMB : 0;
+                connection.player.setInput(connection.input | bomb);
+            }
+            map.tick(1f / tickRate);
+
+            seq++;
+            MatchProtocol.capture(map, enemies, current);
+            sendSnapshots();
+
+            if (map.isOver()) {
+                over = true;
+                System.out.println("MatchServer: match over, " + (map.isWon() ? "won" : "lost") + " after " + seq + " ticks");
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace(); // An exception would silently cancel the scheduled tick
+        }
+    }
+
+    private void acceptJoiningClients() {
+        Connection connection;
+        while ((connection = joining.poll()) != null) {
+            List<Player> players = map.getPlayers();
+            int index = connections.isEmpty() && players.size() == 1 && !isAssigned(players.get(0)) ? 0 : players.size();
+            if (index >= MatchProtocol.MAX_PLAYERS || over) {
+                System.out.println("MatchServer: rejecting " + connection.socket.getRemoteSocketAddress());
+                closeQuietly(connection);
+                continue;
+            }
+            connection.player = index < players.size() ? players.get(index) : map.addPlayer();
+            connection.player.setInput(0);
+            connection.playerIndex = index;
+
+            packet.reset();
+            packet.writeByte(MatchProtocol.MSG_WELCOME);
+            packet.writeVarInt(index);
+            packet.writeVarInt(tickRate);
+            packet.writeString(map.getTemplate().getPath());
+            packet.writeVarInt(enemies.length);
+            try {
+                connection.bytesSent += packet.writeFrame(connection.out);
+                connection.out.flush();
+            } catch (IOException e) {
+                closeQuietly(connection);
+                continue;
+            }
+            connections.add(connection);
+            Connection reading = connection;
+            Thread reader = new Thread(() -> readInputs(reading), "match-client-" + index);
+            reader.setDaemon(true);
+            reader.start();
+            System.out.println("MatchServer: player " + index + " joined from " + connection.socket.getRemoteSocketAddress());
+        }
+    }
+
+    private boolean isAssigned(Player player) {
+        for (Connection connection : connections) {
+            if (connection.player == player) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void sendSnapshots() {
+        Iterator<Connection> iterator = connections.iterator();
+        while (iterator.hasNext()) {
+            Connection connection = iterator.next();
+            if (connection.closed) {
+                disconnect(connection);
+                iterator.remove();
+                continue;
+            }
+            SnapshotHistory.Entry baseline = connection.history.get(connection.ackedSeq);
+            writeSnapshot(baseline);
+            connection.history.claim(seq).copyFrom(current);
+            try {
+                connection.bytesSent += packet.writeFrame(connection.out);
+                connection.out.flush();
+            } catch (IOException e) {
+                disconnect(connection);
+                iterator.remove();
+            }
+        }
+    }
+
+    /** Encodes the current tick relative to the given baseline into {@link #packet}. */
+    private void writeSnapshot(SnapshotHistory.Entry baseline) {
+        packet.reset();
+        packet.writeByte(MatchProtocol.MSG_SNAPSHOT);
+        packet.writeVarInt(seq);
+        packet.writeVarInt(baseline == null ? 0 : baseline.seq);
+
+        int tileStart = baseline == null ? 0 : baseline.tileChangeCount;
+        packet.writeVarInt(tileStart);
+        packet.writeVarInt(current.tileChangeCount - tileStart);
+        for (int i = tileStart; i < current.tileChangeCount; i++) {
+            packet.writeVarInt(map.getTileChange(i));
+        }
+
+        int eventStart = baseline == null ? 0 : baseline.eventCount;
+        packet.writeVarInt(eventStart);
+        packet.writeVarInt(current.eventCount - eventStart);
+        for (int i = eventStart; i < current.eventCount; i++) {
+            packet.writeByte(map.getEventKind(i));
+            packet.writeVarInt(map.getEventArgument(i, 0));
+            packet.writeVarInt(map.getEventArgument(i, 1));
+            packet.writeVarInt(map.getEventArgument(i, 2));
+        }
+
+        MatchProtocol.writeEntities(packet, current, baseline);
+    }
+
+    private void disconnect(Connection connection) {
+        System.out.println("MatchServer: player " + connection.playerIndex + " left after " + connection.bytesSent + " bytes");
+        connection.player.setInput(0);
+        closeQuietly(connection);
+    }
+
+    private static void closeQuietly(Connection connection) {
+        connection.closed = true;
+        try {
+            connection.socket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+
+    /** Stops the match and disconnects all clients. */
+    @Override
+    public void close() {
+        ticker.shutdown();
+        try {
+            ticker.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (Connection connection : connections) {
+            closeQuietly(connection);
+        }
+        for (Connection connection : joining) {
+            closeQuietly(connection);
+        }
+        map.dispose();
+    }
+
+    /**
+     * Runs a match server until it is killed.
+     * Usage: {@code MatchServer <map file> [port] [tick rate]}
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Usage: MatchServer <map file> [port] [tick rate]");
+            return;
+        }
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        int tickRate = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_TICK_RATE;
+        try (MatchServer server = new MatchServer(MapTemplate.parse(args[0]), port, tickRate)) {
+            server.start();
+            while (!server.isOver()) {
+                Thread.sleep(1000);
+            }
+            Thread.sleep(1000); // Give the clients time to read the final snapshot
+        }
+    }
+}
@@ -18,6 +18,7 @@ import com.badlogic.gdx.utils.ScreenUtils;
 import com.badlogic.gdx.utils.viewport.ScreenViewport;
 import com.badlogic.gdx.utils.viewport.Viewport;
 import de.tum.cit.ase.bomberquest.BomberQuestGame;
+import de.tum.cit.ase.bomberquest.debug.ResourceTracker;
 
 import java.io.IOException;
 
@@ -33,6 +34,8 @@ public class MenuScreen implements Screen {
     private final Stage stage;
     /** The main game instance, used for navigation and accessing global resources. */
     private final BomberQuestGame game;
+    /** Whether the stage has already been disposed. */
+    private boolean disposed;
 
 
     /**
@@ -46,7 +49,7 @@ public class MenuScreen implements Screen {
         camera.zoom = 1.5f; // Set camera zoom for a closer view
 
         Viewport viewport = new ScreenViewport(camera); // Create a viewport with the camera
-        stage = new Stage(viewport, game.getSpriteBatch()); // Create a stage for UI elements
+        stage = ResourceTracker.track(new Stage(viewport, game.getSpriteBatch())); // Create a stage for UI elements
 
         Table table = new Table(); // Table layout for arranging UI components
         table.setFillParent(true); // The table fills the entire screen
@@ -153,7 +156,10 @@ public class MenuScreen implements Screen {
     @Override
     public void dispose() {
         // Dispose of the stage when screen is disposed
-        stage.dispose();
+        if (!disposed) {
+            disposed = true;
+            ResourceTracker.dispose(stage);
+        }
     }
 
     @Override
@@ -174,5 +180,7 @@ public class MenuScreen implements Screen {
 
     @Override
     public void hide() {
+        // A new MenuScreen is created every time the menu is opened, so this one is never shown again
+        dispose();
     }
 }
@@ -0,0 +1,91 @@
+package de.tum.cit.ase.bomberquest.map;
+
+import com.badlogic.gdx.physics.box2d.World;
+
+/**
+ * Moves the player and the enemies around the map and detects when they touch each other,
+ * a power-up or the exit.
+ * Every moving object and every sensor is identified by an integer id handed out by the backend.
+ * Contacts are reported into the map's {@link MapContactListener} queue with the owner objects,
+ * so {@link GameMap} handles them the same way no matter which backend is used.
+ *
+ * There are two implementations, selected per map with the {@code movement} key of the map file:
+ * {@link Box2dMovement} (the default) simulates everything with Box2D,
+ * {@link GridMovement} moves axis-aligned boxes directly against the tile grid without any native calls.
+ */
+public interface MovementBackend {
+
+    /** The player's hitbox: a 0.5 x 0.5 box above and to the right of its position. */
+    int KIND_PLAYER = 0;
+    /** An enemy's hitbox: most of the tile above and to the right of its position. */
+    int KIND_ENEMY = 1;
+
+    /**
+     * Adds a moving object to the simulation.
+     * @param owner The object that owns the hitbox, reported in contacts.
+     * @param kind {@link #KIND_PLAYER} or {@link #KIND_ENEMY}.
+     * @param x The initial x-coordinate.
+     * @param y The initial y-coordinate.
+     * @return The id of the new hitbox.
+     */
+    int addActor(Object owner, int kind, float x, float y);
+
+    /**
+     * Removes a moving object. It stops taking part in contacts right away,
+     * but its resources may only be released after the current step.
+     */
+    void removeActor(int id);
+
+    /** Sets the velocity of a moving object in tiles per second, applied from the next step on. */
+    void setVelocity(int id, float vx, float vy);
+
+    /** Moves a moving object to the given position immediately, e.g. when restoring a saved game. */
+    void setPosition(int id, float x, float y);
+
+    float getX(int id);
+
+    float getY(int id);
+
+    /**
+     * Adds a sensor covering the given tile, which reports contacts with the player only.
+     * @param owner The object that owns the sensor, e.g. a power-up or the exit.
+     * @param active Whether the sensor detects contacts right away.
+     * @return The id of the new sensor.
+     */
+    int addSensor(Object owner, int tileX, int tileY, boolean active);
+
+    /** Switches a sensor on or off. */
+    void setSensorActive(int id, boolean active);
+
+    /** Removes a sensor. */
+    void removeSensor(int id);
+
+    /** Notifies the backend that the wall at the given tile was destroyed and no longer blocks movement. */
+    void removeWall(int x, int y);
+
+    /**
+     * Advances the simulation by the given time, in fixed steps, and reports contacts.
+     * @param frameTime The time since the last call.
+     */
+    void step(float frameTime);
+
+    /**
+     * Copies the complete state of all moving objects and sensors, so the simulation can be rolled back.
+     * @param reuse A state returned by an earlier call whose memory may be reused, or null.
+     * @return The copied state, only meaningful to {@link #restoreState(Object)} of the same backend.
+     * @throws UnsupportedOperationException If the backend cannot be rolled back.
+     */
+    Object saveState(Object reuse);
+
+    /**
+     * Restores a state returned by {@link #saveState(Object)}, including the ids of all objects and sensors.
+     * Walls are not part of the state; the map restores its tiles itself.
+     */
+    void restoreState(Object state);
+
+    /** Returns the Box2D world if this backend uses one, or null. */
+    World getWorld();
+
+    /** Releases all resources of the backend. */
+    void dispose();
+}
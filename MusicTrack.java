@@ -2,6 +2,7 @@ package de.tum.cit.ase.bomberquest.audio;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.audio.Music;
+import de.tum.cit.ase.bomberquest.debug.ResourceTracker;
 
 /**
  * This enum is used to manage the music tracks in the game.
@@ -26,14 +27,14 @@ public enum MusicTrack {
 
     //Constructor for music loop.
     MusicTrack(String fileName, float volume, boolean looping) {
-        this.music = Gdx.audio.newMusic(Gdx.files.internal("audio/" + fileName));
+        this.music = ResourceTracker.track(Gdx.audio.newMusic(Gdx.files.internal("audio/" + fileName)));
         this.music.setLooping(looping);
         this.music.setVolume(volume);
     }
 
     //Constructor for music doesn't loop. （Method Overloading)
     MusicTrack(String fileName, float volume ) {
-        this.music = Gdx.audio.newMusic(Gdx.files.internal("audio/" + fileName));
+        this.music = ResourceTracker.track(Gdx.audio.newMusic(Gdx.files.internal("audio/" + fileName)));
         this.music.setLooping(false);
         this.music.setVolume(volume);
     }
@@ -0,0 +1,64 @@
+package de.tum.cit.ase.bomberquest.net;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads one message of the match protocol, see {@link PacketWriter}.
+ */
+public final class PacketReader {
+
+    private final byte[] buffer;
+    private int position;
+
+    public PacketReader(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Reads one frame written by {@link PacketWriter#writeFrame(DataOutputStream)}, blocking until it is complete.
+     * @param in The stream to read from.
+     * @return The message.
+     * @throws IOException If reading fails or the stream ends.
+     */
+    public static byte[] readFrame(DataInputStream in) throws IOException {
+        byte[] frame = new byte[in.readUnsignedShort()];
+        in.readFully(frame);
+        return frame;
+    }
+
+    public int readByte() throws IOException {
+        if (position >= buffer.length) {
+            throw new IOException("Message ends unexpectedly");
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    public int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number");
+    }
+
+    public int readSignedVarInt() throws IOException {
+        int value = readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public String readString() throws IOException {
+        int length = readVarInt();
+        if (length > buffer.length - position) {
+            throw new IOException("Message ends unexpectedly");
+        }
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+}
@@ -0,0 +1,81 @@
+package de.tum.cit.ase.bomberquest.net;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds one message of the match protocol in a reusable buffer.
+ * Numbers are written as variable-length integers, so the small values that make up most of a snapshot
+ * (tile indices, position deltas, counts) only take one or two bytes.
+ */
+public final class PacketWriter {
+
+    private byte[] buffer = new byte[256];
+    private int length;
+
+    /** Starts a new message, keeping the buffer. */
+    public void reset() {
+        length = 0;
+    }
+
+    /** Returns the number of bytes written since the last {@link #reset()}. */
+    public int getLength() {
+        return length;
+    }
+
+    /** Returns a copy of the bytes written since the last {@link #reset()}. */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    public void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[length++] = (byte) value;
+    }
+
+    /** Writes a non-negative number, 7 bits per byte. */
+    public void writeVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+    }
+
+    /** Writes a number that may be negative, zig-zag encoded so small negative numbers stay short. */
+    public void writeSignedVarInt(int value) {
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    public void writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    /**
+     * Sends the message as one frame: its length as an unsigned short, followed by the message.
+     * @param out The stream to write to; it is not flushed.
+     * @return The number of bytes sent, including the length.
+     * @throws IOException If writing fails.
+     */
+    public int writeFrame(DataOutputStream out) throws IOException {
+        if (length > 0xFFFF) {
+            throw new IOException("Message too large: " + length + " bytes");
+        }
+        out.writeShort(length);
+        out.write(buffer, 0, length);
+        return 2 + length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+}
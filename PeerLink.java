@@ -0,0 +1,14 @@
+package de.tum.cit.ase.bomberquest.net;
+
+/**
+ * An ordered, reliable message channel to the other peer of a {@link RollbackSession}.
+ * Implementations must not block: messages that have not arrived yet are simply not returned by {@link #poll()}.
+ */
+public interface PeerLink {
+
+    /** Sends a message to the other peer. The array must not be changed afterwards. */
+    void send(byte[] message);
+
+    /** Returns the next message that has arrived, or null if there is none. */
+    byte[] poll();
+}
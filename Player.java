@@ -5,14 +5,17 @@ import com.badlogic.gdx.Input;
 import com.badlogic.gdx.graphics.g2d.Animation;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.Vector2;
-import com.badlogic.gdx.physics.box2d.*;
-import de.tum.cit.ase.bomberquest.audio.MusicTrack;
+import de.tum.cit.ase.bomberquest.debug.Log;
 import de.tum.cit.ase.bomberquest.screen.CountdownTimer;
 import de.tum.cit.ase.bomberquest.screen.VictoryAndGameOverScreen;
 import de.tum.cit.ase.bomberquest.texture.Animations;
 import de.tum.cit.ase.bomberquest.texture.Drawable;
 import de.tum.cit.ase.bomberquest.texture.Textures;
 
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Represents the player character in the game.
  * The player has a hitbox, so it can collide with other objects in the game.
@@ -20,10 +23,24 @@ import de.tum.cit.ase.bomberquest.texture.Textures;
  */
 public class Player  extends  GameObject {
 
+    /** Input bit: walk left. Input bits are combined into the mask passed to {@link #setInput(int)}. */
+    public static final int INPUT_LEFT = 1;
+    /** Input bit: walk right. */
+    public static final int INPUT_RIGHT = 1 << 1;
+    /** Input bit: walk up. */
+    public static final int INPUT_UP = 1 << 2;
+    /** Input bit: walk down. */
+    public static final int INPUT_DOWN = 1 << 3;
+    /** Input bit: place a bomb. */
+    public static final int INPUT_BOMB = 1 << 4;
+
+    /** The drawn part of every animation frame, cut once, since the appearance is looked up every tick. */
+    private static final Map<TextureRegion, TextureRegion> croppedFrames = new ConcurrentHashMap<>();
+
     /** Total time elapsed since the game started. We use this for calculating the player movement and animating it. */
     private float elapsedTime;
-    /** The Box2D hitbox of the player, used for position and collision detection. */
-    private Body hitbox;
+    /** The id of the player's hitbox in the map's {@link MovementBackend}, used for position and collision detection. */
+    private final int moverId;
     /** Reference to the game map, contains information about the environment. */
     private final GameMap map;
     /** Maximum number of bombs the player can place at once. */
@@ -32,57 +49,32 @@ public class Player  extends  GameObject {
     private int bombsPlaced = 0;
     /** Boolean flag to check if the player is still alive. */
     private boolean alive = true;
+    /** Whether the player currently touches the exit sensor, so the exit works even if it unlocks under the player. */
+    private boolean onExit = false;
+    /**
+     * Whether the player is steered by {@link #setInput(int)}, e.g. by the game screen's input queue or a match
+     * client, instead of polling the keyboard.
+     */
+    private boolean remoteControlled = false;
+    /** The last input mask passed to {@link #setInput(int)}. */
+    private int input;
 //    private Animation<TextureRegion> currentAppearance = Animations.CHARACTER_WALK_DOWN;
 
 
     // Reset player velocities.
     float yVelocity;
     float xVelocity;
-    // The physics world where the player exists.
-    World world;
 
     /**
      * Constructor for creating a Player object.
-     * @param world The Box2D world where the player will interact.
      * @param x The initial x position of the player.
      * @param y The initial y position of the player.
      * @param map The game map which contains the game environment.
      */
-    public Player(World world, float x, float y, GameMap map) {
+    public Player(float x, float y, GameMap map) {
         super(x, y);  // Calls the superclass constructor to set the x, y position.
-        Vector2 entrance = map.getEntrance(); // Retrieves the entrance location from the map.
-        this.world = world; // Sets the world where the player interacts.
-        this.hitbox = createHitbox(world, x, y); // Creates a hitbox for the player for collisions.
         this.map = map;// Sets the game map for the player.
-    }
-
-    /**
-     * Creates a Box2D body for the player.
-     * This is what the physics engine uses to move the player around and detect collisions with other bodies.
-     * @param world The Box2D world to add the body to.
-     * @param startX The initial X position.
-     * @param startY The initial Y position.
-     * @return The created body.
-     */
-    private Body createHitbox(World world, float startX, float startY) {
-        // BodyDef is like a blueprint for the movement properties of the body.
-        BodyDef bodyDef = new BodyDef();
-        // Dynamic bodies are affected by forces and collisions.
-        bodyDef.type = BodyDef.BodyType.DynamicBody;
-        // Set the initial position of the body.
-        bodyDef.position.set(startX, startY);
-        // Create the body in the world using the body definition.
-        Body body = world.createBody(bodyDef);
-        // Now we need to give the body a shape so the physics engine knows how to collide with it.
-        // We'll use a circle shape for the player.
-        CircleShape circle = new CircleShape();
-        circle.setRadius(0.3f);
-        //Add a fixture to the body of the object using the circle created earlier and density 1.0.
-        // Fixtures are used to define the physical properties of an object, such as shape, density, coefficient of friction, etc.
-        body.createFixture(circle, 1.0f);
-
-        body.setUserData(this);// Links the player object to the body for retrieval in collisions.
-        return body; // Returns the created body.
+        this.moverId = map.getMovement().addActor(this, MovementBackend.KIND_PLAYER, x, y); // Creates a hitbox for the player for collisions.
     }
 
     /**
@@ -91,8 +83,12 @@ public class Player  extends  GameObject {
      * @return Vector2 containing the x and y coordinates of the hitbox.
      */
     public Vector2 getPosition() {
-        return hitbox.getPosition();//The hitbox belongs to the Body class, and the Body class provides getPosition().
+        return new Vector2(getX(), getY());
+    }
 
+    /** Returns the id of the player's hitbox in the map's {@link MovementBackend}. */
+    public int getMoverId() {
+        return moverId;
     }
     /**
      * Move the player around in a circle by updating the linear velocity of its hitbox every frame.
@@ -108,42 +104,65 @@ public class Player  extends  GameObject {
          yVelocity = 0.0f;
 
         // Check input and adjust velocities.
-        if (Gdx.input.isKeyPressed(Input.Keys.LEFT)) {
+        int mask = remoteControlled ? input : readKeyboard();
+        if ((mask & INPUT_LEFT) != 0) {
             xVelocity = -inputSpeed;
-//            setCurrentAppearance(Animations.CHARACTER_WALK_LEFT);
-        } else if (Gdx.input.isKeyPressed(Input.Keys.RIGHT)) {
+        } else if ((mask & INPUT_RIGHT) != 0) {
             xVelocity = inputSpeed;
-//            setCurrentAppearance(Animations.CHARACTER_WALK_RIGHT);
         }
 
-        if (Gdx.input.isKeyPressed(Input.Keys.UP)) {
+        if ((mask & INPUT_UP) != 0) {
             yVelocity = inputSpeed;
-//            setCurrentAppearance(Animations.CHARACTER_WALK_UP);
-        } else if (Gdx.input.isKeyPressed(Input.Keys.DOWN)) {
+        } else if ((mask & INPUT_DOWN) != 0) {
             yVelocity = -inputSpeed;
-//            setCurrentAppearance(Animations.CHARACTER_WALK_DOWN);
         }
 
-       // Only update the speed when at least one directional key is pressed
-        if (!Gdx.input.isKeyPressed(Input.Keys.LEFT) && !Gdx.input.isKeyPressed(Input.Keys.RIGHT) &&
-                !Gdx.input.isKeyPressed(Input.Keys.UP) && !Gdx.input.isKeyPressed(Input.Keys.DOWN)) {
-            xVelocity = 0;
-            yVelocity = 0;
+        // Bombs are placed at the start of the tick, before the physics step
+        if ((mask & INPUT_BOMB) != 0) {
+            input &= ~INPUT_BOMB; // One bomb per key press
+            placeBomb();
         }
 
-        // Calculate target position for the player based on current position and velocity.
-        frameTime = 0.2f;// Set the frame time interval.
-        float targetX = this.getX() + xVelocity * frameTime;// Target x-coordinate after moving.
-        float targetY = this.getY() + yVelocity * frameTime;// Target y-coordinate after moving.
+        // The movement backend stops the player at walls and lets it slide along them.
+        map.getMovement().setVelocity(moverId, xVelocity, yVelocity);
+    }
 
-        // Check if the target position is passable on the map.
-        if (map.isPassablePlayer(targetX, targetY)) {
-            // If the position is passable, set the hitbox's linear velocity to continue movement.
-            hitbox.setLinearVelocity(xVelocity, yVelocity);
-        } else {
-            // If the position is not passable, stop the player's movement by setting velocity to zero.
-            this.hitbox.setLinearVelocity(0, 0);
-        }
+    /**
+     * Steers the player with an input mask instead of the keyboard from now on, e.g. from an {@code InputQueue}
+     * or on a match server.
+     * @param mask A combination of the {@code INPUT_} bits; {@link #INPUT_BOMB} places one bomb on the next tick.
+     */
+    public void setInput(int mask) {
+        this.remoteControlled = true;
+        this.input = mask;
+    }
+
+    /**
+     * Reads the arrow keys and the space key into an input mask.
+     * @return A combination of the {@code INPUT_} bits.
+     */
+    public static int readKeyboard() {
+        int mask = 0;
+        if (Gdx.input.isKeyPressed(Input.Keys.LEFT)) mask |= INPUT_LEFT;
+        if (Gdx.input.isKeyPressed(Input.Keys.RIGHT)) mask |= INPUT_RIGHT;
+        if (Gdx.input.isKeyPressed(Input.Keys.UP)) mask |= INPUT_UP;
+        if (Gdx.input.isKeyPressed(Input.Keys.DOWN)) mask |= INPUT_DOWN;
+        if (Gdx.input.isKeyJustPressed(Input.Keys.SPACE)) mask |= INPUT_BOMB;
+        return mask;
+    }
+
+    /**
+     * Sets the velocity that selects the walking animation, for players that are moved from outside,
+     * e.g. by the snapshots of a match server, and never tick themselves.
+     */
+    public void setAnimationVelocity(float xVelocity, float yVelocity) {
+        this.xVelocity = xVelocity;
+        this.yVelocity = yVelocity;
+    }
+
+    /** Advances the walking animation of a player that is moved from outside, see {@link #setAnimationVelocity}. */
+    public void animate(float frameTime) {
+        this.elapsedTime += frameTime;
     }
 
     // Determines animation frame based on velocity comparisons, using absolute values for direction.
@@ -168,13 +187,16 @@ public class Player  extends  GameObject {
             }
         }
 
-        TextureRegion changed = new TextureRegion();
-        changed.setRegion(textureRegion, 0, 6, 16, 20);// Sets the texture region to be drawn.
-
-        return  changed;// Returns the final selected frame for rendering.
+        return croppedFrames.computeIfAbsent(textureRegion, Player::crop);// Returns the final selected frame for rendering.
 //        return currentAppearance.getKeyFrame(elapsedTime, true);
     }
 
+    private static TextureRegion crop(TextureRegion frame) {
+        TextureRegion changed = new TextureRegion();
+        changed.setRegion(frame, 0, 6, 16, 20);// Sets the texture region to be drawn.
+        return changed;
+    }
+
 //    public void setCurrentAppearance(Animation<TextureRegion> currentAppearance) {
 //        this.currentAppearance = currentAppearance;
 //    }
@@ -182,13 +204,13 @@ public class Player  extends  GameObject {
     @Override
     public float getX() {
         // The x-coordinate of the player is the x-coordinate of the hitbox (this can change every frame).
-        return hitbox.getPosition().x;
+        return map.getMovement().getX(moverId);
     }
 
     @Override
     public float getY() {
         // The y-coordinate of the player is the y-coordinate of the hitbox (this can change every frame).
-        return hitbox.getPosition().y;
+        return map.getMovement().getY(moverId);
     }
 
     @Override
@@ -210,6 +232,60 @@ public class Player  extends  GameObject {
         }
     }
 
+    public boolean isAlive() {
+        return alive;
+    }
+
+    public boolean isOnExit() {
+        return onExit;
+    }
+
+    public void setOnExit(boolean onExit) {
+        this.onExit = onExit;
+    }
+
+    /** The number of bytes {@link #writeSnapshot(ByteBuffer)} writes. */
+    static final int SNAPSHOT_SIZE = 4 * 5 + 4 * 4 + 1;
+
+    /** Writes every field that influences later ticks, plus the position for checksums, see {@link MapSnapshot}. */
+    void writeSnapshot(ByteBuffer out) {
+        out.putFloat(elapsedTime).putFloat(xVelocity).putFloat(yVelocity).putFloat(getX()).putFloat(getY());
+        out.putInt(bombLimit).putInt(bombsPlaced).putInt(blastRadius).putInt(input);
+        out.put((byte) ((alive ? 1 : 0) | (onExit ? 2 : 0) | (remoteControlled ? 4 : 0)));
+    }
+
+    /** Reads the fields written by {@link #writeSnapshot(ByteBuffer)}; the position is restored by the movement backend. */
+    void readSnapshot(ByteBuffer in) {
+        elapsedTime = in.getFloat();
+        xVelocity = in.getFloat();
+        yVelocity = in.getFloat();
+        in.getFloat();
+        in.getFloat();
+        bombLimit = in.getInt();
+        bombsPlaced = in.getInt();
+        blastRadius = in.getInt();
+        input = in.getInt();
+        int flags = in.get();
+        alive = (flags & 1) != 0;
+        onExit = (flags & 2) != 0;
+        remoteControlled = (flags & 4) != 0;
+    }
+
+    /**
+     * Restores the player's position and power-up stats, e.g. when a saved game is loaded.
+     * @param x The x-coordinate of the player.
+     * @param y The y-coordinate of the player.
+     * @param blastRadius The blast radius of the player's bombs.
+     * @param bombLimit The number of bombs the player can place at once.
+     * @param bombsPlaced The number of the player's bombs that are still ticking.
+     */
+    public void restore(float x, float y, int blastRadius, int bombLimit, int bombsPlaced) {
+        map.getMovement().setPosition(moverId, x, y);
+        this.blastRadius = blastRadius;
+        this.bombLimit = bombLimit;
+        this.bombsPlaced = bombsPlaced;
+    }
+
 
     //Bomb
     public int getBombLimit() {
@@ -222,11 +298,11 @@ public class Player  extends  GameObject {
 
     public void placeBomb() {
         try {// Calculate the integer position where the bomb will be placed based on the player's current position.
-            int bombX = (int)  Math.floor(hitbox.getPosition().x);
-            int bombY = (int) Math.floor (hitbox.getPosition().y);
+            int bombX = (int)  Math.floor(getX());
+            int bombY = (int) Math.floor (getY());
 
             // Print statement for debugging, indicating where the bomb is being attempted to place.
-            System.out.println("Attempting to place bomb at: " + bombX + ", " + bombY + ", bombsPlaced is " + bombsPlaced);
+            Log.debug("Attempting to place bomb at: {}, {}, bombsPlaced is {}", bombX, bombY, bombsPlaced);
 
             // Check if the bomb can be placed at the calculated position and if the number of placed bombs is within the limit.
             if (bombsPlaced < bombLimit && !map.hasBombAt(bombX, bombY)) {
@@ -235,17 +311,15 @@ public class Player  extends  GameObject {
                 Bomb bomb = new Bomb(
                         bombX,// X coordinate of the bomb placement
                         bombY, // Y coordinate of the bomb placement
-                        Textures.BOMB,// Texture for the bomb
                         map, // The map where the bomb is placed
-                        blastRadius// Blast radius of the bomb
+                        this// The bomb explodes with this player's blast radius
                 );
                 // Add the bomb to the map.
                 map.addBomb(bomb);
                 // Increment the counter for the number of bombs placed.
                 bombsPlaced++;
                 // Print statement for debugging, confirming the bomb placement.
-                System.out.println("Bomb placed successfully!");
-                MusicTrack.DROP.play();// Play the bomb drop sound effect.
+                Log.debug("Bomb placed successfully!");
             }
         }catch (Exception e) {
             // Print stack trace if there is an exception during bomb placement.
@@ -260,18 +334,9 @@ public class Player  extends  GameObject {
         if(bombsPlaced > 0){
             bombsPlaced--;// Decrease the count of bombs placed by the player
         }
-        System.out.println("Attempting to remove bomb, bombsPlaced is " + bombsPlaced);// Debugging output
+        Log.debug("Attempting to remove bomb, bombsPlaced is {}", bombsPlaced);// Debugging output
     }
 
-    /**
-     * Handles input from the player, specifically checking for the press of the space key to place a bomb.
-     */
-    public void handleInput() {
-        if (Gdx.input.isKeyJustPressed(Input.Keys.SPACE)) {
-            System.out.println("SPACE key pressed!");// Debugging output
-            placeBomb(); // Calls the placeBomb method to attempt to place a bomb
-        }
-    }
 
 
     // Power-up functionalities for the player.
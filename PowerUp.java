@@ -1,7 +1,6 @@
 package de.tum.cit.ase.bomberquest.map;
 
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
-import de.tum.cit.ase.bomberquest.audio.MusicTrack;
 import de.tum.cit.ase.bomberquest.screen.CountdownTimer;
 import de.tum.cit.ase.bomberquest.texture.Drawable;
 import de.tum.cit.ase.bomberquest.texture.Textures;
@@ -18,6 +17,8 @@ public class PowerUp implements Drawable{
     private final float y;
     /** The type of Power-Up (e.g., increased blast radius or additional bomb placement). */
     private PowerUpType type;
+    /** Id of the sensor (see {@link MovementBackend}) that detects the player walking over the power-up. It stays inactive while the power-up is hidden. */
+    private int sensorId = -1;
 
     public PowerUp(float x, float y, PowerUpType type) {
         this.x = x;
@@ -38,12 +39,11 @@ public class PowerUp implements Drawable{
     /**
      * Applies the Power-Up effect to the player.
      * When the player collects the Power-Up, it grants a permanent upgrade.
+     * The collection sound is played by the {@link GameMap}, which knows whether there is anything to play it on.
      *
      * @param player The player who collects the Power-Up.
      */
     public void applyEffect(Player player) {
-        MusicTrack.COLLECT.play();// Play collection sound effect
-
         switch (type) {
             case BLAST_RADIUS:
                 player.increaseBlastRadius();// Increase the player's bomb blast radius
@@ -61,6 +61,14 @@ public class PowerUp implements Drawable{
         }
     }
 
+    public int getSensorId() {
+        return sensorId;
+    }
+
+    public void setSensorId(int sensorId) {
+        this.sensorId = sensorId;
+    }
+
     public PowerUpType getType() {
         return type;
     }
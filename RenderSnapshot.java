@@ -0,0 +1,270 @@
+package de.tum.cit.ase.bomberquest.screen;
+
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import de.tum.cit.ase.bomberquest.map.Bomb;
+import de.tum.cit.ase.bomberquest.map.Direction;
+import de.tum.cit.ase.bomberquest.map.Enemy;
+import de.tum.cit.ase.bomberquest.map.GameMap;
+import de.tum.cit.ase.bomberquest.map.MapTemplate;
+import de.tum.cit.ase.bomberquest.map.Player;
+import de.tum.cit.ase.bomberquest.map.PowerUp;
+import de.tum.cit.ase.bomberquest.map.Wall;
+import de.tum.cit.ase.bomberquest.texture.Drawable;
+import de.tum.cit.ase.bomberquest.texture.Textures;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Everything the game screen needs to draw one state of a {@link GameMap}, copied out of the map so the map can be
+ * ticked on another thread while the copy is drawn, see {@link SimulationThread}.
+ *
+ * A snapshot holds the tiles of the walls and a list of sprites: the texture region that was current when the
+ * snapshot was taken and where to draw it. The arrays are reused and only grow, and the tiles are brought up to date
+ * from the map's log of destroyed walls, so taking a snapshot does not allocate once the arrays are big enough and
+ * every explosion frame has been cut into its parts.
+ */
+public final class RenderSnapshot {
+
+    private static final int SIZE = GameScreen.TILE_SIZE_PX * GameScreen.SCALE;
+    /** The parts of the explosion animation frames, see {@link #addExplosion(Bomb, TextureRegion)}. */
+    private static final Map<TextureRegion, TextureRegion[]> explosionParts = new ConcurrentHashMap<>();
+    private static final int PART_CENTER = 0;
+    private static final int PART_UP = 1;
+    private static final int PART_DOWN = 2;
+    private static final int PART_LEFT = 3;
+    private static final int PART_RIGHT = 4;
+
+    /** Increases with every snapshot taken, so the reader can tell a newer one. */
+    volatile long sequence;
+
+    private int width;
+    private int height;
+    /** The tile of every position (see the {@code TILE_} constants of {@link MapTemplate}), indexed by y * width + x. */
+    private byte[] tiles;
+    /** The number of the map's destroyed walls already applied to the tiles. */
+    private int tileChanges;
+
+    private TextureRegion[] regions = new TextureRegion[64];
+    /** x, y, width and height of every sprite in pixels. */
+    private float[] bounds = new float[64 * 4];
+    private int spriteCount;
+    /** The sprites before this index are drawn below the walls. */
+    private int wallLayer;
+
+    private float playerX;
+    private float playerY;
+    private int enemyCount;
+    private int bombCount;
+    private int powerUpCount;
+
+    /**
+     * Copies the current state of a map, on the thread that ticks it.
+     * @param map The map; must be the same map every time.
+     */
+    public void capture(GameMap map) {
+        captureTiles(map);
+        spriteCount = 0;
+        // Indexed loops, since iterators would allocate every tick
+        List<PowerUp> powerUps = map.getPowerUps();
+        for (int i = 0; i < powerUps.size(); i++) {
+            add(powerUps.get(i));
+        }
+        add(map.getExit());
+        wallLayer = spriteCount;
+        List<Enemy> enemies = map.getEnemies();
+        for (int i = 0; i < enemies.size(); i++) {
+            add(enemies.get(i));
+        }
+        List<Bomb> bombs = map.getBombs();
+        for (int i = 0; i < bombs.size(); i++) {
+            Bomb bomb = bombs.get(i);
+            if (bomb.getExplosionTimer() < 0.8f) {
+                addExplosion(bomb, bomb.getCurrentAppearance());
+            } else {
+                add(bomb);
+            }
+        }
+        Player player = map.getPlayer();
+        TextureRegion appearance = player.getCurrentAppearance();
+        if (appearance != null) {
+            addSprite(appearance, player.getX() * SIZE, player.getY() * SIZE, 8 * GameScreen.SCALE, 13 * GameScreen.SCALE);
+        }
+        playerX = player.getX();
+        playerY = player.getY();
+        enemyCount = map.getEnemies().size();
+        bombCount = map.getBombs().size();
+        powerUpCount = map.getPowerUpCount();
+    }
+
+    /** Applies the walls destroyed since the last capture, or copies all tiles the first time. */
+    private void captureTiles(GameMap map) {
+        if (tiles == null || map.getTileChangeCount() < tileChanges) {
+            width = map.getWidth();
+            height = map.getHeight();
+            tiles = new byte[width * height];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    Wall wall = map.getWallAt(x, y);
+                    tiles[y * width + x] = wall == null ? MapTemplate.TILE_FREE
+                            : wall.isDestructible() ? MapTemplate.TILE_DESTRUCTIBLE : MapTemplate.TILE_INDESTRUCTIBLE;
+                }
+            }
+            tileChanges = map.getTileChangeCount();
+        }
+        for (; tileChanges < map.getTileChangeCount(); tileChanges++) {
+            tiles[map.getTileChange(tileChanges)] = MapTemplate.TILE_FREE;
+        }
+    }
+
+    private void add(Drawable drawable) {
+        TextureRegion texture = drawable.getCurrentAppearance();
+        if (texture == null) {
+            return;
+        }
+        addSprite(texture, drawable.getX() * SIZE, drawable.getY() * SIZE,
+                texture.getRegionWidth() * GameScreen.SCALE, texture.getRegionHeight() * GameScreen.SCALE);
+    }
+
+    /** Adds the center of an explosion and its rays, as far as the blast reaches in every direction. */
+    private void addExplosion(Bomb bomb, TextureRegion texture) {
+        if (texture == null) {
+            return;
+        }
+        TextureRegion[] parts = explosionParts.computeIfAbsent(texture, RenderSnapshot::splitExplosion);
+        float x = bomb.getX() * SIZE;
+        float y = bomb.getY() * SIZE;
+        addSprite(parts[PART_CENTER], x, y, SIZE, SIZE);
+        int up = bomb.getBlastRadius(Direction.UP);
+        for (int i = 0; i < up; i++) {
+            addSprite(parts[PART_UP], x, y + SIZE * i + SIZE, SIZE, SIZE);
+        }
+        int down = bomb.getBlastRadius(Direction.DOWN);
+        for (int i = 0; i < down; i++) {
+            addSprite(parts[PART_DOWN], x, y - SIZE * i - SIZE, SIZE, SIZE);
+        }
+        int left = bomb.getBlastRadius(Direction.LEFT);
+        for (int i = 0; i < left; i++) {
+            addSprite(parts[PART_LEFT], x - SIZE * i - SIZE, y, SIZE, SIZE);
+        }
+        int right = bomb.getBlastRadius(Direction.RIGHT);
+        for (int i = 0; i < right; i++) {
+            addSprite(parts[PART_RIGHT], x + SIZE * i + SIZE, y, SIZE, SIZE);
+        }
+    }
+
+    /** Cuts an explosion frame into its center and the rays in the four directions. */
+    private static TextureRegion[] splitExplosion(TextureRegion texture) {
+        TextureRegion[] parts = new TextureRegion[5];
+        parts[PART_CENTER] = new TextureRegion(texture, 32, 32, 16, 16);
+        parts[PART_UP] = new TextureRegion(texture, 32, 16, 16, 16);
+        parts[PART_DOWN] = new TextureRegion(texture, 32, 48, 16, 16);
+        parts[PART_LEFT] = new TextureRegion(texture, 16, 32, 16, 16);
+        parts[PART_RIGHT] = new TextureRegion(texture, 48, 32, 16, 16);
+        return parts;
+    }
+
+    private void addSprite(TextureRegion region, float x, float y, float spriteWidth, float spriteHeight) {
+        if (spriteCount == regions.length) {
+            regions = Arrays.copyOf(regions, spriteCount * 2);
+            bounds = Arrays.copyOf(bounds, spriteCount * 2 * 4);
+        }
+        regions[spriteCount] = region;
+        int offset = spriteCount * 4;
+        bounds[offset] = x;
+        bounds[offset + 1] = y;
+        bounds[offset + 2] = spriteWidth;
+        bounds[offset + 3] = spriteHeight;
+        spriteCount++;
+    }
+
+    /**
+     * Draws the snapshot, on the GL thread, between {@code begin()} and {@code end()} of the batch.
+     * The flowers under the map never change, so they are drawn by the screen before this.
+     */
+    public void draw(SpriteBatch spriteBatch) {
+        drawSprites(spriteBatch, 0, wallLayer);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                byte tile = tiles[y * width + x];
+                if (tile == MapTemplate.TILE_INDESTRUCTIBLE) {
+                    spriteBatch.draw(Textures.INDESTRUCTIBLE_WALL, x * SIZE, y * SIZE,
+                            Textures.INDESTRUCTIBLE_WALL.getRegionWidth() * GameScreen.SCALE,
+                            Textures.INDESTRUCTIBLE_WALL.getRegionHeight() * GameScreen.SCALE);
+                } else if (tile == MapTemplate.TILE_DESTRUCTIBLE) {
+                    spriteBatch.draw(Textures.DESTRUCTIBLE_WALL, x * SIZE, y * SIZE,
+                            Textures.DESTRUCTIBLE_WALL.getRegionWidth() * GameScreen.SCALE,
+                            Textures.DESTRUCTIBLE_WALL.getRegionHeight() * GameScreen.SCALE);
+                }
+            }
+        }
+        drawSprites(spriteBatch, wallLayer, spriteCount);
+    }
+
+    private void drawSprites(SpriteBatch spriteBatch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int offset = i * 4;
+            spriteBatch.draw(regions[i], bounds[offset], bounds[offset + 1], bounds[offset + 2], bounds[offset + 3]);
+        }
+    }
+
+    /** Returns whether anything was captured yet. */
+    public boolean isEmpty() {
+        return tiles == null;
+    }
+
+    /** Returns the x-coordinate of the player in tiles. */
+    public float getPlayerX() {
+        return playerX;
+    }
+
+    /** Returns the y-coordinate of the player in tiles. */
+    public float getPlayerY() {
+        return playerY;
+    }
+
+    public int getEnemyCount() {
+        return enemyCount;
+    }
+
+    public int getBombCount() {
+        return bombCount;
+    }
+
+    public int getPowerUpCount() {
+        return powerUpCount;
+    }
+
+    /**
+     * Appends a text picture of the snapshot like {@link GameMap#describeState(StringBuilder)}, for the flight
+     * recorder of the GL thread, which must not look at the map while it is ticked. Only the tiles around the player
+     * are shown, and only the walls, since the sprites are not kept by tile.
+     */
+    public void describeState(StringBuilder out) {
+        int centerX = (int) Math.floor(playerX);
+        int centerY = (int) Math.floor(playerY);
+        int left = Math.max(0, centerX - GameMap.DESCRIBE_RADIUS);
+        int bottom = Math.max(0, centerY - GameMap.DESCRIBE_RADIUS);
+        int right = Math.min(width - 1, centerX + GameMap.DESCRIBE_RADIUS);
+        int top = Math.min(height - 1, centerY + GameMap.DESCRIBE_RADIUS);
+        out.append(width).append('x').append(height)
+                .append(" player=").append(playerX).append(',').append(playerY)
+                .append(" enemies=").append(enemyCount)
+                .append(" bombs=").append(bombCount)
+                .append(" powerups=").append(powerUpCount)
+                .append(" sprites=").append(spriteCount)
+                .append(" tiles=").append(left).append(',').append(bottom)
+                .append('-').append(right).append(',').append(top)
+                .append('\n');
+        for (int y = top; y >= bottom; y--) {
+            for (int x = left; x <= right; x++) {
+                byte tile = tiles[y * width + x];
+                out.append(tile == MapTemplate.TILE_INDESTRUCTIBLE ? '#' : tile == MapTemplate.TILE_DESTRUCTIBLE ? '+' : '.');
+            }
+            out.append('\n');
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package de.tum.cit.ase.bomberquest.debug;
+
+import com.badlogic.gdx.utils.Disposable;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Debug-mode registry of native resources (textures, fonts, sprite batches, stages, Box2D worlds, ...).
+ * Every tracked resource remembers the stack trace of the place where it was created,
+ * so resources that are never disposed can be traced back to the code that leaks them.
+ * Tracking is only active when the game is started with {@code -Dbomberquest.trackResources=true};
+ * otherwise all methods return immediately and nothing is recorded.
+ */
+public final class ResourceTracker {
+
+    /** Whether resource tracking is enabled for this run. */
+    public static final boolean ENABLED = Boolean.getBoolean("bomberquest.trackResources");
+
+    /** All live resources, mapped to the stack trace of their creation. Guarded by the class lock. */
+    private static final Map<Object, Throwable> live = new IdentityHashMap<>();
+    /** The number of resources created and disposed per type, for the summary. */
+    private static final Map<String, int[]> totals = new TreeMap<>();
+
+    private ResourceTracker() {
+    }
+
+    /**
+     * Registers a newly created resource.
+     * @param resource The resource, usually something {@link Disposable}.
+     * @return The same resource, so creation sites can be wrapped: {@code batch = track(new SpriteBatch())}.
+     */
+    public static <T> T track(T resource) {
+        if (!ENABLED || resource == null) {
+            return resource;
+        }
+        synchronized (ResourceTracker.class) {
+            if (live.put(resource, new Throwable("Allocation of " + kindOf(resource))) == null) {
+                totals.computeIfAbsent(kindOf(resource), k -> new int[2])[0]++;
+            }
+        }
+        return resource;
+    }
+
+    /**
+     * Marks a resource as disposed. Call this right after disposing it.
+     * @param resource The resource that was disposed.
+     */
+    public static void disposed(Object resource) {
+        if (!ENABLED || resource == null) {
+            return;
+        }
+        synchronized (ResourceTracker.class) {
+            if (live.remove(resource) != null) {
+                totals.computeIfAbsent(kindOf(resource), k -> new int[2])[1]++;
+            }
+        }
+    }
+
+    /**
+     * Disposes a resource and removes it from the registry.
+     * @param resource The resource to dispose, may be null.
+     */
+    public static void dispose(Disposable resource) {
+        if (resource == null) {
+            return;
+        }
+        resource.dispose();
+        disposed(resource);
+    }
+
+    /**
+     * Prints the number of live resources per type.
+     * Called on every screen transition, so a count that keeps growing points to a leak.
+     * @param reason What happened, e.g. the screen that is being switched to.
+     */
+    public static synchronized void printLiveCounts(String reason) {
+        if (!ENABLED) {
+            return;
+        }
+        Map<String, Integer> counts = new TreeMap<>();
+        for (Object resource : live.keySet()) {
+            counts.merge(kindOf(resource), 1, Integer::sum);
+        }
+        StringBuilder out = new StringBuilder("ResourceTracker [").append(reason).append("] live:");
+        for (Map.Entry<String, int[]> entry : totals.entrySet()) {
+            out.append(' ').append(entry.getKey()).append('=').append(counts.getOrDefault(entry.getKey(), 0))
+                    .append(" (created ").append(entry.getValue()[0])
+                    .append(", disposed ").append(entry.getValue()[1]).append(')');
+        }
+        System.out.println(out);
+    }
+
+    /**
+     * Prints the allocation stack trace of every live resource of the given type.
+     * @param kind The simple class name, e.g. "BitmapFont", or null for all types.
+     */
+    public static synchronized void printAllocationSites(String kind) {
+        if (!ENABLED) {
+            return;
+        }
+        for (Map.Entry<Object, Throwable> entry : live.entrySet()) {
+            if (kind == null || kind.equals(kindOf(entry.getKey()))) {
+                entry.getValue().printStackTrace(System.out);
+            }
+        }
+    }
+
+    private static String kindOf(Object resource) {
+        return resource.getClass().getSimpleName();
+    }
+}
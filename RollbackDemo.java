@@ -0,0 +1,106 @@
+package de.tum.cit.ase.bomberquest.net;
+
+import de.tum.cit.ase.bomberquest.map.GameMap;
+import de.tum.cit.ase.bomberquest.map.MapGenerator;
+import de.tum.cit.ase.bomberquest.map.MapSnapshot;
+import de.tum.cit.ase.bomberquest.map.MapTemplate;
+import de.tum.cit.ase.bomberquest.map.Player;
+
+import java.util.SplittableRandom;
+
+/**
+ * Plays a two-player rollback match between stand-in players over a {@link SimulatedLatencyLink}
+ * on simulated time, then checks that both peers and a reference simulation with the true inputs
+ * ended in the same state, and reports how much the rollbacks cost compared to the frame budget.
+ * Nothing is rendered, so this runs without a display.
+ *
+ * Usage: {@code RollbackDemo [round-trip ms] [jitter ms] [seconds] [map size] [seed]}
+ */
+public final class RollbackDemo {
+
+    private static final int TICK_RATE = 60;
+    private static final double FRAME_BUDGET_MILLIS = 1000.0 / TICK_RATE;
+
+    private RollbackDemo() {
+    }
+
+    public static void main(String[] args) {
+        int roundTrip = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int jitter = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+        int size = args.length > 3 ? Integer.parseInt(args[3]) : 21;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+
+        MapGenerator generator = new MapGenerator(size, size, seed);
+        generator.setMovement(GameMap.MOVEMENT_GRID); // Rollback needs the deterministic backend
+        MapTemplate template = generator.generate();
+        float tickTime = 1f / TICK_RATE;
+        int ticks = seconds * TICK_RATE;
+        int[][] inputs = botInputs(2, ticks, seed);
+
+        long[] clock = {0};
+        SimulatedLatencyLink[] links = SimulatedLatencyLink.pair(() -> clock[0], roundTrip, jitter, seed);
+        RollbackSession[] peers = {
+                new RollbackSession(new GameMap(template), links[0], 0, tickTime),
+                new RollbackSession(new GameMap(template), links[1], 1, tickTime)
+        };
+
+        // Every frame, each peer simulates its next tick with the input of that tick, unless it has to wait
+        int frames = 0;
+        while (peers[0].getConfirmedTick() < ticks - 1 || peers[1].getConfirmedTick() < ticks - 1) {
+            clock[0] = frames * 1000L / TICK_RATE;
+            for (int i = 0; i < peers.length; i++) {
+                RollbackSession peer = peers[i];
+                if (peer.getTick() < ticks) {
+                    peer.advance(inputs[i][peer.getTick()]);
+                } else {
+                    peer.receiveInputs();
+                }
+            }
+            frames++;
+        }
+
+        GameMap reference = new GameMap(template);
+        reference.addPlayer();
+        int endTick = -1;
+        for (int t = 0; t < ticks; t++) {
+            reference.getPlayers().get(0).setInput(inputs[0][t]);
+            reference.getPlayers().get(1).setInput(inputs[1][t]);
+            reference.tick(tickTime);
+            if (endTick < 0 && reference.isOver()) {
+                endTick = t;
+            }
+        }
+        MapSnapshot snapshot = new MapSnapshot();
+        reference.saveSnapshot(snapshot);
+        int expected = snapshot.checksum();
+
+        System.out.printf("%d ticks at %d ms round trip (+%d ms jitter), %d frames, local input delay 0 ticks%s%n",
+                ticks, roundTrip, jitter, frames, endTick < 0 ? "" : ", match over at tick " + endTick);
+        boolean consistent = true;
+        for (int i = 0; i < peers.length; i++) {
+            int checksum = peers[i].checksum();
+            consistent &= checksum == expected;
+            System.out.printf("peer %d: %s, checksum %08x%n", i, peers[i].getStatistics(), checksum);
+        }
+        System.out.printf("reference checksum %08x: %s; frame budget %.1f ms%n", expected,
+                consistent ? "peers consistent" : "PEERS DIVERGED", FRAME_BUDGET_MILLIS);
+    }
+
+    /** Stand-in players that wander around and drop a bomb now and then. */
+    private static int[][] botInputs(int players, int ticks, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] directions = {Player.INPUT_LEFT, Player.INPUT_RIGHT, Player.INPUT_UP, Player.INPUT_DOWN, 0};
+        int[][] inputs = new int[players][ticks];
+        for (int i = 0; i < players; i++) {
+            int direction = 0;
+            for (int t = 0; t < ticks; t++) {
+                if (random.nextInt(30) == 0) {
+                    direction = directions[random.nextInt(directions.length)];
+                }
+                inputs[i][t] = direction | (random.nextInt(180) == 0 ? Player.INPUT_BOMB : 0);
+            }
+        }
+        return inputs;
+    }
+}
@@ -0,0 +1,197 @@
+package de.tum.cit.ase.bomberquest.net;
+
+import de.tum.cit.ase.bomberquest.map.GameMap;
+import de.tum.cit.ase.bomberquest.map.MapSnapshot;
+import de.tum.cit.ase.bomberquest.map.Player;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Peer-to-peer play for two players without a server: both peers simulate the whole match and only exchange inputs.
+ *
+ * The local input is applied on the very tick it is read, so there is no input delay. The remote input of a tick
+ * is not known yet at that point, so it is predicted to be the last one received, without the bomb key.
+ * Before every tick the complete map state is saved into a ring of {@link MapSnapshot}s; when a remote input
+ * arrives that differs from its prediction, the map is restored to the snapshot before that tick and all ticks
+ * since are simulated again within the same frame. This relies on the tick being deterministic, which is why
+ * rollback needs {@link de.tum.cit.ase.bomberquest.map.GridMovement} and the map's seeded random numbers.
+ *
+ * A peer never runs more than {@link #MAX_ROLLBACK_TICKS} ahead of the newest remote input; if it would, it waits
+ * for the other peer instead of predicting further.
+ */
+public class RollbackSession {
+
+    /** How far a peer may run ahead of the other one, about 270 ms at 60 ticks per second. */
+    public static final int MAX_ROLLBACK_TICKS = 16;
+    /** The number of ticks kept in the rings; remote inputs can arrive up to {@link #MAX_ROLLBACK_TICKS} early. */
+    private static final int RING = 4 * MAX_ROLLBACK_TICKS;
+
+    private final GameMap map;
+    private final PeerLink link;
+    private final float tickTime;
+    private final Player localPlayer;
+    private final Player remotePlayer;
+    private final PacketWriter packet = new PacketWriter();
+
+    private final int[] localInputs = new int[RING];
+    /** The input of the remote player per tick: received if the tick is confirmed, predicted otherwise. */
+    private final int[] remoteInputs = new int[RING];
+    /** The state before each tick. */
+    private final MapSnapshot[] snapshots = new MapSnapshot[RING];
+    /** The next tick to simulate. */
+    private int tick;
+    /** The newest tick whose remote input has arrived; inputs arrive in order. */
+    private int confirmedTick = -1;
+    private int lastRemoteInput;
+
+    private int rollbackCount;
+    private long rolledBackTicks;
+    private int maxRollbackTicks;
+    private long rollbackNanos;
+    private long maxRollbackNanos;
+    private int stallCount;
+
+    /**
+     * Starts a session on a freshly created map. Both peers must use the same map and tick time.
+     * @param map The map, without listeners and with {@link de.tum.cit.ase.bomberquest.map.GridMovement}; a second player is added if necessary.
+     * @param link The connection to the other peer.
+     * @param localIndex The index of this peer's player, 0 or 1; the other peer uses the other one.
+     * @param tickTime The duration of one tick in seconds.
+     * @throws IllegalArgumentException If the map cannot be rolled back.
+     */
+    public RollbackSession(GameMap map, PeerLink link, int localIndex, float tickTime) {
+        if (map.getEventBus().hasSubscribers()) {
+            throw new IllegalArgumentException("Rollback needs a map without listeners, they would hear of predicted deaths");
+        }
+        List<Player> players = map.getPlayers();
+        while (players.size() < 2) {
+            map.addPlayer();
+        }
+        for (int i = 0; i < RING; i++) {
+            snapshots[i] = new MapSnapshot();
+        }
+        try {
+            map.saveSnapshot(snapshots[0]);
+        } catch (UnsupportedOperationException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        this.map = map;
+        this.link = link;
+        this.tickTime = tickTime;
+        this.localPlayer = players.get(localIndex);
+        this.remotePlayer = players.get(1 - localIndex);
+        localPlayer.setInput(0);
+        remotePlayer.setInput(0);
+        map.setLocalPlayer(localIndex);
+    }
+
+    /**
+     * Simulates the next tick with the given local input, after applying the remote inputs that have arrived.
+     * @param localInput The input mask of the local player, see the {@code INPUT_} constants of {@link Player}.
+     * @return False if the tick was not simulated because the other peer is too far behind;
+     *         the input should then be offered again next frame.
+     */
+    public boolean advance(int localInput) {
+        receiveInputs();
+        if (tick - confirmedTick > MAX_ROLLBACK_TICKS) {
+            stallCount++;
+            return false;
+        }
+        localInputs[tick % RING] = localInput;
+        packet.reset();
+        packet.writeVarInt(tick);
+        packet.writeByte(localInput);
+        link.send(packet.toByteArray());
+
+        simulate(tick);
+        tick++;
+        return true;
+    }
+
+    /**
+     * Applies the remote inputs that have arrived and rolls back if one of them was predicted wrongly.
+     * Called by {@link #advance(int)}, but also useful while waiting, e.g. at the end of a match.
+     */
+    public void receiveInputs() {
+        int mispredicted = -1;
+        byte[] message;
+        while ((message = link.poll()) != null) {
+            int remoteTick;
+            int input;
+            try {
+                PacketReader in = new PacketReader(message);
+                remoteTick = in.readVarInt();
+                input = in.readByte();
+            } catch (IOException e) {
+                throw new IllegalStateException("Malformed input message", e);
+            }
+            if (remoteTick != confirmedTick + 1) {
+                throw new IllegalStateException("Expected the input of tick " + (confirmedTick + 1) + ", got " + remoteTick);
+            }
+            confirmedTick = remoteTick;
+            lastRemoteInput = input;
+            if (remoteTick < tick && remoteInputs[remoteTick % RING] != input && mispredicted < 0) {
+                mispredicted = remoteTick;
+            }
+            remoteInputs[remoteTick % RING] = input;
+        }
+        if (mispredicted >= 0) {
+            rollback(mispredicted);
+        }
+    }
+
+    /** Restores the state before the given tick and simulates all ticks since then again. */
+    private void rollback(int from) {
+        long start = System.nanoTime();
+        map.restoreSnapshot(snapshots[from % RING]);
+        for (int t = from; t < tick; t++) {
+            simulate(t);
+        }
+        long nanos = System.nanoTime() - start;
+
+        rollbackCount++;
+        rolledBackTicks += tick - from;
+        maxRollbackTicks = Math.max(maxRollbackTicks, tick - from);
+        rollbackNanos += nanos;
+        maxRollbackNanos = Math.max(maxRollbackNanos, nanos);
+    }
+
+    private void simulate(int t) {
+        map.saveSnapshot(snapshots[t % RING]);
+        if (t > confirmedTick) {
+            remoteInputs[t % RING] = lastRemoteInput & ~Player.INPUT_BOMB; // Keep walking, but do not repeat a bomb
+        }
+        localPlayer.setInput(localInputs[t % RING]);
+        remotePlayer.setInput(remoteInputs[t % RING]);
+        map.tick(tickTime);
+    }
+
+    public GameMap getMap() {
+        return map;
+    }
+
+    /** Returns the number of ticks simulated so far. */
+    public int getTick() {
+        return tick;
+    }
+
+    /** Returns the newest tick for which the input of both players is known. */
+    public int getConfirmedTick() {
+        return Math.min(confirmedTick, tick - 1);
+    }
+
+    /** Returns a checksum of the current state, see {@link MapSnapshot#checksum()}. */
+    public int checksum() {
+        MapSnapshot snapshot = new MapSnapshot();
+        map.saveSnapshot(snapshot);
+        return snapshot.checksum();
+    }
+
+    /** Returns a one-line summary of the rollbacks so far. */
+    public String getStatistics() {
+        return String.format("%d ticks, %d rollbacks, %.1f ticks on average (max %d), %.3f ms on average (max %.3f ms), %d stalls",
+                tick, rollbackCount, rollbackCount == 0 ? 0.0 : (double) rolledBackTicks / rollbackCount, maxRollbackTicks,
+                rollbackCount == 0 ? 0.0 : rollbackNanos / 1e6 / rollbackCount, maxRollbackNanos / 1e6, stallCount);
+    }
+}
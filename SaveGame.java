@@ -0,0 +1,171 @@
+package de.tum.cit.ase.bomberquest.map;
+
+import com.badlogic.gdx.Gdx;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Saves an in-progress game to disk and restores it, so "Continue the game" also works after a restart.
+ *
+ * The save file is a small versioned binary snapshot: a header with the path of the map file and the remaining time,
+ * followed by {@link GameMap#writeState(java.nio.ByteBuffer)}.
+ * Encoding only copies a few primitive values into a byte array, which is cheap enough to do on the render thread;
+ * the file itself is written by a background thread, so saving never blocks a frame.
+ */
+public final class SaveGame {
+
+    /** "BQSV", marks a file as a Bomber Quest save. */
+    private static final int MAGIC = 0x42515356;
+    /** Incremented whenever the format changes; saves with another version are ignored. */
+    private static final int VERSION = 1;
+    /** The save file, relative to the local storage directory. */
+    private static final String FILE = "save/savegame.bin";
+
+    /** Writes save files one after another, in the order they were requested. */
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "save-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final GameMap map;
+    private final float timeLeft;
+
+    private SaveGame(GameMap map, float timeLeft) {
+        this.map = map;
+        this.timeLeft = timeLeft;
+    }
+
+    /** Returns the restored map. */
+    public GameMap getMap() {
+        return map;
+    }
+
+    /** Returns the remaining time of the countdown timer in seconds. */
+    public float getTimeLeft() {
+        return timeLeft;
+    }
+
+    /**
+     * Encodes the game on the calling thread and writes it to disk in the background.
+     * @param map The map of the game in progress.
+     * @param timeLeft The remaining time of the countdown timer in seconds.
+     */
+    public static void saveAsync(GameMap map, float timeLeft) {
+        byte[] data = encode(map, timeLeft);
+        File file = Gdx.files.local(FILE).file();
+        WRITER.execute(() -> {
+            try {
+                write(file, data);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /** Deletes the save file in the background, after any save that is still pending. */
+    public static void deleteAsync() {
+        File file = Gdx.files.local(FILE).file();
+        WRITER.execute(() -> {
+            if (file.exists() && !file.delete()) {
+                System.out.println("Could not delete " + file);
+            }
+        });
+    }
+
+    /**
+     * Waits until all pending saves are written, e.g. before the application exits.
+     */
+    public static void awaitWrites() {
+        try {
+            WRITER.submit(() -> { }).get(2, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Encodes a game into the save format.
+     * @param map The map of the game in progress.
+     * @param timeLeft The remaining time of the countdown timer in seconds.
+     * @return The encoded game.
+     */
+    public static byte[] encode(GameMap map, float timeLeft) {
+        byte[] path = map.getTemplate().getPath().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer out = ByteBuffer.allocate(4 + 2 + 2 + path.length + 4 + map.getStateSize());
+        out.putInt(MAGIC).putShort((short) VERSION);
+        out.putShort((short) path.length).put(path);
+        out.putFloat(timeLeft);
+        map.writeState(out);
+        return out.array();
+    }
+
+    /**
+     * Loads the saved game, if there is one.
+     * @param mapFactory Creates the map to restore the game into from its template.
+     * @return The restored game, or null if there is no save file.
+     * @throws IOException If the save file cannot be read or does not match its map file.
+     */
+    public static SaveGame load(Function<MapTemplate, GameMap> mapFactory) throws IOException {
+        File file = Gdx.files.local(FILE).file();
+        if (!file.exists()) {
+            return null;
+        }
+        return decode(mapFactory, Files.readAllBytes(file.toPath()));
+    }
+
+    /**
+     * Decodes a game from the save format.
+     * @param mapFactory Creates the map to restore the game into from its template.
+     * @param data The encoded game.
+     * @return The restored game.
+     * @throws IOException If the data is not a save of this version or does not match its map file.
+     */
+    public static SaveGame decode(Function<MapTemplate, GameMap> mapFactory, byte[] data) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        if (in.getInt() != MAGIC) {
+            throw new IOException("Not a save file");
+        }
+        int version = in.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported save version " + version);
+        }
+        byte[] path = new byte[in.getShort()];
+        in.get(path);
+        float timeLeft = in.getFloat();
+
+        GameMap map = mapFactory.apply(MapTemplate.load(new String(path, StandardCharsets.UTF_8)));
+        try {
+            map.readState(in);
+        } catch (IOException | RuntimeException e) {
+            map.dispose();
+            throw e instanceof IOException ? (IOException) e : new IOException("Corrupt save file", e);
+        }
+        return new SaveGame(map, timeLeft);
+    }
+
+    /** Writes to a temporary file first, so a crash while saving never leaves a half-written save behind. */
+    private static void write(File file, byte[] data) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null) {
+            Files.createDirectories(directory.toPath());
+        }
+        File temporary = new File(file.getPath() + ".tmp");
+        Files.write(temporary.toPath(), data);
+        try {
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
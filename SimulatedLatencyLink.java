@@ -0,0 +1,69 @@
+package de.tum.cit.ase.bomberquest.net;
+
+import java.util.ArrayDeque;
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * Two connected in-process {@link PeerLink}s that deliver every message after a configurable delay plus jitter,
+ * to try rollback netcode without a network. Messages keep their order, like on a TCP connection.
+ *
+ * The links read the time from a clock supplied by the caller, so a test can run on simulated time
+ * and finish in a fraction of the time it simulates.
+ */
+public final class SimulatedLatencyLink implements PeerLink {
+
+    private final LongSupplier clockMillis;
+    private final int delayMillis;
+    private final int jitterMillis;
+    private final SplittableRandom random;
+    /** Messages on their way to this link, with their arrival times. */
+    private final ArrayDeque<byte[]> incoming = new ArrayDeque<>();
+    private final ArrayDeque<Long> arrivals = new ArrayDeque<>();
+    private SimulatedLatencyLink peer;
+    private long lastArrival;
+
+    private SimulatedLatencyLink(LongSupplier clockMillis, int delayMillis, int jitterMillis, long seed) {
+        this.clockMillis = clockMillis;
+        this.delayMillis = delayMillis;
+        this.jitterMillis = jitterMillis;
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Creates two connected links.
+     * @param clockMillis The current time in milliseconds.
+     * @param roundTripMillis The round-trip time; every message takes half of it.
+     * @param jitterMillis The largest random extra delay of a message.
+     * @param seed The seed of the jitter.
+     * @return The two ends of the connection.
+     */
+    public static SimulatedLatencyLink[] pair(LongSupplier clockMillis, int roundTripMillis, int jitterMillis, long seed) {
+        SimulatedLatencyLink a = new SimulatedLatencyLink(clockMillis, roundTripMillis / 2, jitterMillis, seed);
+        SimulatedLatencyLink b = new SimulatedLatencyLink(clockMillis, roundTripMillis / 2, jitterMillis, seed + 1);
+        a.peer = b;
+        b.peer = a;
+        return new SimulatedLatencyLink[] {a, b};
+    }
+
+    @Override
+    public void send(byte[] message) {
+        long arrival = clockMillis.getAsLong() + delayMillis + (jitterMillis > 0 ? random.nextInt(jitterMillis + 1) : 0);
+        peer.deliver(message, arrival);
+    }
+
+    private void deliver(byte[] message, long arrival) {
+        lastArrival = Math.max(lastArrival, arrival); // Jitter never reorders messages
+        incoming.add(message);
+        arrivals.add(lastArrival);
+    }
+
+    @Override
+    public byte[] poll() {
+        if (incoming.isEmpty() || arrivals.peek() > clockMillis.getAsLong()) {
+            return null;
+        }
+        arrivals.poll();
+        return incoming.poll();
+    }
+}
@@ -0,0 +1,166 @@
+package de.tum.cit.ase.bomberquest.screen;
+
+import de.tum.cit.ase.bomberquest.debug.FlightRecorder;
+import de.tum.cit.ase.bomberquest.debug.Log;
+import de.tum.cit.ase.bomberquest.map.GameMap;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ticks a {@link GameMap} at a fixed rate on its own thread, so rendering and simulation overlap and a slow tick
+ * does not hold up a frame.
+ *
+ * After every tick the thread copies the map into a {@link RenderSnapshot} and publishes it. There are three
+ * snapshots: the one the GL thread draws, the one being written, and the newest finished one, which either side
+ * swaps for its own with a single atomic exchange. Neither side waits for the other, and the GL thread always
+ * draws a complete tick.
+ *
+ * While the thread runs, nothing else may read or change the map; listeners of the map's event bus are called on
+ * this thread. {@link #setPaused(boolean)} and {@link #stop()} return once no tick is running any more, after which
+ * the map may be used again, e.g. to save it.
+ */
+public class SimulationThread {
+
+    /** Ticks further behind than this are dropped instead of being caught up, to avoid a spiral of death. */
+    private static final long MAX_BEHIND_NANOS = 250_000_000L;
+    /** The last part of the wait for the next tick is spent spinning, since parking overshoots. */
+    private static final long SPIN_NANOS = 100_000L;
+
+    private final GameMap map;
+    private final InputQueue inputQueue;
+    private final float tickTime;
+    private final long tickNanos;
+    private final Thread thread;
+    private final FlightRecorder flightRecorder = new FlightRecorder(); // Dumps the last ticks when a tick is too slow
+
+    /** Held for the whole of every tick, so pausing can wait for the running tick. */
+    private final Object tickLock = new Object();
+    private volatile boolean running;
+    private boolean paused; // Guarded by tickLock
+    private volatile RuntimeException failure;
+
+    /** The newest finished snapshot, exchanged by both threads. */
+    private final AtomicReference<RenderSnapshot> ready = new AtomicReference<>(new RenderSnapshot());
+    /** The snapshot being written, only used by the simulation thread. */
+    private RenderSnapshot back = new RenderSnapshot();
+    /** The snapshot being drawn, only used by the GL thread. */
+    private RenderSnapshot front = new RenderSnapshot();
+    private long sequence;
+    private long droppedTicks;
+
+    /**
+     * @param map The map to tick.
+     * @param inputQueue The key events of the player, applied at the start of every tick.
+     * @param tickTime The time of one tick in seconds, usually the time step of the map.
+     */
+    public SimulationThread(GameMap map, InputQueue inputQueue, float tickTime) {
+        this.map = map;
+        this.inputQueue = inputQueue;
+        this.tickTime = tickTime;
+        this.tickNanos = (long) (tickTime * 1_000_000_000L);
+        this.thread = new Thread(this::run, "simulation");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Takes the first snapshot and starts ticking. Must be called on the GL thread: the first snapshot loads the
+     * textures of the map, which needs the GL context.
+     */
+    public void start() {
+        front.capture(map);
+        front.sequence = ++sequence;
+        running = true;
+        thread.start();
+    }
+
+    /** Stops ticking and waits for the last tick to finish. The thread cannot be started again. */
+    public void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (droppedTicks > 0) {
+            Log.info("Simulation dropped {} ticks", droppedTicks);
+        }
+    }
+
+    /**
+     * Pauses or resumes ticking. Pausing returns once the running tick, if any, has finished.
+     */
+    public void setPaused(boolean paused) {
+        synchronized (tickLock) {
+            this.paused = paused;
+        }
+    }
+
+    /**
+     * Returns the newest snapshot, on the GL thread. It stays unchanged until the next call.
+     * @throws IllegalStateException If a tick failed; the simulation has stopped then.
+     */
+    public RenderSnapshot acquire() {
+        if (failure != null) {
+            throw new IllegalStateException("The simulation failed", failure);
+        }
+        if (ready.get().sequence > front.sequence) {
+            front = ready.getAndSet(front);
+        }
+        return front;
+    }
+
+    private void run() {
+        long next = System.nanoTime();
+        while (running) {
+            synchronized (tickLock) {
+                if (paused) {
+                    next = System.nanoTime(); // Time spent paused is not caught up
+                } else {
+                    try {
+                        tick();
+                    } catch (RuntimeException e) {
+                        failure = e; // Rethrown on the GL thread by acquire()
+                        running = false;
+                        return;
+                    }
+                }
+            }
+            next += tickNanos;
+            long behind = System.nanoTime() - next;
+            if (behind > MAX_BEHIND_NANOS) {
+                droppedTicks += behind / tickNanos;
+                next += behind / tickNanos * tickNanos;
+            }
+            waitUntil(next);
+        }
+    }
+
+    private void tick() {
+        flightRecorder.beginFrame();
+        int inputMask = inputQueue.drain(System.nanoTime()); // Not the scheduled time, the tick may start late
+        map.getPlayer().setInput(inputMask);
+        flightRecorder.mark(FlightRecorder.PHASE_INPUT);
+
+        map.tick(tickTime);
+        flightRecorder.mark(FlightRecorder.PHASE_TICK);
+
+        back.capture(map);
+        back.sequence = ++sequence;
+        back = ready.getAndSet(back); // Publishes the snapshot and takes back the older one
+        flightRecorder.mark(FlightRecorder.PHASE_RENDER);
+
+        flightRecorder.endFrame(map, inputMask);
+    }
+
+    private void waitUntil(long deadline) {
+        long remaining;
+        while (running && (remaining = deadline - System.nanoTime()) > SPIN_NANOS) {
+            LockSupport.parkNanos(remaining - SPIN_NANOS);
+        }
+        while (running && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+}
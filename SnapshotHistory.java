@@ -0,0 +1,85 @@
+package de.tum.cit.ase.bomberquest.net;
+
+import java.util.Arrays;
+
+/**
+ * The last snapshots sent to (or received by) one client, so the next snapshot can be encoded as the difference
+ * to the newest one the client acknowledged.
+ *
+ * A snapshot stores the quantised position of every entity plus how many walls had been destroyed and how many
+ * events had happened when it was taken. The snapshots live in a ring that is allocated once; a snapshot is
+ * only available while it has not been overwritten by a snapshot {@link MatchProtocol#HISTORY} sequence numbers later.
+ */
+public final class SnapshotHistory {
+
+    /** Position of an entity that does not exist in a snapshot, e.g. a killed enemy. */
+    public static final int ABSENT = Integer.MIN_VALUE;
+
+    /** One snapshot. */
+    public static final class Entry {
+        int seq;
+        int tileChangeCount;
+        int eventCount;
+        /** Quantised positions, indexed by entity key, see {@link MatchProtocol}. */
+        final int[] x;
+        final int[] y;
+
+        Entry(int entityCount) {
+            x = new int[entityCount];
+            y = new int[entityCount];
+            clear();
+        }
+
+        /** Removes all entities and counts, keeping the sequence number. */
+        void clear() {
+            tileChangeCount = 0;
+            eventCount = 0;
+            Arrays.fill(x, ABSENT);
+            Arrays.fill(y, ABSENT);
+        }
+
+        void copyFrom(Entry other) {
+            tileChangeCount = other.tileChangeCount;
+            eventCount = other.eventCount;
+            System.arraycopy(other.x, 0, x, 0, x.length);
+            System.arraycopy(other.y, 0, y, 0, y.length);
+        }
+
+        boolean isPresent(int key) {
+            return x[key] != ABSENT;
+        }
+    }
+
+    private final Entry[] ring;
+
+    /**
+     * @param entityCount The number of entity keys, see {@link MatchProtocol#getEntityCount(int)}.
+     */
+    public SnapshotHistory(int entityCount) {
+        ring = new Entry[MatchProtocol.HISTORY];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new Entry(entityCount);
+        }
+    }
+
+    /**
+     * Returns the snapshot with the given sequence number.
+     * @return The snapshot, or null if it was never stored or has been overwritten.
+     */
+    public Entry get(int seq) {
+        if (seq <= 0) {
+            return null;
+        }
+        Entry entry = ring[seq % ring.length];
+        return entry.seq == seq ? entry : null;
+    }
+
+    /**
+     * Returns the entry to store the snapshot with the given sequence number in, overwriting the oldest one.
+     */
+    public Entry claim(int seq) {
+        Entry entry = ring[seq % ring.length];
+        entry.seq = seq;
+        return entry;
+    }
+}
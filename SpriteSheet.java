@@ -3,6 +3,7 @@ package de.tum.cit.ase.bomberquest.texture;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import de.tum.cit.ase.bomberquest.debug.ResourceTracker;
 
 /**
  * Enumerates all spritesheets used in the game and provides helper methods for grabbing texture regions from them.
@@ -41,7 +42,7 @@ public enum SpriteSheet {
      * @param height the height of a single grid cell
      */
     SpriteSheet(String filename, int width, int height) {
-        this.spritesheet = new Texture(Gdx.files.internal("texture/" + filename));
+        this.spritesheet = ResourceTracker.track(new Texture(Gdx.files.internal("texture/" + filename)));
         this.width = width;
         this.height = height;
     }
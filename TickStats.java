@@ -0,0 +1,73 @@
+package de.tum.cit.ase.bomberquest.net;
+
+import java.util.Arrays;
+
+/**
+ * How well one session of a {@link MatchHost} keeps up with its tick rate.
+ * The latency of a tick is the time from when the tick was due until it was done, so it includes the time
+ * the session waited for a free tick slot as well as the tick itself. The percentiles cover the most recent ticks.
+ */
+public final class TickStats {
+
+    private final int sessionId;
+    private final long ticks;
+    private final long skippedTicks;
+    private final double tickRate;
+    private final boolean over;
+    /** Sorted latencies of the recent ticks, in microseconds. */
+    private final int[] latencies;
+
+    TickStats(int sessionId, long ticks, long skippedTicks, double tickRate, boolean over, int[] latencies) {
+        this.sessionId = sessionId;
+        this.ticks = ticks;
+        this.skippedTicks = skippedTicks;
+        this.tickRate = tickRate;
+        this.over = over;
+        this.latencies = latencies;
+        Arrays.sort(latencies);
+    }
+
+    public int getSessionId() {
+        return sessionId;
+    }
+
+    /** Returns the number of ticks simulated so far. */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /** Returns the number of ticks that were dropped because the host could not keep up. */
+    public long getSkippedTicks() {
+        return skippedTicks;
+    }
+
+    /** Returns the ticks per second achieved since the session was created. */
+    public double getTickRate() {
+        return tickRate;
+    }
+
+    /** Returns whether the match of the session has ended. */
+    public boolean isOver() {
+        return over;
+    }
+
+    /**
+     * Returns a percentile of the recent tick latencies.
+     * @param percentile The percentile, between 0 and 100.
+     * @return The latency in microseconds, or 0 if there was no tick yet.
+     */
+    public int getLatencyMicros(double percentile) {
+        if (latencies.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+        return latencies[Math.max(0, Math.min(latencies.length - 1, index))];
+    }
+
+    @Override
+    public String toString() {
+        return String.format("session %d: %d ticks (%d skipped), %.1f Hz, latency p50 %d us, p95 %d us, p99 %d us%s",
+                sessionId, ticks, skippedTicks, tickRate, getLatencyMicros(50), getLatencyMicros(95),
+                getLatencyMicros(99), over ? ", over" : "");
+    }
+}
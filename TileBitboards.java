@@ -0,0 +1,239 @@
+package de.tum.cit.ase.bomberquest.map;
+
+import java.util.Arrays;
+
+/**
+ * Bitboards of the tile grid of a {@link GameMap}: one bit per tile and layer, indexed by y * width + x,
+ * packed into longs. The map keeps them up to date on every change, so questions about many tiles at once
+ * (a blast ray, a row segment, the passable tiles) take a few word operations instead of a walk over the
+ * walls, bombs or enemies.
+ *
+ * The layers must not be modified outside the map.
+ */
+public final class TileBitboards {
+
+    /** Indestructible walls. */
+    public static final int SOLID = 0;
+    /** Destructible walls that are still standing. */
+    public static final int DESTRUCTIBLE = 1;
+    /** Tiles with a ticking bomb; there is at most one bomb per tile. */
+    public static final int BOMBS = 2;
+    /** Power-ups that are revealed and not collected yet. */
+    public static final int POWER_UPS = 3;
+    /** Tiles an enemy overlaps, in the sense of {@link GameMap#isCollision}; an enemy between tiles sets several. */
+    public static final int ENEMIES = 4;
+    public static final int LAYER_COUNT = 5;
+
+    private final int width;
+    private final int height;
+    private final int words;
+    private final long[][] layers;
+    /** The bits of all tiles of the map, the last word is only partly used. */
+    private final long[] valid;
+
+    TileBitboards(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.words = (width * height + 63) >>> 6;
+        this.layers = new long[LAYER_COUNT][words];
+        this.valid = new long[words];
+        setRange(valid, 0, width * height);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** Returns the number of longs of every layer. */
+    public int getWordCount() {
+        return words;
+    }
+
+    /**
+     * Returns the bits of a layer for bulk operations; bit i of word i / 64 is the tile (i % width, i / width).
+     * @param layer One of the layer constants.
+     * @return The live layer, which must not be modified.
+     */
+    public long[] getLayer(int layer) {
+        return layers[layer];
+    }
+
+    /** Returns whether the tile is set in the layer; tiles outside the map are never set. */
+    public boolean test(int layer, int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return false;
+        }
+        int i = y * width + x;
+        return (layers[layer][i >>> 6] & (1L << i)) != 0;
+    }
+
+    void set(int layer, int x, int y) {
+        int i = y * width + x;
+        layers[layer][i >>> 6] |= 1L << i;
+    }
+
+    void clear(int layer, int x, int y) {
+        int i = y * width + x;
+        layers[layer][i >>> 6] &= ~(1L << i);
+    }
+
+    void clearLayer(int layer) {
+        Arrays.fill(layers[layer], 0);
+    }
+
+    /** Returns the number of tiles set in the layer. */
+    public int count(int layer) {
+        int count = 0;
+        for (long word : layers[layer]) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the first tile set in the layer at or after an index, to iterate over the set tiles.
+     * @param layer One of the layer constants.
+     * @param from The first tile index y * width + x to look at.
+     * @return The tile index, or -1 if there is none.
+     */
+    public int nextSetBit(int layer, int from) {
+        return nextSetBit(layers[layer], from, width * height);
+    }
+
+    /** Returns whether any tile from x0 to x1 (both inclusive) in row y is set in the layer. */
+    public boolean anyInRow(int layer, int y, int x0, int x1) {
+        x0 = Math.max(x0, 0);
+        x1 = Math.min(x1, width - 1);
+        if (y < 0 || y >= height || x0 > x1) {
+            return false;
+        }
+        return nextSetBit(layers[layer], y * width + x0, y * width + x1 + 1) >= 0;
+    }
+
+    /** Returns whether any tile from y0 to y1 (both inclusive) in column x is set in the layer. */
+    public boolean anyInColumn(int layer, int x, int y0, int y1) {
+        if (x < 0 || x >= width) {
+            return false;
+        }
+        long[] bits = layers[layer];
+        for (int y = Math.max(y0, 0), last = Math.min(y1, height - 1); y <= last; y++) {
+            int i = y * width + x;
+            if ((bits[i >>> 6] & (1L << i)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the tiles a player or an enemy can walk on: no wall and no bomb.
+     * @param out Receives one bit per tile, at least {@link #getWordCount()} longs.
+     */
+    public void passable(long[] out) {
+        long[] solid = layers[SOLID];
+        long[] destructible = layers[DESTRUCTIBLE];
+        long[] bombs = layers[BOMBS];
+        for (int w = 0; w < words; w++) {
+            out[w] = ~(solid[w] | destructible[w] | bombs[w]) & valid[w];
+        }
+    }
+
+    /**
+     * Writes the tiles the blast of a bomb hits: the bomb's tile and up to radius tiles in every direction. Like in
+     * {@link Bomb}, a ray passes destructible walls (and destroys them) and stops before an indestructible wall.
+     * @param x The x-coordinate of the bomb.
+     * @param y The y-coordinate of the bomb.
+     * @param radius The blast radius of the bomb.
+     * @param out Receives one bit per tile, at least {@link #getWordCount()} longs; bits already set are kept.
+     */
+    public void blastMask(int x, int y, int radius, long[] out) {
+        long[] solid = layers[SOLID];
+        int row = y * width;
+        // Horizontal rays are contiguous bits, so find the nearest wall on each side with a few word operations
+        int right = nextSetBit(solid, row + x + 1, row + Math.min(x + radius, width - 1) + 1);
+        int left = previousSetBit(solid, row + Math.max(x - radius, 0), row + x);
+        setRange(out, left < 0 ? row + Math.max(x - radius, 0) : left + 1,
+                right < 0 ? row + Math.min(x + radius, width - 1) + 1 : right);
+        for (int ty = y + 1; ty <= Math.min(y + radius, height - 1) && !isSet(solid, ty * width + x); ty++) {
+            setBit(out, ty * width + x);
+        }
+        for (int ty = y - 1; ty >= Math.max(y - radius, 0) && !isSet(solid, ty * width + x); ty--) {
+            setBit(out, ty * width + x);
+        }
+    }
+
+    /** Returns whether a tile is set in a bit mask such as {@link #blastMask(int, int, int, long[])} writes. */
+    public boolean isSet(long[] bits, int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height && isSet(bits, y * width + x);
+    }
+
+    private static boolean isSet(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static void setBit(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    /** Sets the bits from (inclusive) to to (exclusive). */
+    private static void setRange(long[] bits, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        long firstMask = -1L << from; // Shifts only use the low 6 bits of the index
+        long lastMask = -1L >>> -to;
+        if (first == last) {
+            bits[first] |= firstMask & lastMask;
+            return;
+        }
+        bits[first] |= firstMask;
+        for (int w = first + 1; w < last; w++) {
+            bits[w] = -1L;
+        }
+        bits[last] |= lastMask;
+    }
+
+    /** Returns the first set bit from from (inclusive) to to (exclusive), or -1. */
+    private static int nextSetBit(long[] bits, int from, int to) {
+        if (from >= to) {
+            return -1;
+        }
+        int w = from >>> 6;
+        long word = bits[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                return i < to ? i : -1;
+            }
+            if (++w > (to - 1) >>> 6) {
+                return -1;
+            }
+            word = bits[w];
+        }
+    }
+
+    /** Returns the last set bit from from (inclusive) to to (exclusive), or -1. */
+    private static int previousSetBit(long[] bits, int from, int to) {
+        if (from >= to) {
+            return -1;
+        }
+        int w = (to - 1) >>> 6;
+        long word = bits[w] & (-1L >>> -to);
+        while (true) {
+            if (word != 0) {
+                int i = (w << 6) + 63 - Long.numberOfLeadingZeros(word);
+                return i >= from ? i : -1;
+            }
+            if (--w < from >>> 6) {
+                return -1;
+            }
+            word = bits[w];
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package de.tum.cit.ase.bomberquest.map;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * What is on each tile of a {@link GameMap}: the bomb, the power-up and the enemies, so lookups by tile take
+ * constant time instead of a walk over the lists of the map. The map keeps it up to date whenever something is
+ * added, moves or is removed.
+ *
+ * A tile holds at most one bomb and one power-up. Enemies overlap up to four tiles while they move between them,
+ * in the sense of {@link GameMap#isCollision}; the enemies on a tile are kept in a linked list of preallocated
+ * entries, in the order of {@link GameMap#getEnemies()}. Every enemy owns a slot with four entries, one per tile it
+ * overlaps, so an enemy that moves or dies only relinks its own entries.
+ */
+public final class TileOccupancy {
+
+    private static final int NO_ENTRY = -1;
+    /** The number of entries of a slot: an enemy is one tile large, so it overlaps at most four tiles. */
+    private static final int ENTRIES_PER_SLOT = 4;
+
+    private final int width;
+    private final int height;
+    /** The bomb on every tile, indexed by y * width + x. */
+    private final Bomb[] bombs;
+    /** The power-up that has not been collected yet on every tile, revealed or not. */
+    private final PowerUp[] powerUps;
+    /** The first enemy entry of every tile, or {@link #NO_ENTRY}. */
+    private final int[] firstEnemyEntry;
+    /**
+     * The enemy of every slot, in the order of the map's list when the slots were last assigned. An enemy keeps its
+     * slot while it lives, so the slots of killed enemies stay empty until the list is replaced; grown when needed.
+     */
+    private Enemy[] slotEnemies = new Enemy[4];
+    private int slotCount;
+    /** The tiles the enemy of every slot overlaps: left, bottom, right and top; empty while right < left. */
+    private int[] slotTiles = new int[4 * 4];
+    /**
+     * The tile of every entry, or {@link #NO_ENTRY} if it is not linked, and the next entry of the same tile.
+     * The entries of slot s are s * {@link #ENTRIES_PER_SLOT} and the following ones, so the entries of a tile are
+     * sorted by their index to keep the order of the map's list.
+     */
+    private int[] entryTiles = new int[4 * ENTRIES_PER_SLOT];
+    private int[] nextEntries = new int[4 * ENTRIES_PER_SLOT];
+
+    TileOccupancy(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.bombs = new Bomb[width * height];
+        this.powerUps = new PowerUp[width * height];
+        this.firstEnemyEntry = new int[width * height];
+        Arrays.fill(firstEnemyEntry, NO_ENTRY);
+        Arrays.fill(entryTiles, NO_ENTRY);
+    }
+
+    /** Returns the bomb on the tile, or null. */
+    public Bomb getBombAt(int x, int y) {
+        return contains(x, y) ? bombs[y * width + x] : null;
+    }
+
+    /** Returns the power-up on the tile that has not been collected yet, even if it is still under a wall, or null. */
+    public PowerUp getPowerUpAt(int x, int y) {
+        return contains(x, y) ? powerUps[y * width + x] : null;
+    }
+
+    /** Returns the first enemy (in the order of the map's list) that overlaps the tile, or null. */
+    public Enemy getEnemyAt(int x, int y) {
+        if (!contains(x, y)) {
+            return null;
+        }
+        int entry = firstEnemyEntry[y * width + x];
+        return entry == NO_ENTRY ? null : slotEnemies[entry / ENTRIES_PER_SLOT];
+    }
+
+    /** Returns the number of enemies that overlap the tile. */
+    public int getEnemyCountAt(int x, int y) {
+        if (!contains(x, y)) {
+            return 0;
+        }
+        int count = 0;
+        for (int entry = firstEnemyEntry[y * width + x]; entry != NO_ENTRY; entry = nextEntries[entry]) {
+            count++;
+        }
+        return count;
+    }
+
+    void setBomb(int x, int y, Bomb bomb) {
+        bombs[y * width + x] = bomb;
+    }
+
+    /** Removes a bomb from its tile, unless another bomb took its place already. */
+    void removeBomb(Bomb bomb) {
+        int tile = (int) bomb.getY() * width + (int) bomb.getX();
+        if (bombs[tile] == bomb) {
+            bombs[tile] = null;
+        }
+    }
+
+    void setPowerUp(int x, int y, PowerUp powerUp) {
+        powerUps[y * width + x] = powerUp;
+    }
+
+    void clearBombsAndPowerUps() {
+        Arrays.fill(bombs, null);
+        Arrays.fill(powerUps, null);
+    }
+
+    /**
+     * Moves the enemies to the tiles they overlap now, with the same 64-pixel rectangles as
+     * {@link GameMap#isCollision}, and keeps the {@link TileBitboards#ENEMIES} layer in step. Only the enemies that
+     * changed tiles are relinked; enemies missing from the list are removed. If the list holds an enemy without a
+     * slot, or the enemies were reordered, all slots are assigned again.
+     */
+    void updateEnemies(List<Enemy> enemies, TileBitboards bitboards) {
+        int slot = 0;
+        for (int i = 0; i < enemies.size(); i++) {
+            Enemy enemy = enemies.get(i);
+            while (slot < slotCount && slotEnemies[slot] != enemy) {
+                removeSlot(slot++, bitboards); // Removed from the list without removeEnemy, e.g. by a restored snapshot
+            }
+            if (slot == slotCount) {
+                assignSlots(enemies, bitboards); // The list was replaced
+                return;
+            }
+            placeSlot(slot++, enemy, bitboards);
+        }
+        while (slot < slotCount) {
+            removeSlot(slot++, bitboards);
+        }
+    }
+
+    /** Removes a killed enemy from its tiles. */
+    void removeEnemy(Enemy enemy, TileBitboards bitboards) {
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (slotEnemies[slot] == enemy) {
+                removeSlot(slot, bitboards);
+                return;
+            }
+        }
+    }
+
+    /** Gives every enemy a new slot in the order of the list. */
+    private void assignSlots(List<Enemy> enemies, TileBitboards bitboards) {
+        if (enemies.size() > slotEnemies.length) {
+            int slots = Math.max(enemies.size(), slotEnemies.length * 2);
+            int oldEntries = entryTiles.length;
+            slotEnemies = Arrays.copyOf(slotEnemies, slots);
+            slotTiles = Arrays.copyOf(slotTiles, slots * 4);
+            entryTiles = Arrays.copyOf(entryTiles, slots * ENTRIES_PER_SLOT);
+            nextEntries = Arrays.copyOf(nextEntries, slots * ENTRIES_PER_SLOT);
+            Arrays.fill(entryTiles, oldEntries, entryTiles.length, NO_ENTRY);
+        }
+        for (int slot = 0; slot < Math.max(slotCount, enemies.size()); slot++) {
+            removeSlot(slot, bitboards); // Also marks the tiles of slots that were never used as empty
+        }
+        slotCount = enemies.size();
+        for (int slot = 0; slot < slotCount; slot++) {
+            slotEnemies[slot] = enemies.get(slot);
+            placeSlot(slot, enemies.get(slot), bitboards);
+        }
+    }
+
+    /** Links the entries of a slot to the tiles its enemy overlaps, unless they are still the same. */
+    private void placeSlot(int slot, Enemy enemy, TileBitboards bitboards) {
+        int left = (int) (enemy.getX() * 64);
+        int bottom = (int) (enemy.getY() * 64);
+        int right = left + (int) (enemy.getWidth() * 64) - 1;
+        int top = bottom + (int) (enemy.getHeight() * 64) - 1;
+        int minX = Math.max(0, Math.floorDiv(left, 64));
+        int minY = Math.max(0, Math.floorDiv(bottom, 64));
+        int maxX = Math.min(width - 1, Math.min(minX + 1, Math.floorDiv(right, 64))); // At most two tiles wide
+        int maxY = Math.min(height - 1, Math.min(minY + 1, Math.floorDiv(top, 64)));
+        int tiles = slot * 4;
+        if (slotTiles[tiles] == minX && slotTiles[tiles + 1] == minY
+                && slotTiles[tiles + 2] == maxX && slotTiles[tiles + 3] == maxY) {
+            return; // Still on the same tiles
+        }
+        unlinkSlot(slot, bitboards);
+        slotTiles[tiles] = minX;
+        slotTiles[tiles + 1] = minY;
+        slotTiles[tiles + 2] = maxX;
+        slotTiles[tiles + 3] = maxY;
+        int entry = slot * ENTRIES_PER_SLOT;
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                linkEntry(entry++, y * width + x);
+                bitboards.set(TileBitboards.ENEMIES, x, y);
+            }
+        }
+    }
+
+    private void removeSlot(int slot, TileBitboards bitboards) {
+        unlinkSlot(slot, bitboards);
+        slotEnemies[slot] = null;
+    }
+
+    /** Unlinks the entries of a slot and clears the enemy bit of the tiles no other enemy overlaps. */
+    private void unlinkSlot(int slot, TileBitboards bitboards) {
+        for (int entry = slot * ENTRIES_PER_SLOT; entry < (slot + 1) * ENTRIES_PER_SLOT; entry++) {
+            int tile = entryTiles[entry];
+            if (tile == NO_ENTRY) {
+                continue;
+            }
+            if (firstEnemyEntry[tile] == entry) {
+                firstEnemyEntry[tile] = nextEntries[entry];
+            } else {
+                int previous = firstEnemyEntry[tile];
+                while (nextEntries[previous] != entry) {
+                    previous = nextEntries[previous];
+                }
+                nextEntries[previous] = nextEntries[entry];
+            }
+            entryTiles[entry] = NO_ENTRY;
+            if (firstEnemyEntry[tile] == NO_ENTRY) {
+                bitboards.clear(TileBitboards.ENEMIES, tile % width, tile / width);
+            }
+        }
+        int tiles = slot * 4;
+        slotTiles[tiles] = 0;
+        slotTiles[tiles + 1] = 0;
+        slotTiles[tiles + 2] = -1; // Empty
+        slotTiles[tiles + 3] = -1;
+    }
+
+    /** Links an entry to a tile behind the entries with a lower index. */
+    private void linkEntry(int entry, int tile) {
+        entryTiles[entry] = tile;
+        int previous = NO_ENTRY;
+        int next = firstEnemyEntry[tile];
+        while (next != NO_ENTRY && next < entry) {
+            previous = next;
+            next = nextEntries[next];
+        }
+        nextEntries[entry] = next;
+        if (previous == NO_ENTRY) {
+            firstEnemyEntry[tile] = entry;
+        } else {
+            nextEntries[previous] = entry;
+        }
+    }
+
+    private boolean contains(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+}
@@ -0,0 +1,402 @@
+package de.tum.cit.ase.bomberquest.gym;
+
+import de.tum.cit.ase.bomberquest.map.Bomb;
+import de.tum.cit.ase.bomberquest.map.Exit;
+import de.tum.cit.ase.bomberquest.map.GameMap;
+import de.tum.cit.ase.bomberquest.map.MapGenerator;
+import de.tum.cit.ase.bomberquest.map.MapSnapshot;
+import de.tum.cit.ase.bomberquest.map.MapTemplate;
+import de.tum.cit.ase.bomberquest.map.Player;
+import de.tum.cit.ase.bomberquest.map.TileBitboards;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A batch of environments for training agents, in the style of a vectorised gym environment:
+ * {@link #reset(long, FloatBuffer)} starts an episode in every environment, {@link #step(int[], FloatBuffer, float[], boolean[])}
+ * applies one action per environment and advances all of them in lockstep.
+ *
+ * Each environment is a headless single-player {@link GameMap}. An action is held for {@link #getTicksPerStep()}
+ * ticks. An environment whose episode ended is reset right away, so the observation returned with
+ * {@code done} is already the first one of the next episode, as in gym's vector environments.
+ *
+ * Observations are written into a buffer supplied by the caller, e.g. from {@link #allocateObservations()}, which
+ * is a direct buffer in native byte order that can be shared with other runtimes without copying. Every
+ * environment writes {@link #PLANE_COUNT} planes of width * height floats, indexed [environment][plane][y][x].
+ * Stepping does not allocate in this class; the environments are split between worker threads that wait for
+ * the next step by spinning, so a step costs no more than the slowest slice. With grid movement, an environment is
+ * reset by restoring a snapshot of its fresh map, which only creates the destructible walls blown up in the episode
+ * again; Box2D maps cannot be restored, so their resets build a new map.
+ */
+public final class VectorEnv implements AutoCloseable {
+
+    /** The actions: nothing, the four directions, and placing a bomb. */
+    public static final int ACTION_NONE = 0;
+    public static final int ACTION_LEFT = 1;
+    public static final int ACTION_RIGHT = 2;
+    public static final int ACTION_UP = 3;
+    public static final int ACTION_DOWN = 4;
+    public static final int ACTION_BOMB = 5;
+    public static final int ACTION_COUNT = 6;
+    private static final int[] ACTION_INPUTS = {
+            0, Player.INPUT_LEFT, Player.INPUT_RIGHT, Player.INPUT_UP, Player.INPUT_DOWN, Player.INPUT_BOMB
+    };
+
+    /** Indestructible walls. */
+    public static final int PLANE_SOLID = 0;
+    /** Destructible walls that are still standing. */
+    public static final int PLANE_DESTRUCTIBLE = 1;
+    public static final int PLANE_BOMBS = 2;
+    /** Tiles a bomb will hit, from 0 when it was just placed to 1 when it explodes. */
+    public static final int PLANE_DANGER = 3;
+    /** Tiles an enemy overlaps, see {@link TileBitboards#ENEMIES}. */
+    public static final int PLANE_ENEMIES = 4;
+    public static final int PLANE_PLAYER = 5;
+    /** Revealed power-ups that have not been collected. */
+    public static final int PLANE_POWER_UPS = 6;
+    /** The exit: 0.5 once revealed, 1 once unlocked as well. */
+    public static final int PLANE_EXIT = 7;
+    public static final int PLANE_COUNT = 8;
+
+    public static final float REWARD_WIN = 1f;
+    public static final float REWARD_DEATH = -1f;
+    public static final float REWARD_WALL = 0.02f;
+    public static final float REWARD_ENEMY = 0.2f;
+    public static final float REWARD_POWER_UP = 0.1f;
+
+    /** The fuse of a bomb in seconds, see {@link Bomb}. */
+    private static final float FUSE_SECONDS = 3f;
+    /** A worker spins this many times waiting for a step before it parks briefly. */
+    private static final int SPINS_BEFORE_PARKING = 10_000;
+
+    private final MapTemplate template;
+    private final int width;
+    private final int height;
+    private final int planeSize;
+    private final int ticksPerStep;
+    private final float tickTime;
+    private final int maxSteps;
+    private final Env[] envs;
+
+    private final Thread[] workers;
+    /** Incremented by the caller to start a step; the workers remember which one they did last. */
+    private volatile long generation;
+    private final AtomicInteger pendingWorkers = new AtomicInteger();
+    private volatile boolean closed;
+    // The arguments of the current step, published to the workers by the write to generation
+    private int[] stepActions;
+    private FloatBuffer stepObservations;
+    private float[] stepRewards;
+    private boolean[] stepDones;
+
+    /**
+     * Creates the environments. No episode runs until {@link #reset(long, FloatBuffer)} is called.
+     * @param template The map of every environment; grid movement is much faster than Box2D.
+     * @param envCount The number of environments.
+     * @param threads The number of threads stepping them, including the caller's.
+     * @param ticksPerStep The number of simulation ticks an action is held.
+     * @param maxSteps The number of steps after which an episode ends as lost, like the game's countdown.
+     */
+    public VectorEnv(MapTemplate template, int envCount, int threads, int ticksPerStep, int maxSteps) {
+        this.template = template;
+        this.width = template.getWidth();
+        this.height = template.getHeight();
+        this.planeSize = width * height;
+        this.ticksPerStep = ticksPerStep;
+        this.tickTime = GameMap.DEFAULT_TIME_STEP;
+        this.maxSteps = maxSteps;
+        this.envs = new Env[envCount];
+        for (int i = 0; i < envCount; i++) {
+            envs[i] = new Env(i);
+        }
+
+        int threadCount = Math.max(1, Math.min(threads, envCount));
+        this.workers = new Thread[threadCount - 1];
+        for (int w = 1; w < threadCount; w++) {
+            int worker = w;
+            workers[w - 1] = new Thread(() -> runWorker(worker, threadCount), "vector-env-" + w);
+            workers[w - 1].setDaemon(true);
+            workers[w - 1].start();
+        }
+    }
+
+    /** Returns the number of floats of the observation of all environments. */
+    public int getObservationSize() {
+        return envs.length * PLANE_COUNT * planeSize;
+    }
+
+    /** Allocates a direct observation buffer in native byte order that fits all environments. */
+    public FloatBuffer allocateObservations() {
+        return ByteBuffer.allocateDirect(getObservationSize() * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    public int getEnvCount() {
+        return envs.length;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getTicksPerStep() {
+        return ticksPerStep;
+    }
+
+    /**
+     * Starts a new episode in every environment.
+     * @param seed The seed of the episodes; environment i uses a seed derived from it and i.
+     * @param observations Receives the first observation of every environment.
+     */
+    public void reset(long seed, FloatBuffer observations) {
+        checkCapacity(observations);
+        for (Env env : envs) {
+            env.seeds = new SplittableRandom(seed ^ (env.index * 0x9E3779B97F4A7C15L));
+            env.reset();
+            env.observe(observations);
+        }
+    }
+
+    /**
+     * Applies one action per environment and advances all environments by one step.
+     * @param actions The action of every environment, one of the {@code ACTION_} constants.
+     * @param observations Receives the next observation of every environment.
+     * @param rewards Receives the reward of every environment for this step.
+     * @param dones Receives whether the episode of every environment ended in this step.
+     */
+    public void step(int[] actions, FloatBuffer observations, float[] rewards, boolean[] dones) {
+        if (actions.length < envs.length || rewards.length < envs.length || dones.length < envs.length) {
+            throw new IllegalArgumentException("Need one action, reward and done flag per environment");
+        }
+        checkCapacity(observations);
+        stepActions = actions;
+        stepObservations = observations;
+        stepRewards = rewards;
+        stepDones = dones;
+        pendingWorkers.set(workers.length);
+        generation++; // Publishes the arguments and wakes the workers
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+        stepSlice(0, workers.length + 1);
+        while (pendingWorkers.get() > 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /** Stops the worker threads. */
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    private void checkCapacity(FloatBuffer observations) {
+        if (observations.capacity() < getObservationSize()) {
+            throw new IllegalArgumentException("Observation buffer holds " + observations.capacity()
+                    + " floats, needs " + getObservationSize());
+        }
+    }
+
+    private void runWorker(int worker, int threads) {
+        long done = 0;
+        int spins = 0;
+        while (!closed) {
+            if (generation == done) {
+                if (++spins > SPINS_BEFORE_PARKING) {
+                    LockSupport.parkNanos(this, 100_000);
+                } else {
+                    Thread.onSpinWait();
+                }
+                continue;
+            }
+            spins = 0;
+            done = generation;
+            stepSlice(worker, threads);
+            pendingWorkers.decrementAndGet();
+        }
+    }
+
+    /** Steps every threads-th environment, starting at the given one. */
+    private void stepSlice(int first, int threads) {
+        for (int i = first; i < envs.length; i += threads) {
+            Env env = envs[i];
+            stepRewards[i] = env.step(stepActions[i]);
+            stepDones[i] = env.done;
+            if (env.done) {
+                env.reset();
+            }
+            env.observe(stepObservations);
+        }
+    }
+
+    /** One environment: a map and the state needed to compute rewards. */
+    private final class Env {
+
+        final int index;
+        final float[] planes = new float[PLANE_COUNT * planeSize];
+        /** The tiles hit by one bomb, see {@link TileBitboards#blastMask(int, int, int, long[])}. */
+        final long[] blast = new long[(planeSize + 63) >>> 6];
+        SplittableRandom seeds;
+        GameMap map;
+        /** The map before its first tick, or null if the movement backend cannot restore snapshots. */
+        MapSnapshot fresh;
+        boolean done;
+        int steps;
+        int tileChanges;
+        int events;
+        int enemies;
+
+        Env(int index) {
+            this.index = index;
+        }
+
+        void reset() {
+            if (fresh != null) {
+                map.restoreSnapshot(fresh);
+            } else {
+                if (map != null) {
+                    map.dispose();
+                }
+                map = new GameMap(template, tickTime);
+                if (GameMap.MOVEMENT_GRID.equals(template.getMovement())) {
+                    fresh = new MapSnapshot();
+                    map.saveSnapshot(fresh);
+                }
+            }
+            map.setRandomSeed(seeds.nextLong());
+            map.getPlayer().setInput(0);
+            done = false;
+            steps = 0;
+            tileChanges = 0;
+            events = 0;
+            enemies = map.getEnemies().size();
+        }
+
+        float step(int action) {
+            Player player = map.getPlayer();
+            player.setInput(ACTION_INPUTS[action]);
+            for (int tick = 0; tick < ticksPerStep && !map.isOver(); tick++) {
+                map.tick(tickTime);
+                if (tick == 0) {
+                    player.setInput(ACTION_INPUTS[action] & ~Player.INPUT_BOMB); // One bomb per step
+                }
+            }
+            steps++;
+
+            float reward = REWARD_WALL * (map.getTileChangeCount() - tileChanges)
+                    + REWARD_ENEMY * (enemies - map.getEnemies().size());
+            tileChanges = map.getTileChangeCount();
+            enemies = map.getEnemies().size();
+            for (; events < map.getEventCount(); events++) {
+                if (map.getEventKind(events) == GameMap.EVENT_POWER_UP_COLLECTED) {
+                    reward += REWARD_POWER_UP;
+                }
+            }
+            if (map.isOver()) {
+                reward += map.isWon() ? REWARD_WIN : REWARD_DEATH;
+                done = true;
+            } else if (steps >= maxSteps) {
+                reward += REWARD_DEATH; // Out of time
+                done = true;
+            }
+            return reward;
+        }
+
+        void observe(FloatBuffer out) {
+            Arrays.fill(planes, 0);
+            TileBitboards bitboards = map.getBitboards();
+            copyLayer(bitboards, TileBitboards.SOLID, PLANE_SOLID);
+            copyLayer(bitboards, TileBitboards.DESTRUCTIBLE, PLANE_DESTRUCTIBLE);
+            copyLayer(bitboards, TileBitboards.BOMBS, PLANE_BOMBS);
+            copyLayer(bitboards, TileBitboards.ENEMIES, PLANE_ENEMIES);
+            copyLayer(bitboards, TileBitboards.POWER_UPS, PLANE_POWER_UPS);
+            for (Bomb bomb : map.getBombs()) {
+                Arrays.fill(blast, 0);
+                bitboards.blastMask((int) bomb.getX(), (int) bomb.getY(), bomb.getOwner().getBlastRadius(), blast);
+                float urgency = 1 - bomb.getExplosionTimer() / FUSE_SECONDS;
+                for (int w = 0; w < blast.length; w++) {
+                    for (long bits = blast[w]; bits != 0; bits &= bits - 1) {
+                        int i = PLANE_DANGER * planeSize + (w << 6) + Long.numberOfTrailingZeros(bits);
+                        planes[i] = Math.max(planes[i], urgency);
+                    }
+                }
+            }
+            Player player = map.getPlayer();
+            set(PLANE_PLAYER, (int) (player.getX() + player.getWidth() / 2), (int) (player.getY() + player.getHeight() / 2), 1);
+            Exit exit = map.getExit();
+            if (exit != null && map.isExitRevealed()) {
+                set(PLANE_EXIT, (int) exit.getX(), (int) exit.getY(), exit.isUnlocked() ? 1 : 0.5f);
+            }
+            out.put(index * planes.length, planes); // One bulk copy into the caller's buffer
+        }
+
+        /** Sets a plane to 1 on the tiles set in a layer of the map's bitboards. */
+        private void copyLayer(TileBitboards bitboards, int layer, int plane) {
+            long[] bits = bitboards.getLayer(layer);
+            for (int w = 0; w < bits.length; w++) {
+                for (long word = bits[w]; word != 0; word &= word - 1) {
+                    planes[plane * planeSize + (w << 6) + Long.numberOfTrailingZeros(word)] = 1;
+                }
+            }
+        }
+
+        private void set(int plane, int x, int y, float value) {
+            if (x >= 0 && y >= 0 && x < width && y < height) {
+                planes[plane * planeSize + y * width + x] = value;
+            }
+        }
+    }
+
+    /**
+     * Measures the throughput with random actions.
+     *
+     * Usage: {@code VectorEnv [environments] [threads] [steps] [map size]}
+     */
+    public static void main(String[] args) {
+        int envCount = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int steps = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        int size = args.length > 3 ? Integer.parseInt(args[3]) : 21;
+
+        MapGenerator generator = new MapGenerator(size, size, 1);
+        generator.setMovement(GameMap.MOVEMENT_GRID); // No native Box2D needed
+        MapTemplate template = generator.generate();
+
+        try (VectorEnv env = new VectorEnv(template, envCount, threads, 4, 300 * 60 / 4)) {
+            FloatBuffer observations = env.allocateObservations();
+            int[] actions = new int[envCount];
+            float[] rewards = new float[envCount];
+            boolean[] dones = new boolean[envCount];
+            SplittableRandom random = new SplittableRandom(1);
+            env.reset(1, observations);
+
+            long start = System.nanoTime();
+            int episodes = 0;
+            for (int step = 0; step < steps; step++) {
+                for (int i = 0; i < envCount; i++) {
+                    actions[i] = random.nextInt(ACTION_COUNT);
+                }
+                env.step(actions, observations, rewards, dones);
+                for (boolean done : dones) {
+                    episodes += done ? 1 : 0;
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double stepsPerSecond = (double) steps * envCount / seconds;
+            System.out.printf("VectorEnv: %d environments on %d threads, %.0f steps/s (%.1f M steps/hour), %d episodes%n",
+                    envCount, threads, stepsPerSecond, stepsPerSecond * 3600 / 1e6, episodes);
+        }
+    }
+}
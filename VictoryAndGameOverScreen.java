@@ -12,6 +12,7 @@ import com.badlogic.gdx.scenes.scene2d.utils.ChangeListener;
 import com.badlogic.gdx.utils.viewport.ScreenViewport;
 import de.tum.cit.ase.bomberquest.BomberQuestGame;
 import de.tum.cit.ase.bomberquest.audio.MusicTrack;
+import de.tum.cit.ase.bomberquest.debug.ResourceTracker;
 
 /**
  * The VictoryAndGameOverScreen class is responsible for displaying the screen menu when the game ends with different texts when success or failure.
@@ -23,6 +24,7 @@ public class VictoryAndGameOverScreen implements Screen{
     private Stage stage;
     private boolean won; // a private boolean
     private String deathReason;
+    private BitmapFont font; // created in show() and released in hide()
 
     public VictoryAndGameOverScreen(BomberQuestGame game, boolean won, String deathReason) {
         this.game = game;
@@ -33,7 +35,7 @@ public class VictoryAndGameOverScreen implements Screen{
     @Override
     public void show() {
 
-        stage = new Stage(new ScreenViewport()); // initialize a new Stage, use ScreenViewport to make UI adapt to all screen size without zooming
+        stage = ResourceTracker.track(new Stage(new ScreenViewport())); // initialize a new Stage, use ScreenViewport to make UI adapt to all screen size without zooming
         Gdx.input.setInputProcessor(stage); // Input Processor is stage. User can input with mouse or keyboard
 
         Table table = new Table(); // new a Table to organize elements
@@ -41,7 +43,8 @@ public class VictoryAndGameOverScreen implements Screen{
         stage.addActor(table);  // add table to stage
 
         Label.LabelStyle labelStyle = new Label.LabelStyle(); // new a LabelStyle to define the appearance of the text
-        labelStyle.font = new BitmapFont();// Bitmapfont is the font here
+        font = ResourceTracker.track(new BitmapFont());
+        labelStyle.font = font;// Bitmapfont is the font here
         labelStyle.font.getData().setScale(2f);//set the font size to twice as big as before
 
         String message = won ? "Victory! You won the game!" : "Game Over! You lost!";
@@ -90,12 +93,15 @@ public class VictoryAndGameOverScreen implements Screen{
 
     @Override
     public void hide() {
-        stage.dispose();
+        ResourceTracker.dispose(stage);
+        ResourceTracker.dispose(font);
+        stage = null;
+        font = null;
     }
 
     @Override
     public void dispose() {
-        stage.dispose();
+        hide(); // Everything is released in hide(), this is a no-op if that already happened
     }
 
     public BomberQuestGame getGame() {
@@ -0,0 +1,148 @@
+package de.tum.cit.ase.bomberquest.map;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.badlogic.gdx.physics.box2d.FixtureDef;
+import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.physics.box2d.World;
+
+import java.util.Arrays;
+
+/**
+ * The static Box2D colliders of all walls on a map.
+ * Indestructible walls never change, so neighbouring indestructible tiles are merged into as few rectangles
+ * as possible (greedy meshing: grow each rectangle to the right first, then upwards).
+ * A map border plus a checkerboard of pillars ends up as a handful of fixtures instead of one per tile.
+ * Destructible walls get one fixture each, so they can be removed individually when they are blown up.
+ */
+public class WallColliders {
+
+    /** Collision category of wall fixtures. */
+    public static final short CATEGORY_WALL = 0x0008;
+
+    /** The body holding all wall fixtures. It never moves, so one body at the origin is enough. */
+    private final Body body;
+    private final int width;
+    /** The fixture of each destructible wall, indexed by y * width + x, or null. */
+    private final Fixture[] destructibleFixtures;
+    /** Tiles whose fixture should be removed after the next physics step, see {@link #processRemovals()}. */
+    private int[] pendingRemovals = new int[16];
+    private int pendingCount;
+    /** The number of fixtures created for indestructible walls, for debugging and benchmarks. */
+    private int mergedFixtureCount;
+
+    /**
+     * Creates the colliders for the given walls.
+     * @param world The world to add the wall body to.
+     * @param walls The walls of the map, indexed [y][x]. Null entries are free tiles.
+     */
+    public WallColliders(World world, Wall[][] walls) {
+        int height = walls.length;
+        this.width = height == 0 ? 0 : walls[0].length;
+        this.destructibleFixtures = new Fixture[width * height];
+
+        BodyDef bodyDef = new BodyDef();
+        bodyDef.type = BodyDef.BodyType.StaticBody;
+        this.body = world.createBody(bodyDef);
+        this.body.setUserData(this);
+
+        PolygonShape box = new PolygonShape();
+        Vector2 center = new Vector2();
+        FixtureDef fixtureDef = new FixtureDef();
+        fixtureDef.shape = box;
+        fixtureDef.filter.categoryBits = CATEGORY_WALL;
+        fixtureDef.filter.maskBits = MapContactListener.CATEGORY_PLAYER | MapContactListener.CATEGORY_ENEMY;
+
+        // Greedy meshing of the indestructible walls
+        boolean[] covered = new boolean[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (covered[y * width + x] || !isIndestructible(walls, x, y)) {
+                    continue;
+                }
+                // Grow to the right as long as the tiles are indestructible and not part of another rectangle
+                int w = 1;
+                while (x + w < width && !covered[y * width + x + w] && isIndestructible(walls, x + w, y)) {
+                    w++;
+                }
+                // Grow upwards as long as the whole row segment qualifies
+                int h = 1;
+                while (y + h < height && rowQualifies(walls, covered, x, y + h, w)) {
+                    h++;
+                }
+                for (int dy = 0; dy < h; dy++) {
+                    for (int dx = 0; dx < w; dx++) {
+                        covered[(y + dy) * width + x + dx] = true;
+                    }
+                }
+                box.setAsBox(w / 2f, h / 2f, center.set(x + w / 2f, y + h / 2f), 0);
+                body.createFixture(fixtureDef);
+                mergedFixtureCount++;
+            }
+        }
+
+        // One fixture per destructible wall
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                Wall wall = walls[y][x];
+                if (wall != null && wall.isDestructible() && !wall.isDestroyed()) {
+                    box.setAsBox(0.5f, 0.5f, center.set(x + 0.5f, y + 0.5f), 0);
+                    destructibleFixtures[y * width + x] = body.createFixture(fixtureDef);
+                }
+            }
+        }
+        box.dispose();
+    }
+
+    private static boolean isIndestructible(Wall[][] walls, int x, int y) {
+        Wall wall = walls[y][x];
+        return wall != null && !wall.isDestructible();
+    }
+
+    private boolean rowQualifies(Wall[][] walls, boolean[] covered, int x, int y, int w) {
+        for (int dx = 0; dx < w; dx++) {
+            if (covered[y * width + x + dx] || !isIndestructible(walls, x + dx, y)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Queues the removal of the collider of a destroyed wall.
+     * The fixture is removed by {@link #processRemovals()} once the current physics step is over.
+     * @param x The x-coordinate of the wall.
+     * @param y The y-coordinate of the wall.
+     */
+    public void removeWall(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y * width + x >= destructibleFixtures.length) {
+            return;
+        }
+        if (pendingCount == pendingRemovals.length) {
+            pendingRemovals = Arrays.copyOf(pendingRemovals, pendingCount * 2);
+        }
+        pendingRemovals[pendingCount++] = y * width + x;
+    }
+
+    /**
+     * Removes the fixtures of all walls destroyed since the last call. Must not be called while the world is stepping.
+     */
+    public void processRemovals() {
+        for (int i = 0; i < pendingCount; i++) {
+            int index = pendingRemovals[i];
+            Fixture fixture = destructibleFixtures[index];
+            if (fixture != null) {
+                body.destroyFixture(fixture);
+                destructibleFixtures[index] = null;
+            }
+        }
+        pendingCount = 0;
+    }
+
+    /** Returns the number of fixtures used for all indestructible walls together. */
+    public int getMergedFixtureCount() {
+        return mergedFixtureCount;
+    }
+}